@@ -27,6 +27,7 @@ import dan200.computercraft.core.apis.http.websocket.Websocket;
 import dan200.computercraft.core.filesystem.ComboMount;
 import dan200.computercraft.core.filesystem.FileMount;
 import dan200.computercraft.core.filesystem.FileSystemMount;
+import dan200.computercraft.core.filesystem.ResourceCache;
 import dan200.computercraft.core.terminal.Terminal;
 import dan200.computercraft.core.tracking.Tracking;
 import dan200.computercraft.shared.*;
@@ -67,7 +68,6 @@ import dan200.computercraft.shared.turtle.items.ItemTurtleNormal;
 import dan200.computercraft.shared.turtle.upgrades.*;
 import dan200.computercraft.shared.util.CreativeTabMain;
 import dan200.computercraft.shared.util.IDAssigner;
-import dan200.computercraft.shared.util.IoUtil;
 import dan200.computercraft.shared.wired.CapabilityWiredElement;
 import dan200.computercraft.shared.wired.WiredNode;
 import net.minecraft.entity.player.EntityPlayer;
@@ -95,12 +95,9 @@ import java.net.URL;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
-import java.util.ArrayList;
-import java.util.EnumSet;
-import java.util.List;
-import java.util.ServiceConfigurationError;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 @Mod(
     modid = ComputerCraft.MOD_ID, name = "CC: Tweaked", version = "${version}",
@@ -134,10 +131,17 @@ public class ComputerCraft
     public static int computerSpaceLimit = 1000 * 1000;
     public static int floppySpaceLimit = 125 * 1000;
     public static int maximumFilesOpen = 128;
+    public static int file_write_buffer = 8192;
     public static boolean disable_lua51_features = false;
     public static String default_computer_settings = "";
     public static boolean debug_enable = true;
     public static int computer_threads = 1;
+    public static int computer_timeslice = 50;
+    public static int computer_leaked_runner_limit = 2;
+    public static int computer_runner_limit = 64;
+    public static long maxMainGlobalTime = TimeUnit.MILLISECONDS.toNanos( 10 );
+    public static int coroutine_limit = 2048;
+    public static int computer_coroutine_limit = 256;
     public static boolean logPeripheralErrors = false;
 
     public static boolean http_enable = true;
@@ -151,6 +155,8 @@ public class ComputerCraft
     public static long httpMaxUpload = 4 * 1024 * 1024;
     public static int httpMaxWebsockets = 4;
     public static int httpMaxWebsocketMessage = Websocket.MAX_MESSAGE_SIZE;
+    public static int httpMaxHostConnections = 8;
+    public static int httpKeepAlive = 30000;
 
     public static boolean enableCommandBlock = false;
     public static int modem_range = 64;
@@ -264,6 +270,10 @@ public class ComputerCraft
     )
     private static ICCTurtleProxy turtleProxy;
 
+    // Archives which resources are loaded from. These are opened once and shared by every mount, so their directory
+    // listings and the ResourceCache are reused.
+    private static final Map<File, FileSystem> zipFileSystems = new HashMap<>();
+
     @Mod.EventHandler
     public void preInit( FMLPreInitializationEvent event )
     {
@@ -498,7 +508,7 @@ public class ComputerCraft
         {
             try
             {
-                FileSystem fs = FileSystems.newFileSystem( modJar.toPath(), ComputerCraft.class.getClassLoader() );
+                FileSystem fs = getZipFileSystem( modJar );
                 mounts.add( new FileSystemMount( fs, subPath ) );
             }
             catch( IOException | RuntimeException | ServiceConfigurationError e )
@@ -521,7 +531,7 @@ public class ComputerCraft
                     if( !resourcePack.isDirectory() )
                     {
                         // Mount a resource pack from a jar
-                        FileSystem fs = FileSystems.newFileSystem( resourcePack.toPath(), ComputerCraft.class.getClassLoader() );
+                        FileSystem fs = getZipFileSystem( resourcePack );
                         if( Files.exists( fs.getPath( subPath ) ) ) mounts.add( new FileSystemMount( fs, subPath ) );
                     }
                     else
@@ -589,32 +599,13 @@ public class ComputerCraft
                 }
                 else
                 {
-                    ZipFile zipFile = null;
                     try
                     {
-                        final ZipFile zip = zipFile = new ZipFile( resourcePack );
-                        ZipEntry entry = zipFile.getEntry( subPath );
-                        if( entry != null )
-                        {
-                            // Return a custom InputStream which will close the original zip when finished.
-                            return new FilterInputStream( zipFile.getInputStream( entry ) )
-                            {
-                                @Override
-                                public void close() throws IOException
-                                {
-                                    super.close();
-                                    zip.close();
-                                }
-                            };
-                        }
-                        else
-                        {
-                            IoUtil.closeQuietly( zipFile );
-                        }
+                        Path path = getZipFileSystem( resourcePack ).getPath( subPath );
+                        if( Files.isRegularFile( path ) ) return ResourceCache.openForRead( path );
                     }
-                    catch( IOException e )
+                    catch( IOException | RuntimeException | ServiceConfigurationError ignored )
                     {
-                        if( zipFile != null ) IoUtil.closeQuietly( zipFile );
                     }
                 }
             }
@@ -641,6 +632,21 @@ public class ComputerCraft
         return modClass.getClassLoader().getResourceAsStream( subPath );
     }
 
+    private static FileSystem getZipFileSystem( File file ) throws IOException
+    {
+        file = file.getAbsoluteFile();
+        synchronized( zipFileSystems )
+        {
+            FileSystem fs = zipFileSystems.get( file );
+            if( fs == null || !fs.isOpen() )
+            {
+                fs = FileSystems.newFileSystem( file.toPath(), ComputerCraft.class.getClassLoader() );
+                zipFileSystems.put( file, fs );
+            }
+            return fs;
+        }
+    }
+
     private static File getContainingJar( Class<?> modClass )
     {
         String path = modClass.getProtectionDomain().getCodeSource().getLocation().getPath();
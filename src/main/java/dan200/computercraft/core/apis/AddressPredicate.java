@@ -11,49 +11,36 @@ import dan200.computercraft.ComputerCraft;
 
 import java.net.Inet6Address;
 import java.net.InetAddress;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.regex.Pattern;
 
 /**
  * Used to determine whether a domain or IP address matches a series of patterns.
+ *
+ * Patterns are compiled into lookup tables when constructed, so checking a host takes time proportional to its length,
+ * rather than to the number of patterns:
+ *
+ * <ul>
+ * <li>Exact names (such as {@code example.com}) are stored in a set.</li>
+ * <li>Wildcards at the start or end (such as {@code *.example.com} or {@code 192.168.*}) are stored in a trie of
+ * characters, read from the end or start of the host respectively.</li>
+ * <li>CIDR ranges (such as {@code 10.0.0.0/8}) are stored in a binary trie of address bits.</li>
+ * </ul>
+ *
+ * Any other wildcards (such as {@code a*b*c}) are matched with a regular expression. Domains are matched ignoring case.
  */
 public class AddressPredicate
 {
-    private static class HostRange
-    {
-        private final byte[] min;
-        private final byte[] max;
-
-        private HostRange( byte[] min, byte[] max )
-        {
-            this.min = min;
-            this.max = max;
-        }
-
-        public boolean contains( InetAddress address )
-        {
-            byte[] entry = address.getAddress();
-            if( entry.length != min.length ) return false;
-
-            for( int i = 0; i < entry.length; i++ )
-            {
-                int value = 0xFF & entry[i];
-                if( value < (0xFF & min[i]) || value > (0xFF & max[i]) ) return false;
-            }
+    private final Set<String> exact = new HashSet<>();
+    private final CharNode prefixes = new CharNode();
+    private final CharNode suffixes = new CharNode();
+    private final List<Pattern> wildcards = new ArrayList<>();
 
-            return true;
-        }
-    }
-
-    private final List<Pattern> wildcards;
-    private final List<HostRange> ranges;
+    private final BitNode ipv4 = new BitNode();
+    private final BitNode ipv6 = new BitNode();
 
     public AddressPredicate( String... filters )
     {
-        List<Pattern> wildcards = this.wildcards = new ArrayList<>();
-        List<HostRange> ranges = this.ranges = new ArrayList<>();
-
         for( String filter : filters )
         {
             int cidr = filter.indexOf( '/' );
@@ -84,30 +71,29 @@ public class AddressPredicate
                     continue;
                 }
 
-                // Mask the bytes of the IP address.
-                byte[] minBytes = address.getAddress(), maxBytes = address.getAddress();
-                int size = prefixSize;
-                for( int i = 0; i < minBytes.length; i++ )
-                {
-                    if( size <= 0 )
-                    {
-                        minBytes[i] &= 0;
-                        maxBytes[i] |= 0xFF;
-                    }
-                    else if( size < 8 )
-                    {
-                        minBytes[i] &= 0xFF << (8 - size);
-                        maxBytes[i] |= ~(0xFF << (8 - size));
-                    }
-
-                    size -= 8;
-                }
-
-                ranges.add( new HostRange( minBytes, maxBytes ) );
+                byte[] bytes = address.getAddress();
+                (bytes.length == 4 ? ipv4 : ipv6).add( bytes, Math.max( 0, Math.min( prefixSize, bytes.length * 8 ) ) );
             }
             else
             {
-                wildcards.add( Pattern.compile( "^\\Q" + filter.replaceAll( "\\*", "\\\\E.*\\\\Q" ) + "\\E$" ) );
+                String pattern = filter.toLowerCase( Locale.ROOT );
+                int first = pattern.indexOf( '*' ), last = pattern.lastIndexOf( '*' );
+                if( first < 0 )
+                {
+                    exact.add( pattern );
+                }
+                else if( first == 0 && last == 0 )
+                {
+                    suffixes.add( pattern, pattern.length() - 1, 0 );
+                }
+                else if( first == pattern.length() - 1 )
+                {
+                    prefixes.add( pattern, 0, pattern.length() - 1 );
+                }
+                else
+                {
+                    wildcards.add( Pattern.compile( "^\\Q" + pattern.replaceAll( "\\*", "\\\\E.*\\\\Q" ) + "\\E$" ) );
+                }
             }
         }
     }
@@ -116,16 +102,22 @@ public class AddressPredicate
      * Determine whether a host name matches a series of patterns.
      *
      * This is intended to allow early exiting, before one has to look up the IP address. You should use
-     * {@link #matches(InetAddress)} instead of/in addition to this one.
+     * {@link #matches(String, InetAddress)} instead of/in addition to this one.
      *
      * @param domain The domain to match.
      * @return Whether the patterns were matched.
      */
     public boolean matches( String domain )
     {
+        String host = domain.toLowerCase( Locale.ROOT );
+        if( exact.contains( host ) || prefixes.matches( host, 0, host.length() ) || suffixes.matches( host, host.length() - 1, -1 ) )
+        {
+            return true;
+        }
+
         for( Pattern domainPattern : wildcards )
         {
-            if( domainPattern.matcher( domain ).matches() ) return true;
+            if( domainPattern.matcher( host ).matches() ) return true;
         }
 
         return false;
@@ -133,30 +125,23 @@ public class AddressPredicate
 
     private boolean matchesAddress( InetAddress address )
     {
-        String addressString = address.getHostAddress();
-        for( Pattern domainPattern : wildcards )
-        {
-            if( domainPattern.matcher( addressString ).matches() ) return true;
-        }
+        if( matches( address.getHostAddress() ) ) return true;
 
-        for( HostRange range : ranges )
-        {
-            if( range.contains( address ) ) return true;
-        }
-
-        return false;
+        byte[] bytes = address.getAddress();
+        return (bytes.length == 4 ? ipv4 : ipv6).matches( bytes );
     }
 
     /**
      * Determine whether the given address matches a series of patterns
      *
+     * @param host    The host name this address was resolved from. We don't use {@link InetAddress#getHostName()}, as
+     *                this may perform a reverse lookup.
      * @param address The address to check.
      * @return Whether it matches any of these patterns.
      */
-    public boolean matches( InetAddress address )
+    public boolean matches( String host, InetAddress address )
     {
         // Match the host name
-        String host = address.getHostName();
         if( host != null && matches( host ) ) return true;
 
         // Match the normal address
@@ -165,6 +150,88 @@ public class AddressPredicate
         // If we're an IPv4 address in disguise then let's check that.
         return address instanceof Inet6Address && InetAddresses.is6to4Address( (Inet6Address) address )
             && matchesAddress( InetAddresses.get6to4IPv4Address( (Inet6Address) address ) );
+    }
+
+    /**
+     * A trie of characters, where a match is found once we reach the end of any pattern.
+     */
+    private static final class CharNode
+    {
+        private final Map<Character, CharNode> children = new HashMap<>();
+        private boolean terminal;
+
+        /**
+         * Add a pattern, reading characters from {@code start} up to (but excluding) {@code end}. This may read
+         * backwards, if {@code end < start}.
+         */
+        void add( String pattern, int start, int end )
+        {
+            int step = end >= start ? 1 : -1;
+            CharNode node = this;
+            for( int i = start; i != end; i += step )
+            {
+                node = node.children.computeIfAbsent( pattern.charAt( i ), x -> new CharNode() );
+            }
+            node.terminal = true;
+        }
+
+        boolean matches( String host, int start, int end )
+        {
+            int step = end >= start ? 1 : -1;
+            CharNode node = this;
+            for( int i = start; ; i += step )
+            {
+                if( node.terminal ) return true;
+                if( i == end ) return false;
+
+                node = node.children.get( host.charAt( i ) );
+                if( node == null ) return false;
+            }
+        }
+    }
+
+    /**
+     * A binary trie of address bits, where a match is found once we reach the end of any prefix.
+     */
+    private static final class BitNode
+    {
+        private BitNode zero, one;
+        private boolean terminal;
+
+        void add( byte[] address, int prefixSize )
+        {
+            BitNode node = this;
+            for( int i = 0; i < prefixSize && !node.terminal; i++ )
+            {
+                if( bit( address, i ) )
+                {
+                    if( node.one == null ) node.one = new BitNode();
+                    node = node.one;
+                }
+                else
+                {
+                    if( node.zero == null ) node.zero = new BitNode();
+                    node = node.zero;
+                }
+            }
+            node.terminal = true;
+        }
 
+        boolean matches( byte[] address )
+        {
+            BitNode node = this;
+            for( int i = 0; node != null; i++ )
+            {
+                if( node.terminal ) return true;
+                if( i == address.length * 8 ) return false;
+                node = bit( address, i ) ? node.one : node.zero;
+            }
+            return false;
+        }
+
+        private static boolean bit( byte[] address, int index )
+        {
+            return (address[index >> 3] & (0x80 >> (index & 7))) != 0;
+        }
     }
 }
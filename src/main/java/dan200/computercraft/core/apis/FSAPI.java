@@ -333,12 +333,8 @@ public class FSAPI implements ILuaAPI
                 try
                 {
                     m_env.addTrackingChange( TrackingField.FS_OPS );
-                    String[] results = m_fileSystem.find( path );
                     Map<Object, Object> table = new HashMap<>();
-                    for( int i = 0; i < results.length; i++ )
-                    {
-                        table.put( i + 1, results[i] );
-                    }
+                    m_fileSystem.find( path, result -> table.put( table.size() + 1, result ) );
                     return new Object[] { table };
                 }
                 catch( FileSystemException e )
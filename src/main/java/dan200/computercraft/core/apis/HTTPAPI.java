@@ -91,7 +91,7 @@ public class HTTPAPI implements ILuaAPI
             {
                 String address, postString, requestMethod;
                 Map<Object, Object> headerTable;
-                boolean binary, redirect;
+                boolean binary, redirect, stream, compress;
 
                 if( args.length >= 1 && args[0] instanceof Map )
                 {
@@ -102,7 +102,8 @@ public class HTTPAPI implements ILuaAPI
                     binary = optBooleanField( options, "binary", false );
                     requestMethod = optStringField( options, "method", null );
                     redirect = optBooleanField( options, "redirect", true );
-
+                    stream = optBooleanField( options, "stream", false );
+                    compress = optBooleanField( options, "compress", false );
                 }
                 else
                 {
@@ -113,6 +114,8 @@ public class HTTPAPI implements ILuaAPI
                     binary = optBoolean( args, 3, false );
                     requestMethod = null;
                     redirect = true;
+                    stream = false;
+                    compress = false;
                 }
 
                 HttpHeaders headers = getHeaders( headerTable );
@@ -136,7 +139,7 @@ public class HTTPAPI implements ILuaAPI
                 {
                     URI uri = HttpRequest.checkUri( address );
 
-                    HttpRequest request = new HttpRequest( requests, m_apiEnvironment, address, postString, headers, binary, redirect );
+                    HttpRequest request = new HttpRequest( requests, m_apiEnvironment, address, postString, headers, binary, redirect, stream, compress );
 
                     long requestBody = request.body().readableBytes() + HttpRequest.getHeaderSize( headers );
                     if( ComputerCraft.httpMaxUpload != 0 && requestBody > ComputerCraft.httpMaxUpload )
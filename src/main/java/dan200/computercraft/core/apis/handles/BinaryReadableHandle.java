@@ -28,12 +28,20 @@ public class BinaryReadableHandle extends HandleGeneric
 {
     private static final int BUFFER_SIZE = 8192;
 
+    /**
+     * The most we read from the channel at once when filling a large array. Reading into a heap buffer from a
+     * {@link java.nio.channels.FileChannel} goes through a temporary direct buffer of the same size, which is then
+     * cached per-thread, so we avoid handing it the whole array.
+     */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
     private static final String[] METHOD_NAMES = new String[] { "read", "readAll", "readLine", "close" };
     private static final String[] METHOD_SEEK_NAMES = ObjectArrays.concat( METHOD_NAMES, new String[] { "seek" }, String.class );
 
     private final ReadableByteChannel m_reader;
     private final SeekableByteChannel m_seekable;
     private final ByteBuffer single = ByteBuffer.allocate( 1 );
+    private ByteBuffer m_lineBuffer;
 
     public BinaryReadableHandle( ReadableByteChannel channel, Closeable closeable )
     {
@@ -63,6 +71,7 @@ public class BinaryReadableHandle extends HandleGeneric
                 checkOpen();
                 try
                 {
+                    discardLineBuffer();
                     if( args.length > 0 && args[0] != null )
                     {
                         int count = getInt( args, 0 );
@@ -75,7 +84,14 @@ public class BinaryReadableHandle extends HandleGeneric
                             return m_seekable.position() >= m_seekable.size() ? null : new Object[] { "" };
                         }
 
-                        if( count <= BUFFER_SIZE )
+                        if( count > BUFFER_SIZE && m_seekable != null )
+                        {
+                            // We know how much is left, so can read everything in one go.
+                            long remaining = m_seekable.size() - m_seekable.position();
+                            if( remaining <= 0 ) return null;
+                            return new Object[] { readFully( (int) Math.min( count, remaining ) ) };
+                        }
+                        else if( count <= BUFFER_SIZE )
                         {
                             ByteBuffer buffer = ByteBuffer.allocate( count );
 
@@ -137,12 +153,15 @@ public class BinaryReadableHandle extends HandleGeneric
                 checkOpen();
                 try
                 {
-                    int expected = 32;
+                    discardLineBuffer();
                     if( m_seekable != null )
                     {
-                        expected = Math.max( expected, (int) (m_seekable.size() - m_seekable.position()) );
+                        long remaining = m_seekable.size() - m_seekable.position();
+                        if( remaining <= 0 ) return null;
+                        if( remaining < Integer.MAX_VALUE ) return new Object[] { readFully( (int) remaining ) };
                     }
-                    ByteArrayOutputStream stream = new ByteArrayOutputStream( expected );
+
+                    ByteArrayOutputStream stream = new ByteArrayOutputStream( 32 );
 
                     ByteBuffer buf = ByteBuffer.allocate( 8192 );
                     boolean readAnything = false;
@@ -167,6 +186,8 @@ public class BinaryReadableHandle extends HandleGeneric
                 boolean withTrailing = optBoolean( args, 0, false );
                 try
                 {
+                    if( m_seekable != null ) return readLineBuffered( withTrailing );
+
                     ByteArrayOutputStream stream = new ByteArrayOutputStream();
 
                     boolean readAnything = false;
@@ -201,9 +222,103 @@ public class BinaryReadableHandle extends HandleGeneric
                 return null;
             case 4: // seek
                 checkOpen();
+                try
+                {
+                    discardLineBuffer();
+                }
+                catch( IOException e )
+                {
+                    return new Object[] { null, e.getMessage() };
+                }
                 return handleSeek( m_seekable, args );
             default:
                 return null;
         }
     }
+
+    /**
+     * Read a known number of bytes from the seekable channel, stopping early if it ends.
+     *
+     * @param count The number of bytes to read. This should be no more than the remaining length of the channel.
+     * @return The bytes which were read.
+     * @throws IOException If the channel could not be read.
+     */
+    private byte[] readFully( int count ) throws IOException
+    {
+        byte[] bytes = new byte[count];
+        int offset = 0;
+        while( offset < count )
+        {
+            int read = m_reader.read( ByteBuffer.wrap( bytes, offset, Math.min( CHUNK_SIZE, count - offset ) ) );
+            if( read < 0 ) break;
+            offset += read;
+        }
+
+        return offset < count ? Arrays.copyOf( bytes, offset ) : bytes;
+    }
+
+    /**
+     * Read a line from the seekable channel. Rather than reading a byte at a time, we read ahead into a buffer and
+     * keep the remainder for the next line. Any other operation must call {@link #discardLineBuffer()} first.
+     *
+     * @param withTrailing Whether to include the trailing newline.
+     * @return The line which was read, or {@code null} if the channel has ended.
+     * @throws IOException If the channel could not be read.
+     */
+    private Object[] readLineBuffered( boolean withTrailing ) throws IOException
+    {
+        ByteBuffer buffer = m_lineBuffer;
+        if( buffer == null )
+        {
+            buffer = m_lineBuffer = ByteBuffer.allocate( BUFFER_SIZE );
+            buffer.limit( 0 );
+        }
+        byte[] array = buffer.array();
+
+        ByteArrayOutputStream stream = null;
+        while( true )
+        {
+            if( !buffer.hasRemaining() )
+            {
+                buffer.clear();
+                int read = m_reader.read( buffer );
+                buffer.flip();
+                if( read == -1 ) break;
+            }
+
+            int start = buffer.position(), end = buffer.limit();
+            for( int i = start; i < end; i++ )
+            {
+                if( array[i] != '\n' ) continue;
+
+                buffer.position( i + 1 );
+                int length = (withTrailing ? i + 1 : i) - start;
+                if( stream == null ) return new Object[] { Arrays.copyOfRange( array, start, start + length ) };
+
+                stream.write( array, start, length );
+                return new Object[] { stream.toByteArray() };
+            }
+
+            if( stream == null ) stream = new ByteArrayOutputStream( BUFFER_SIZE * 2 );
+            stream.write( array, start, end - start );
+            buffer.position( end );
+        }
+
+        return stream == null ? null : new Object[] { stream.toByteArray() };
+    }
+
+    /**
+     * Seek the channel back to the end of the last line read by {@link #readLineBuffered(boolean)}, dropping anything
+     * which was read ahead.
+     *
+     * @throws IOException If the channel could not be seeked.
+     */
+    private void discardLineBuffer() throws IOException
+    {
+        ByteBuffer buffer = m_lineBuffer;
+        if( buffer == null || !buffer.hasRemaining() ) return;
+
+        m_seekable.position( m_seekable.position() - buffer.remaining() );
+        buffer.limit( 0 );
+    }
 }
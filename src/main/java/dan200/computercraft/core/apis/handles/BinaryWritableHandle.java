@@ -14,6 +14,7 @@ import dan200.computercraft.shared.util.StringUtil;
 
 import javax.annotation.Nonnull;
 import java.io.Closeable;
+import java.io.Flushable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
@@ -85,6 +86,8 @@ public class BinaryWritableHandle extends HandleGeneric
                 checkOpen();
                 try
                 {
+                    if( m_writer instanceof Flushable ) ((Flushable) m_writer).flush();
+
                     // Technically this is not needed
                     if( m_writer instanceof FileChannel ) ((FileChannel) m_writer).force( false );
 
@@ -12,9 +12,9 @@ import java.net.URI;
 import java.util.concurrent.Future;
 
 /**
- * Checks a URL using {@link NetworkUtils#getAddress(String, int, boolean)}}
+ * Checks a URL using {@link NetworkUtils#resolve(String, int, boolean)}
  *
- * This requires a DNS lookup, and so needs to occur off-thread.
+ * This requires a DNS lookup, which is performed asynchronously.
  */
 public class CheckUrl extends Resource<CheckUrl>
 {
@@ -37,25 +37,22 @@ public class CheckUrl extends Resource<CheckUrl>
     public void run()
     {
         if( isClosed() ) return;
-        future = NetworkUtils.EXECUTOR.submit( this::doRun );
+        future = NetworkUtils.resolve( host, 80, false ).addListener( r -> {
+            if( !tryClose() ) return;
+
+            if( r.isSuccess() )
+            {
+                environment.queueEvent( EVENT, new Object[] { address, true } );
+            }
+            else
+            {
+                String message = r.cause() instanceof HTTPRequestException ? r.cause().getMessage() : "Unknown host";
+                environment.queueEvent( EVENT, new Object[] { address, false, message } );
+            }
+        } );
         checkClosed();
     }
 
-    private void doRun()
-    {
-        if( isClosed() ) return;
-
-        try
-        {
-            NetworkUtils.getAddress( host, 80, false );
-            if( tryClose() ) environment.queueEvent( EVENT, new Object[] { address, true } );
-        }
-        catch( HTTPRequestException e )
-        {
-            if( tryClose() ) environment.queueEvent( EVENT, new Object[] { address, false, e.getMessage() } );
-        }
-    }
-
     @Override
     protected void dispose()
     {
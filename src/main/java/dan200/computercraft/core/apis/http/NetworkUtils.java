@@ -11,33 +11,27 @@ import dan200.computercraft.shared.util.ThreadUtils;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.resolver.dns.DefaultDnsCache;
+import io.netty.resolver.dns.DnsNameResolver;
+import io.netty.resolver.dns.DnsNameResolverBuilder;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.netty.util.concurrent.Promise;
 
 import javax.net.ssl.SSLException;
 import javax.net.ssl.TrustManagerFactory;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.security.KeyStore;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Just a shared object for executing simple HTTP related tasks.
  */
 public final class NetworkUtils
 {
-    public static final ExecutorService EXECUTOR = new ThreadPoolExecutor(
-        4, Integer.MAX_VALUE,
-        60L, TimeUnit.SECONDS,
-        new SynchronousQueue<>(),
-        ThreadUtils.builder( "Network" )
-            .setPriority( Thread.MIN_PRIORITY + (Thread.NORM_PRIORITY - Thread.MIN_PRIORITY) / 2 )
-            .build()
-    );
-
     public static final EventLoopGroup LOOP_GROUP = new NioEventLoopGroup( 4, ThreadUtils.builder( "Netty" )
         .setPriority( Thread.MIN_PRIORITY + (Thread.NORM_PRIORITY - Thread.MIN_PRIORITY) / 2 )
         .build()
@@ -52,6 +46,19 @@ public final class NetworkUtils
     private static SslContext sslContext;
     private static boolean triedSslContext = false;
 
+    /**
+     * The longest time we cache a DNS record for, in seconds, regardless of its TTL.
+     */
+    private static final int MAX_DNS_TTL = 300;
+
+    /**
+     * How long we remember a host could not be found, in seconds.
+     */
+    private static final int NEGATIVE_DNS_TTL = 10;
+
+    private static final Object resolverLock = new Object();
+    private static DnsNameResolver resolver;
+
     private static TrustManagerFactory getTrustManager()
     {
         if( trustManager != null ) return trustManager;
@@ -112,31 +119,55 @@ public final class NetworkUtils
         }
     }
 
+    private static DnsNameResolver getResolver()
+    {
+        if( resolver != null ) return resolver;
+        synchronized( resolverLock )
+        {
+            if( resolver != null ) return resolver;
+            return resolver = new DnsNameResolverBuilder( LOOP_GROUP.next() )
+                .channelType( NioDatagramChannel.class )
+                .resolveCache( new DefaultDnsCache( 0, MAX_DNS_TTL, NEGATIVE_DNS_TTL ) )
+                .build();
+        }
+    }
+
     /**
-     * Create a {@link InetSocketAddress} from the resolved {@code host} and port.
+     * Resolve {@code host} and check the resulting address is allowed.
      *
-     * Note, this may require a DNS lookup, and so should not be executed on the main CC thread.
+     * This does not block: the lookup is performed on Netty's event loop, and recent results are cached for at most
+     * {@link #MAX_DNS_TTL} seconds.
      *
      * @param host The host to resolve.
      * @param port The port, or -1 if not defined.
      * @param ssl  Whether to connect with SSL. This is used to find the default port if not otherwise specified.
-     * @return The resolved address.
-     * @throws HTTPRequestException If the host is not permitted.
+     * @return A future which completes with the resolved address, or fails with a {@link HTTPRequestException} if the
+     * host could not be found or is not permitted.
      */
-    public static InetSocketAddress getAddress( String host, int port, boolean ssl ) throws HTTPRequestException
+    public static Future<InetSocketAddress> resolve( String host, int port, boolean ssl )
     {
-        if( port < 0 ) port = ssl ? 443 : 80;
+        int actualPort = port < 0 ? (ssl ? 443 : 80) : port;
 
-        InetSocketAddress socketAddress = new InetSocketAddress( host, port );
-        if( socketAddress.isUnresolved() ) throw new HTTPRequestException( "Unknown host" );
+        Promise<InetSocketAddress> promise = ImmediateEventExecutor.INSTANCE.newPromise();
+        getResolver().resolve( host ).addListener( ( Future<InetAddress> result ) -> {
+            if( !result.isSuccess() )
+            {
+                promise.tryFailure( new HTTPRequestException( "Unknown host" ) );
+                return;
+            }
 
-        InetAddress address = socketAddress.getAddress();
-        if( !ComputerCraft.http_whitelist.matches( address ) || ComputerCraft.http_blacklist.matches( address ) )
-        {
-            throw new HTTPRequestException( "Domain not permitted" );
-        }
+            // We pass the host through explicitly, as InetAddress.getHostName may perform a reverse lookup.
+            InetAddress address = result.getNow();
+            if( !ComputerCraft.http_whitelist.matches( host, address ) || ComputerCraft.http_blacklist.matches( host, address ) )
+            {
+                promise.tryFailure( new HTTPRequestException( "Domain not permitted" ) );
+                return;
+            }
+
+            promise.trySuccess( new InetSocketAddress( address, actualPort ) );
+        } );
 
-        return socketAddress;
+        return promise;
     }
 
     /**
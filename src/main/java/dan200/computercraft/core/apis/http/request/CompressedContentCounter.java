@@ -0,0 +1,65 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http.request;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.core.tracking.TrackingField;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * Counts the body of an encoded response before it reaches the {@link io.netty.handler.codec.http.HttpContentDecompressor}.
+ *
+ * The decoded body is counted (and limited) by {@link HttpRequestHandler} as normal. We additionally track the size of
+ * the compressed body under {@link TrackingField#HTTP_DOWNLOAD_COMPRESSED}, and apply {@link ComputerCraft#httpMaxDownload}
+ * to it too.
+ */
+final class CompressedContentCounter extends ChannelInboundHandlerAdapter
+{
+    private final HttpRequest request;
+    private final HttpRequestHandler handler;
+
+    private boolean compressed;
+    private long received;
+
+    CompressedContentCounter( HttpRequest request, HttpRequestHandler handler )
+    {
+        this.request = request;
+        this.handler = handler;
+    }
+
+    @Override
+    public void channelRead( ChannelHandlerContext ctx, Object message )
+    {
+        if( message instanceof HttpResponse )
+        {
+            String encoding = ((HttpResponse) message).headers().get( HttpHeaderNames.CONTENT_ENCODING );
+            compressed = encoding != null && !HttpHeaderValues.IDENTITY.contentEqualsIgnoreCase( encoding.trim() );
+        }
+
+        if( compressed && message instanceof HttpContent )
+        {
+            int length = ((HttpContent) message).content().readableBytes();
+            request.environment().addTrackingChange( TrackingField.HTTP_DOWNLOAD_COMPRESSED, length );
+
+            received += length;
+            if( ComputerCraft.httpMaxDownload != 0 && received > ComputerCraft.httpMaxDownload )
+            {
+                ReferenceCountUtil.release( message );
+                handler.tooLarge( ctx );
+                return;
+            }
+        }
+
+        ctx.fireChannelRead( message );
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http.request;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.core.apis.http.NetworkUtils;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.pool.FixedChannelPool;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.ssl.SslContext;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import javax.annotation.Nullable;
+import java.net.InetSocketAddress;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps connections to each host open between requests, so repeated requests to the same server don't need to
+ * connect and perform a TLS handshake each time.
+ *
+ * Each host has its own pool of at most {@link ComputerCraft#httpMaxHostConnections} connections. Requests beyond that
+ * wait for another to finish. Connections are closed once they have been idle for {@link ComputerCraft#httpKeepAlive}
+ * milliseconds, or if the server did not want to keep them alive. Once a pool has no open connections and no requests
+ * using it, it is closed and forgotten, so the next request to that host creates a new pool with the current config.
+ *
+ * Each pooled channel's pipeline holds the SSL handler and HTTP codec, which live as long as the connection. Handlers
+ * for a single request are added by {@link HttpRequest}, and removed when the channel is released.
+ */
+final class HttpConnectionPool
+{
+    /**
+     * The most hosts we keep connections open to at once. Requests to any other hosts use a new connection each time.
+     */
+    private static final int MAX_HOSTS = 256;
+
+    static final String CODEC_HANDLER = "http";
+    static final String COMPRESSED_HANDLER = "compressed";
+    static final String DECOMPRESSOR_HANDLER = "decompressor";
+    static final String REQUEST_HANDLER = "handler";
+
+    private static final AttributeKey<HostPool> POOL = AttributeKey.valueOf( "computercraft:pool" );
+    private static final AttributeKey<Boolean> REUSED = AttributeKey.valueOf( "computercraft:reused" );
+    private static final AttributeKey<ScheduledFuture<?>> IDLE = AttributeKey.valueOf( "computercraft:idle" );
+
+    private static final ConcurrentMap<Key, HostPool> pools = new ConcurrentHashMap<>();
+
+    private HttpConnectionPool()
+    {
+    }
+
+    /**
+     * Get a connection to a server, either reusing an idle one or opening a new one.
+     *
+     * @param address    The address to connect to.
+     * @param sslContext The SSL context to use, or {@code null} if this is an insecure connection.
+     * @param host       The host name, used to verify the server's certificate.
+     * @return A future which completes with the connection, which should be passed to
+     * {@link #release(Channel, boolean)} once the request is finished.
+     */
+    static Future<Channel> acquire( InetSocketAddress address, @Nullable SslContext sslContext, String host )
+    {
+        Key key = new Key( address, sslContext, host );
+        HostPool pool = getPool( key );
+        if( pool != null )
+        {
+            // The pool stays open until this connection is released, or until we failed to acquire one.
+            Future<Channel> channel = pool.pool.acquire();
+            channel.addListener( c -> {
+                if( !c.isSuccess() ) pool.release();
+            } );
+            return channel;
+        }
+
+        // If we're not pooling connections, then just open a new one.
+        ChannelFuture connect = createBootstrap( key ).handler( new ChannelInitializer<SocketChannel>()
+        {
+            @Override
+            protected void initChannel( SocketChannel ch )
+            {
+                setupChannel( ch, key );
+            }
+        } ).connect();
+
+        Promise<Channel> promise = connect.channel().eventLoop().newPromise();
+        connect.addListener( c -> {
+            if( c.isSuccess() )
+            {
+                promise.trySuccess( connect.channel() );
+            }
+            else
+            {
+                promise.tryFailure( c.cause() );
+            }
+        } );
+        return promise;
+    }
+
+    /**
+     * Return a connection to its pool once a request has finished.
+     *
+     * @param channel The connection to release.
+     * @param reuse   Whether this connection can be used again. This is only the case when the whole response has been
+     *                read and the server did not ask to close the connection.
+     * @return A future which completes once the connection has been released.
+     */
+    static Future<Void> release( Channel channel, boolean reuse )
+    {
+        HostPool pool = channel.attr( POOL ).get();
+        if( pool == null ) return channel.close();
+
+        Promise<Void> released = channel.eventLoop().newPromise();
+        if( reuse && channel.isActive() )
+        {
+            pool.pool.release( channel ).addListener( r -> {
+                pool.release();
+                released.trySuccess( null );
+            } );
+        }
+        else
+        {
+            // The pool will refuse to take back a closed channel, but still needs to know it is no longer in use.
+            channel.close().addListener( c -> pool.pool.release( channel ).addListener( r -> {
+                pool.release();
+                released.trySuccess( null );
+            } ) );
+        }
+        return released;
+    }
+
+    /**
+     * Whether this connection has been used for a previous request.
+     *
+     * @param channel The connection to check.
+     * @return If this connection was reused.
+     */
+    static boolean isReused( Channel channel )
+    {
+        return channel.attr( REUSED ).get() == Boolean.TRUE;
+    }
+
+    /**
+     * Whether this connection belongs to a pool, and so should be kept alive.
+     *
+     * @param channel The connection to check.
+     * @return If this connection is pooled.
+     */
+    static boolean isPooled( Channel channel )
+    {
+        return channel.attr( POOL ).get() != null;
+    }
+
+    /**
+     * Whether we currently have a pool of connections to a server.
+     *
+     * @param address    The server's address.
+     * @param sslContext The SSL context, or {@code null} for insecure connections.
+     * @param host       The server's host name.
+     * @return If a pool exists for this server.
+     */
+    static boolean hasPool( InetSocketAddress address, @Nullable SslContext sslContext, String host )
+    {
+        return pools.containsKey( new Key( address, sslContext, host ) );
+    }
+
+    /**
+     * Get the pool for a server, creating it if needed. The returned pool has been {@link HostPool#retain() retained},
+     * and so must be released once the caller is done with it.
+     *
+     * @param key The server to connect to.
+     * @return The server's pool, or {@code null} if we are not pooling connections to it.
+     */
+    @Nullable
+    private static HostPool getPool( Key key )
+    {
+        if( ComputerCraft.httpKeepAlive <= 0 ) return null;
+
+        while( true )
+        {
+            HostPool pool = pools.get( key );
+            if( pool == null )
+            {
+                if( pools.size() >= MAX_HOSTS ) return null;
+                pool = pools.computeIfAbsent( key, HostPool::new );
+            }
+
+            if( pool.retain() ) return pool;
+
+            // This pool has just been closed, so remove it (if it's still there) and try again.
+            pools.remove( key, pool );
+        }
+    }
+
+    private static Bootstrap createBootstrap( Key key )
+    {
+        Bootstrap bootstrap = new Bootstrap()
+            .group( NetworkUtils.LOOP_GROUP )
+            .channelFactory( NioSocketChannel::new )
+            .remoteAddress( key.address );
+
+        if( ComputerCraft.httpTimeout > 0 ) bootstrap.option( ChannelOption.CONNECT_TIMEOUT_MILLIS, ComputerCraft.httpTimeout );
+        return bootstrap;
+    }
+
+    private static void setupChannel( Channel ch, Key key )
+    {
+        ChannelPipeline p = ch.pipeline();
+        if( key.sslContext != null )
+        {
+            p.addLast( key.sslContext.newHandler( ch.alloc(), key.host, key.address.getPort() ) );
+        }
+        p.addLast( CODEC_HANDLER, new HttpClientCodec() );
+    }
+
+    /**
+     * A pool of connections to a single server, which is closed once nothing is using it.
+     *
+     * We count a reference for each open connection, and for each caller of {@link #acquire} until they release their
+     * connection. When this falls to zero (typically once the last idle connection has been closed), the pool is
+     * removed from {@link #pools} and closed.
+     */
+    private static final class HostPool extends AbstractChannelPoolHandler
+    {
+        private final Key key;
+        final ChannelPool pool;
+
+        private int references;
+        private boolean closed;
+
+        HostPool( Key key )
+        {
+            this.key = key;
+            this.pool = new FixedChannelPool(
+                createBootstrap( key ), this, ChannelHealthChecker.ACTIVE,
+                ComputerCraft.httpTimeout > 0 ? FixedChannelPool.AcquireTimeoutAction.FAIL : null,
+                ComputerCraft.httpTimeout > 0 ? ComputerCraft.httpTimeout : -1,
+                ComputerCraft.httpMaxHostConnections, Integer.MAX_VALUE
+            );
+        }
+
+        /**
+         * Add a reference to this pool, keeping it open.
+         *
+         * @return Whether the reference was added. If {@code false}, the pool has already been closed.
+         */
+        synchronized boolean retain()
+        {
+            if( closed ) return false;
+            references++;
+            return true;
+        }
+
+        /**
+         * Remove a reference to this pool, closing it if nothing else is using it.
+         */
+        void release()
+        {
+            synchronized( this )
+            {
+                if( --references > 0 ) return;
+                closed = true;
+            }
+
+            pools.remove( key, this );
+            pool.close();
+        }
+
+        @Override
+        public void channelCreated( Channel ch )
+        {
+            // A connection is only created while acquiring one, so we already hold a reference and cannot be closed.
+            retain();
+            ch.closeFuture().addListener( c -> release() );
+
+            ch.attr( POOL ).set( this );
+            setupChannel( ch, key );
+        }
+
+        @Override
+        public void channelAcquired( Channel ch )
+        {
+            ScheduledFuture<?> idle = ch.attr( IDLE ).getAndSet( null );
+            if( idle != null ) idle.cancel( false );
+        }
+
+        @Override
+        public void channelReleased( Channel ch )
+        {
+            ChannelPipeline p = ch.pipeline();
+            for( String name : new String[] { HttpRequest.TIMEOUT_HANDLER, COMPRESSED_HANDLER, DECOMPRESSOR_HANDLER, REQUEST_HANDLER } )
+            {
+                if( p.get( name ) != null ) p.remove( name );
+            }
+
+            // A streamed response may have stopped reading from this channel.
+            ch.config().setAutoRead( true );
+
+            ch.attr( REUSED ).set( Boolean.TRUE );
+            ch.attr( IDLE ).set( ch.eventLoop().schedule( () -> {
+                ch.close();
+            }, ComputerCraft.httpKeepAlive, TimeUnit.MILLISECONDS ) );
+        }
+    }
+
+    private static final class Key
+    {
+        final InetSocketAddress address;
+        final SslContext sslContext;
+        final String host;
+
+        Key( InetSocketAddress address, SslContext sslContext, String host )
+        {
+            this.address = address;
+            this.sslContext = sslContext;
+            this.host = host;
+        }
+
+        @Override
+        public boolean equals( Object o )
+        {
+            if( this == o ) return true;
+            if( !(o instanceof Key) ) return false;
+
+            Key other = (Key) o;
+            return address.equals( other.address ) && sslContext == other.sslContext && host.equals( other.host );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash( address, sslContext, host );
+        }
+    }
+}
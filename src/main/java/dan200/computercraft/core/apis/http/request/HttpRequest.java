@@ -14,21 +14,18 @@ import dan200.computercraft.core.apis.http.NetworkUtils;
 import dan200.computercraft.core.apis.http.Resource;
 import dan200.computercraft.core.apis.http.ResourceGroup;
 import dan200.computercraft.core.tracking.TrackingField;
-import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
-import io.netty.channel.ChannelFuture;
-import io.netty.channel.ChannelInitializer;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.ConnectTimeoutException;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.TooLongFrameException;
 import io.netty.handler.codec.http.*;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.timeout.ReadTimeoutException;
 import io.netty.handler.timeout.ReadTimeoutHandler;
 
+import java.lang.ref.WeakReference;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -37,6 +34,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -49,9 +47,16 @@ public class HttpRequest extends Resource<HttpRequest>
 
     private static final int MAX_REDIRECTS = 16;
 
-    private Future<?> executorFuture;
-    private ChannelFuture connectFuture;
+    /**
+     * The name of the {@link ReadTimeoutHandler} in the channel's pipeline.
+     */
+    static final String TIMEOUT_HANDLER = "timeout";
+
+    private Future<?> resolveFuture;
+    private Channel channel;
+    private boolean retried;
     private HttpRequestHandler currentRequest;
+    private WeakReference<ILuaObject> responseHandle;
 
     private final IAPIEnvironment environment;
 
@@ -59,10 +64,12 @@ public class HttpRequest extends Resource<HttpRequest>
     private final ByteBuf postBuffer;
     private final HttpHeaders headers;
     private final boolean binary;
+    private final boolean stream;
+    private final boolean compress;
 
     final AtomicInteger redirects;
 
-    public HttpRequest( ResourceGroup<HttpRequest> limiter, IAPIEnvironment environment, String address, String postText, HttpHeaders headers, boolean binary, boolean followRedirects )
+    public HttpRequest( ResourceGroup<HttpRequest> limiter, IAPIEnvironment environment, String address, String postText, HttpHeaders headers, boolean binary, boolean followRedirects, boolean stream, boolean compress )
     {
         super( limiter );
         this.environment = environment;
@@ -72,6 +79,8 @@ public class HttpRequest extends Resource<HttpRequest>
             : Unpooled.buffer( 0 );
         this.headers = headers;
         this.binary = binary;
+        this.stream = stream;
+        this.compress = compress;
         this.redirects = new AtomicInteger( followRedirects ? MAX_REDIRECTS : 0 );
 
         if( postText != null )
@@ -124,68 +133,82 @@ public class HttpRequest extends Resource<HttpRequest>
     }
 
     public void request( URI uri, HttpMethod method )
+    {
+        request( uri, method, false );
+    }
+
+    private void request( URI uri, HttpMethod method, boolean retry )
     {
         if( isClosed() ) return;
-        executorFuture = NetworkUtils.EXECUTOR.submit( () -> doRequest( uri, method ) );
+
+        boolean ssl = uri.getScheme().equalsIgnoreCase( "https" );
+        resolveFuture = NetworkUtils.resolve( uri.getHost(), uri.getPort(), ssl ).addListener( r -> {
+            if( r.isSuccess() )
+            {
+                doRequest( uri, method, ssl, (InetSocketAddress) r.getNow(), retry );
+            }
+            else
+            {
+                failure( r.cause() );
+            }
+        } );
         checkClosed();
     }
 
-    private void doRequest( URI uri, HttpMethod method )
+    private void doRequest( URI uri, HttpMethod method, boolean ssl, InetSocketAddress socketAddress, boolean retry )
     {
-        // If we're cancelled, abort.
+        // If we were cancelled while resolving the host, abort.
         if( isClosed() ) return;
 
         try
         {
-            boolean ssl = uri.getScheme().equalsIgnoreCase( "https" );
-            InetSocketAddress socketAddress = NetworkUtils.getAddress( uri.getHost(), uri.getPort(), ssl );
             SslContext sslContext = ssl ? NetworkUtils.getSslContext() : null;
 
-            // getAddress may have a slight delay, so let's perform another cancellation check.
-            if( isClosed() ) return;
+            // Add request size to the tracker before opening the connection. A retry is the same request, so has
+            // already been counted.
+            if( !retry )
+            {
+                environment.addTrackingChange( TrackingField.HTTP_REQUESTS, 1 );
+                environment.addTrackingChange( TrackingField.HTTP_UPLOAD, getHeaderSize( headers ) + postBuffer.capacity() );
+            }
 
-            // Add request size to the tracker before opening the connection
-            environment.addTrackingChange( TrackingField.HTTP_REQUESTS, 1 );
-            environment.addTrackingChange( TrackingField.HTTP_UPLOAD, getHeaderSize( headers ) + postBuffer.capacity() );
+            // If we're following a redirect, we're done with the previous connection.
+            releaseChannel( false );
 
             HttpRequestHandler handler = currentRequest = new HttpRequestHandler( this, uri, method );
-            connectFuture = new Bootstrap()
-                .group( NetworkUtils.LOOP_GROUP )
-                .channelFactory( NioSocketChannel::new )
-                .handler( new ChannelInitializer<SocketChannel>()
+            HttpConnectionPool.acquire( socketAddress, sslContext, uri.getHost() ).addListener( c -> {
+                if( !c.isSuccess() )
+                {
+                    failure( c.cause() );
+                    return;
+                }
+
+                // If we were cancelled while connecting, hand the connection straight back.
+                Channel channel = (Channel) c.getNow();
+                boolean cancelled;
+                synchronized( this )
                 {
-                    @Override
-                    protected void initChannel( SocketChannel ch )
-                    {
-
-                        if( ComputerCraft.httpTimeout > 0 )
-                        {
-                            ch.config().setConnectTimeoutMillis( ComputerCraft.httpTimeout );
-                        }
-
-                        ChannelPipeline p = ch.pipeline();
-                        if( sslContext != null )
-                        {
-                            p.addLast( sslContext.newHandler( ch.alloc(), uri.getHost(), socketAddress.getPort() ) );
-                        }
-
-                        if( ComputerCraft.httpTimeout > 0 )
-                        {
-                            p.addLast( new ReadTimeoutHandler( ComputerCraft.httpTimeout, TimeUnit.MILLISECONDS ) );
-                        }
-
-                        p.addLast(
-                            new HttpClientCodec(),
-                            new HttpContentDecompressor(),
-                            handler
-                        );
-                    }
-                } )
-                .remoteAddress( socketAddress )
-                .connect()
-                .addListener( c -> {
-                    if( !c.isSuccess() ) failure( c.cause() );
-                } );
+                    cancelled = isClosed();
+                    if( !cancelled ) this.channel = channel;
+                }
+
+                if( cancelled )
+                {
+                    HttpConnectionPool.release( channel, true );
+                    return;
+                }
+
+                environment.addTrackingChange( HttpConnectionPool.isReused( channel ) ? TrackingField.HTTP_REUSED : TrackingField.HTTP_CONNECTIONS, 1 );
+
+                ChannelPipeline p = channel.pipeline();
+                if( ComputerCraft.httpTimeout > 0 )
+                {
+                    p.addLast( TIMEOUT_HANDLER, new ReadTimeoutHandler( ComputerCraft.httpTimeout, TimeUnit.MILLISECONDS ) );
+                }
+                p.addLast( HttpConnectionPool.COMPRESSED_HANDLER, new CompressedContentCounter( this, handler ) );
+                p.addLast( HttpConnectionPool.DECOMPRESSOR_HANDLER, new HttpContentDecompressor() );
+                p.addLast( HttpConnectionPool.REQUEST_HANDLER, handler );
+            } );
 
             // Do an additional check for cancellation
             checkClosed();
@@ -201,6 +224,43 @@ public class HttpRequest extends Resource<HttpRequest>
         }
     }
 
+    /**
+     * Retry this request on a new connection. This is used when a reused connection was closed before we sent the
+     * request, as the server may have closed it just as we started sending.
+     *
+     * @param uri    The URI to request.
+     * @param method The method to request it with.
+     * @return Whether we are retrying. We only do so once, otherwise the request should fail.
+     */
+    boolean retry( URI uri, HttpMethod method )
+    {
+        synchronized( this )
+        {
+            if( retried ) return false;
+            retried = true;
+        }
+
+        request( uri, method, true );
+        return true;
+    }
+
+    /**
+     * Release the connection we are using, either returning it to the pool or closing it.
+     *
+     * @param reuse Whether the connection can be used for another request.
+     */
+    void releaseChannel( boolean reuse )
+    {
+        Channel channel;
+        synchronized( this )
+        {
+            channel = this.channel;
+            this.channel = null;
+        }
+
+        if( channel != null ) HttpConnectionPool.release( channel, reuse );
+    }
+
     void failure( String message )
     {
         if( tryClose() ) environment.queueEvent( FAILURE_EVENT, new Object[] { address, message } );
@@ -208,25 +268,27 @@ public class HttpRequest extends Resource<HttpRequest>
 
     void failure( Throwable cause )
     {
-        String message;
+        failure( getMessage( cause ) );
+    }
+
+    static String getMessage( Throwable cause )
+    {
         if( cause instanceof HTTPRequestException )
         {
-            message = cause.getMessage();
+            return cause.getMessage();
         }
         else if( cause instanceof TooLongFrameException )
         {
-            message = "Response is too large";
+            return "Response is too large";
         }
-        else if( cause instanceof ReadTimeoutException || cause instanceof ConnectTimeoutException )
+        else if( cause instanceof ReadTimeoutException || cause instanceof ConnectTimeoutException || cause instanceof TimeoutException )
         {
-            message = "Timed out";
+            return "Timed out";
         }
         else
         {
-            message = "Could not connect";
+            return "Could not connect";
         }
-
-        failure( message );
     }
 
     void failure( String message, ILuaObject object )
@@ -239,13 +301,33 @@ public class HttpRequest extends Resource<HttpRequest>
         if( tryClose() ) environment.queueEvent( SUCCESS_EVENT, new Object[] { address, object } );
     }
 
+    /**
+     * Queue an event with a streamed response. Unlike {@link #success(ILuaObject)}, this request stays open until the
+     * response handle is closed (or garbage collected), as the handle reads from our connection.
+     *
+     * @param object  The response handle.
+     * @param message The error message if the request failed, or {@code null} if it succeeded.
+     */
+    void stream( ILuaObject object, String message )
+    {
+        if( isClosed() ) return;
+
+        environment.queueEvent( message == null ? SUCCESS_EVENT : FAILURE_EVENT, message == null
+            ? new Object[] { address, object }
+            : new Object[] { address, message, object } );
+        responseHandle = createOwnerReference( object );
+
+        checkClosed();
+    }
+
     protected void dispose()
     {
         super.dispose();
 
-        executorFuture = closeFuture( executorFuture );
-        connectFuture = closeChannel( connectFuture );
+        resolveFuture = closeFuture( resolveFuture );
+        releaseChannel( false );
         currentRequest = closeCloseable( currentRequest );
+        responseHandle = null;
     }
 
     public static long getHeaderSize( HttpHeaders headers )
@@ -273,4 +355,19 @@ public class HttpRequest extends Resource<HttpRequest>
     {
         return binary;
     }
+
+    public boolean isStreaming()
+    {
+        return stream;
+    }
+
+    public boolean isCompressed()
+    {
+        return compress;
+    }
+
+    String address()
+    {
+        return address;
+    }
 }
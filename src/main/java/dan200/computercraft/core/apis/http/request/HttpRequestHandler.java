@@ -21,6 +21,7 @@ import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.*;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -51,6 +52,10 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
     private final HttpHeaders responseHeaders = new DefaultHttpHeaders();
     private HttpResponseStatus responseStatus;
     private CompositeByteBuf responseBody;
+    private HttpResponseStream responseStream;
+    private boolean keepAlive;
+    private boolean reused;
+    private volatile boolean written;
 
     HttpRequestHandler( HttpRequest request, URI uri, HttpMethod method )
     {
@@ -61,10 +66,13 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
     }
 
     @Override
-    public void channelActive( ChannelHandlerContext ctx ) throws Exception
+    public void handlerAdded( ChannelHandlerContext ctx ) throws Exception
     {
         if( request.checkClosed() ) return;
 
+        // We're added once the connection is open (or taken from the pool), so can send the request immediately.
+        reused = HttpConnectionPool.isReused( ctx.channel() );
+
         ByteBuf body = request.body();
         body.resetReaderIndex().retain();
 
@@ -84,18 +92,34 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
         {
             request.headers().set( HttpHeaderNames.USER_AGENT, ComputerCraft.MOD_ID + "/" + ComputerCraft.getVersion() );
         }
+        if( this.request.isCompressed() && !request.headers().contains( HttpHeaderNames.ACCEPT_ENCODING ) )
+        {
+            request.headers().set( HttpHeaderNames.ACCEPT_ENCODING, HttpHeaderValues.GZIP + "," + HttpHeaderValues.DEFLATE );
+        }
         request.headers().set( HttpHeaderNames.HOST, uri.getHost() );
-        request.headers().set( HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE );
+        request.headers().set( HttpHeaderNames.CONNECTION, HttpConnectionPool.isPooled( ctx.channel() ) ? HttpHeaderValues.KEEP_ALIVE : HttpHeaderValues.CLOSE );
 
-        ctx.channel().writeAndFlush( request );
+        ctx.channel().writeAndFlush( request ).addListener( f -> {
+            if( f.isSuccess() ) written = true;
+        } );
 
-        super.channelActive( ctx );
+        super.handlerAdded( ctx );
     }
 
     @Override
     public void channelInactive( ChannelHandlerContext ctx ) throws Exception
     {
-        if( !closed ) request.failure( "Could not connect" );
+        if( !closed )
+        {
+            if( responseStream != null )
+            {
+                responseStream.fail( "Could not connect" );
+            }
+            else if( !tryRetry() )
+            {
+                request.failure( "Could not connect" );
+            }
+        }
         super.channelInactive( ctx );
     }
 
@@ -139,9 +163,32 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
             responseCharset = HttpUtil.getCharset( response, StandardCharsets.UTF_8 );
             responseStatus = response.status();
             responseHeaders.add( response.headers() );
+            keepAlive = HttpUtil.isKeepAlive( response );
+
+            if( request.isStreaming() )
+            {
+                responseStream = new HttpResponseStream( request, ctx.channel() );
+                sendStream();
+            }
         }
 
-        if( message instanceof HttpContent )
+        if( message instanceof HttpContent && responseStream != null )
+        {
+            ByteBuf partial = ((HttpContent) message).content();
+            if( partial.isReadable() && !responseStream.offer( partial.retain() ) )
+            {
+                closed = true;
+                return;
+            }
+
+            if( message instanceof LastHttpContent )
+            {
+                closed = true;
+                responseStream.finish();
+                request.releaseChannel( keepAlive );
+            }
+        }
+        else if( message instanceof HttpContent )
         {
             HttpContent content = (HttpContent) message;
 
@@ -156,10 +203,7 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
                 // If we've read more than we're allowed to handle, abort as soon as possible.
                 if( ComputerCraft.httpMaxDownload != 0 && responseBody.readableBytes() + partial.readableBytes() > ComputerCraft.httpMaxDownload )
                 {
-                    closed = true;
-                    ctx.close();
-
-                    request.failure( "Response is too large" );
+                    tooLarge( ctx );
                     return;
                 }
 
@@ -177,7 +221,8 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
                     responseHeaders.set( HttpHeaderNames.CONTENT_LENGTH, responseBody.readableBytes() );
                 }
 
-                ctx.close();
+                closed = true;
+                request.releaseChannel( keepAlive );
                 sendResponse();
             }
         }
@@ -187,7 +232,61 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
     public void exceptionCaught( ChannelHandlerContext ctx, Throwable cause )
     {
         if( ComputerCraft.logPeripheralErrors ) ComputerCraft.log.error( "Error handling HTTP response", cause );
-        request.failure( cause );
+        if( responseStream != null )
+        {
+            responseStream.fail( HttpRequest.getMessage( cause ) );
+        }
+        else if( !(cause instanceof IOException) || !tryRetry() )
+        {
+            request.failure( cause );
+        }
+    }
+
+    /**
+     * Abort the request, as the response is larger than {@link ComputerCraft#httpMaxDownload}.
+     *
+     * @param ctx The context of the handler which received too much.
+     */
+    void tooLarge( ChannelHandlerContext ctx )
+    {
+        if( closed ) return;
+        closed = true;
+
+        if( responseStream != null )
+        {
+            responseStream.fail( "Response is too large" );
+        }
+        else
+        {
+            ctx.close();
+            request.failure( "Response is too large" );
+        }
+    }
+
+    /**
+     * Retry the request if a reused connection was closed before we could send it. The server may close an idle
+     * connection just as we send a request on it, which shouldn't cause the request to fail.
+     *
+     * We only retry idempotent methods, and only if the request was not fully written: once the server may have
+     * received the request, it may also have acted on it.
+     *
+     * @return Whether we are retrying the request.
+     */
+    private boolean tryRetry()
+    {
+        if( closed || !reused || written || responseStatus != null || !isIdempotent( method ) ) return false;
+
+        closed = true;
+        if( request.retry( uri, method ) ) return true;
+
+        closed = false;
+        return false;
+    }
+
+    private static boolean isIdempotent( HttpMethod method )
+    {
+        return method.equals( HttpMethod.GET ) || method.equals( HttpMethod.HEAD ) || method.equals( HttpMethod.OPTIONS )
+            || method.equals( HttpMethod.PUT ) || method.equals( HttpMethod.DELETE );
     }
 
     private void sendResponse()
@@ -196,24 +295,14 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
         CompositeByteBuf body = responseBody;
         byte[] bytes = body == null ? EMPTY_BYTES : NetworkUtils.toBytes( body );
 
-        // Decode the headers
-        HttpResponseStatus status = responseStatus;
-        Map<String, String> headers = new HashMap<>();
-        for( Map.Entry<String, String> header : responseHeaders )
-        {
-            String existing = headers.get( header.getKey() );
-            headers.put( header.getKey(), existing == null ? header.getValue() : existing + "," + header.getValue() );
-        }
-
         // Fire off a stats event
         request.environment().addTrackingChange( TrackingField.HTTP_DOWNLOAD, getHeaderSize( responseHeaders ) + bytes.length );
 
         // Prepare to queue an event
-        ArrayByteChannel contents = new ArrayByteChannel( bytes );
-        final ILuaObject reader = request.isBinary()
-            ? new BinaryReadableHandle( contents )
-            : new EncodedReadableHandle( EncodedReadableHandle.open( contents, responseCharset ) );
-        ILuaObject stream = new HttpResponseHandle( reader, status.code(), status.reasonPhrase(), headers );
+        HttpResponseStatus status = responseStatus;
+        ILuaObject stream = createHandle( request.isBinary()
+            ? new BinaryReadableHandle( new ArrayByteChannel( bytes ) )
+            : new EncodedReadableHandle( EncodedReadableHandle.open( new ArrayByteChannel( bytes ), responseCharset ) ) );
 
         if( status.code() >= 200 && status.code() < 400 )
         {
@@ -225,6 +314,31 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
         }
     }
 
+    /**
+     * Queue an event as soon as we've received the headers, with a handle which reads the body as it arrives.
+     */
+    private void sendStream()
+    {
+        request.environment().addTrackingChange( TrackingField.HTTP_DOWNLOAD, getHeaderSize( responseHeaders ) );
+
+        HttpResponseStatus status = responseStatus;
+        ILuaObject stream = createHandle( new HttpStreamHandle( responseStream, request.isBinary() ? null : responseCharset ) );
+        request.stream( stream, status.code() >= 200 && status.code() < 400 ? null : status.reasonPhrase() );
+    }
+
+    private ILuaObject createHandle( ILuaObject reader )
+    {
+        // Decode the headers
+        Map<String, String> headers = new HashMap<>();
+        for( Map.Entry<String, String> header : responseHeaders )
+        {
+            String existing = headers.get( header.getKey() );
+            headers.put( header.getKey(), existing == null ? header.getValue() : existing + "," + header.getValue() );
+        }
+
+        return new HttpResponseHandle( reader, responseStatus.code(), responseStatus.reasonPhrase(), headers );
+    }
+
     /**
      * Determine the redirect from this response
      */
@@ -255,5 +369,7 @@ public final class HttpRequestHandler extends SimpleChannelInboundHandler<HttpOb
             responseBody.release();
             responseBody = null;
         }
+
+        if( responseStream != null ) responseStream.close();
     }
 }
@@ -0,0 +1,335 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http.request;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.api.lua.ILuaContext;
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.core.tracking.TrackingField;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.ByteProcessor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * The body of a streamed HTTP response, read straight from the buffers Netty received it in.
+ *
+ * Once more than {@link #HIGH_WATER} bytes are waiting to be read, we stop reading from the socket until the computer
+ * has caught up, so a large download only ever holds a small amount in memory.
+ *
+ * Reading from this channel never blocks, and only returns what has already been received. {@link HttpStreamHandle}
+ * instead yields until enough of the response is available, using {@link #awaitBytes(ILuaContext, long)} and friends.
+ */
+final class HttpResponseStream implements ReadableByteChannel
+{
+    static final String EVENT = "http_stream";
+
+    /**
+     * Stop reading from the socket once this many bytes are buffered.
+     */
+    static final int HIGH_WATER = 64 * 1024;
+
+    /**
+     * Start reading from the socket again once the buffer drops below this many bytes.
+     */
+    static final int LOW_WATER = 16 * 1024;
+
+    private final HttpRequest request;
+    private final Channel channel;
+
+    private final ArrayDeque<ByteBuf> buffers = new ArrayDeque<>();
+    private int buffered;
+    private long received;
+
+    private boolean paused;
+    private long demand;
+    private boolean waiting;
+
+    private boolean finished;
+    private String error;
+    private boolean closed;
+
+    HttpResponseStream( HttpRequest request, Channel channel )
+    {
+        this.request = request;
+        this.channel = channel;
+    }
+
+    /**
+     * Add a chunk of the response. Called from the event loop.
+     *
+     * @param buffer The chunk to add, which this stream takes ownership of.
+     * @return Whether the chunk was accepted. If not, the response was too large and the connection has been closed.
+     */
+    boolean offer( ByteBuf buffer )
+    {
+        int length = buffer.readableBytes();
+        request.environment().addTrackingChange( TrackingField.HTTP_DOWNLOAD, length );
+
+        synchronized( this )
+        {
+            if( closed || error != null )
+            {
+                buffer.release();
+                return false;
+            }
+
+            received += length;
+            if( ComputerCraft.httpMaxDownload != 0 && received > ComputerCraft.httpMaxDownload )
+            {
+                buffer.release();
+                fail( "Response is too large" );
+                return false;
+            }
+
+            buffers.add( buffer );
+            buffered += length;
+            if( !paused && buffered >= Math.max( HIGH_WATER, demand ) ) setPaused( true );
+
+            notifyReaders();
+        }
+
+        return true;
+    }
+
+    /**
+     * Mark the response as complete. Called from the event loop.
+     */
+    synchronized void finish()
+    {
+        if( finished || closed || error != null ) return;
+        finished = true;
+        notifyReaders();
+    }
+
+    /**
+     * Abort the response, discarding anything not yet read and failing all future reads.
+     *
+     * @param message The reason the response failed.
+     */
+    synchronized void fail( String message )
+    {
+        if( finished || closed || error != null ) return;
+        error = message;
+        releaseBuffers();
+        channel.close();
+        notifyReaders();
+    }
+
+    /**
+     * Wait until at least {@code count} bytes are available, or the response has ended.
+     *
+     * @param context The current Lua context.
+     * @param count   The number of bytes to wait for.
+     * @throws LuaException         If the user terminates the program while waiting.
+     * @throws InterruptedException If the computer is shut down while waiting.
+     */
+    void awaitBytes( ILuaContext context, long count ) throws LuaException, InterruptedException
+    {
+        await( context, () -> count );
+    }
+
+    /**
+     * Wait until a whole line is available (as determined by {@link #lineLength()}), or the response has ended.
+     *
+     * @param context The current Lua context.
+     * @throws LuaException         If the user terminates the program while waiting.
+     * @throws InterruptedException If the computer is shut down while waiting.
+     * @see #awaitBytes(ILuaContext, long)
+     */
+    void awaitLine( ILuaContext context ) throws LuaException, InterruptedException
+    {
+        await( context, () -> lineLength() >= 0 ? 0 : buffered + 1L );
+    }
+
+    /**
+     * Wait until the whole response has been received.
+     *
+     * @param context The current Lua context.
+     * @throws LuaException         If the user terminates the program while waiting.
+     * @throws InterruptedException If the computer is shut down while waiting.
+     * @see #awaitBytes(ILuaContext, long)
+     */
+    void awaitAll( ILuaContext context ) throws LuaException, InterruptedException
+    {
+        await( context, () -> Long.MAX_VALUE );
+    }
+
+    /**
+     * Yield the current coroutine until enough of the response is buffered, rather than blocking the computer thread.
+     *
+     * If we need more than {@link #HIGH_WATER} bytes, we keep reading from the socket until we have them.
+     *
+     * @param context The current Lua context.
+     * @param wanted  Computes how many bytes need to be buffered. This is called while holding the lock.
+     * @throws LuaException         If the user terminates the program while waiting.
+     * @throws InterruptedException If the computer is shut down while waiting.
+     */
+    private void await( ILuaContext context, LongSupplier wanted ) throws LuaException, InterruptedException
+    {
+        while( true )
+        {
+            synchronized( this )
+            {
+                if( closed || error != null || finished ) return;
+
+                long needed = wanted.getAsLong();
+                if( buffered >= needed )
+                {
+                    demand = 0;
+                    return;
+                }
+
+                demand = needed;
+                if( paused ) setPaused( false );
+                waiting = true;
+            }
+
+            context.pullEvent( EVENT );
+        }
+    }
+
+    /**
+     * Find the length of the first line in the buffer.
+     *
+     * @return The number of bytes up to and including the first {@code \n}, or {@code -1} if none has been received.
+     */
+    synchronized int lineLength()
+    {
+        int offset = 0;
+        for( ByteBuf buffer : buffers )
+        {
+            int index = buffer.forEachByte( ByteProcessor.FIND_LF );
+            if( index >= 0 ) return offset + index - buffer.readerIndex() + 1;
+            offset += buffer.readableBytes();
+        }
+
+        return -1;
+    }
+
+    /**
+     * Remove up to {@code count} bytes from the buffer.
+     *
+     * @param count The maximum number of bytes to read.
+     * @return The bytes which were read, or {@code null} if the response has ended.
+     * @throws LuaException If the response failed or was closed.
+     */
+    synchronized byte[] take( int count ) throws LuaException
+    {
+        if( closed ) throw new LuaException( "attempt to use a closed file" );
+        if( error != null ) throw new LuaException( error );
+        if( buffered == 0 && finished ) return null;
+
+        ByteBuffer buffer = ByteBuffer.allocate( Math.min( count, buffered ) );
+        drain( buffer );
+        return buffer.array();
+    }
+
+    @Override
+    public synchronized int read( ByteBuffer destination ) throws IOException
+    {
+        if( closed ) throw new ClosedChannelException();
+        if( error != null ) throw new IOException( error );
+        if( buffered == 0 ) return finished ? -1 : 0;
+
+        return drain( destination );
+    }
+
+    private int drain( ByteBuffer destination )
+    {
+        int read = 0;
+        while( destination.hasRemaining() && !buffers.isEmpty() )
+        {
+            ByteBuf buffer = buffers.peek();
+            int length = Math.min( destination.remaining(), buffer.readableBytes() );
+
+            int limit = destination.limit();
+            destination.limit( destination.position() + length );
+            buffer.readBytes( destination );
+            destination.limit( limit );
+
+            read += length;
+            if( !buffer.isReadable() ) buffers.remove().release();
+        }
+
+        buffered -= read;
+        if( paused && buffered < LOW_WATER ) setPaused( false );
+        return read;
+    }
+
+    @Override
+    public synchronized boolean isOpen()
+    {
+        return !closed;
+    }
+
+    @Override
+    public void close()
+    {
+        synchronized( this )
+        {
+            if( closed ) return;
+            closed = true;
+            releaseBuffers();
+        }
+
+        // Closing the request also closes the connection, and frees up a slot for another request.
+        request.close();
+    }
+
+    private void notifyReaders()
+    {
+        if( waiting )
+        {
+            waiting = false;
+            request.environment().queueEvent( EVENT, new Object[] { request.address() } );
+        }
+    }
+
+    private void releaseBuffers()
+    {
+        for( ByteBuf buffer : buffers ) buffer.release();
+        buffers.clear();
+        buffered = 0;
+    }
+
+    /**
+     * Stop or resume reading from the socket.
+     *
+     * While paused we don't expect to receive anything, so the read timeout is removed, and added back once we resume.
+     *
+     * @param paused Whether to stop reading.
+     */
+    private void setPaused( boolean paused )
+    {
+        this.paused = paused;
+
+        // Once the response is complete, the connection may have been returned to the pool, so must be left alone.
+        if( finished ) return;
+
+        ChannelPipeline pipeline = channel.pipeline();
+        if( paused )
+        {
+            if( pipeline.get( HttpRequest.TIMEOUT_HANDLER ) != null ) pipeline.remove( HttpRequest.TIMEOUT_HANDLER );
+        }
+        else if( ComputerCraft.httpTimeout > 0 && channel.isOpen() && pipeline.get( HttpRequest.TIMEOUT_HANDLER ) == null )
+        {
+            pipeline.addFirst( HttpRequest.TIMEOUT_HANDLER, new ReadTimeoutHandler( ComputerCraft.httpTimeout, TimeUnit.MILLISECONDS ) );
+        }
+
+        channel.config().setAutoRead( !paused );
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http.request;
+
+import dan200.computercraft.api.lua.ILuaContext;
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.core.apis.handles.BinaryReadableHandle;
+import dan200.computercraft.core.apis.handles.EncodedReadableHandle;
+import dan200.computercraft.core.apis.handles.HandleGeneric;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+import static dan200.computercraft.core.apis.ArgumentHelper.getInt;
+import static dan200.computercraft.core.apis.ArgumentHelper.optBoolean;
+import static dan200.computercraft.core.apis.ArgumentHelper.optInt;
+
+/**
+ * Reads a streamed response as it arrives, providing the same methods as {@link BinaryReadableHandle} or
+ * {@link EncodedReadableHandle}.
+ *
+ * Rather than blocking the computer thread, each method yields until enough of the response has been received: a whole
+ * line for {@code readLine}, the requested number of bytes or characters for {@code read}, and everything for
+ * {@code readAll}. If the response ends first, whatever remains is returned instead. If the response fails part way
+ * through, these methods throw an error rather than returning a truncated body.
+ */
+final class HttpStreamHandle extends HandleGeneric
+{
+    private static final String[] BINARY_METHODS = new String[] { "read", "readAll", "readLine", "close" };
+    private static final String[] TEXT_METHODS = new String[] { "readLine", "readAll", "read", "close" };
+
+    private final HttpResponseStream stream;
+
+    /**
+     * The decoder for text mode, or {@code null} if this is a binary handle.
+     */
+    private final CharsetDecoder decoder;
+
+    /**
+     * Characters which have been decoded from the stream but not yet read, along with any incomplete character left
+     * over from the last chunk.
+     */
+    private final StringBuilder pending = new StringBuilder();
+    private byte[] leftover;
+    private int scanned;
+    private boolean ended;
+
+    HttpStreamHandle( @Nonnull HttpResponseStream stream, @Nullable Charset charset )
+    {
+        super( stream );
+        this.stream = stream;
+        this.decoder = charset == null ? null : charset.newDecoder()
+            .onMalformedInput( CodingErrorAction.REPLACE )
+            .onUnmappableCharacter( CodingErrorAction.REPLACE );
+    }
+
+    @Nonnull
+    @Override
+    public String[] getMethodNames()
+    {
+        return decoder == null ? BINARY_METHODS : TEXT_METHODS;
+    }
+
+    @Override
+    public Object[] callMethod( @Nonnull ILuaContext context, int method, @Nonnull Object[] args ) throws LuaException, InterruptedException
+    {
+        return decoder == null ? callBinary( context, method, args ) : callText( context, method, args );
+    }
+
+    private Object[] callBinary( ILuaContext context, int method, Object[] args ) throws LuaException, InterruptedException
+    {
+        switch( method )
+        {
+            case 0: // read
+            {
+                checkOpen();
+                if( args.length > 0 && args[0] != null )
+                {
+                    int count = getInt( args, 0 );
+                    if( count < 0 ) throw new LuaException( "Cannot read a negative number of bytes" );
+
+                    stream.awaitBytes( context, count );
+                    byte[] bytes = stream.take( count );
+                    return bytes == null ? null : new Object[] { bytes };
+                }
+                else
+                {
+                    stream.awaitBytes( context, 1 );
+                    byte[] bytes = stream.take( 1 );
+                    return bytes == null ? null : new Object[] { bytes[0] & 0xFF };
+                }
+            }
+            case 1: // readAll
+            {
+                checkOpen();
+                stream.awaitAll( context );
+                byte[] bytes = stream.take( Integer.MAX_VALUE );
+                return bytes == null ? null : new Object[] { bytes };
+            }
+            case 2: // readLine
+            {
+                checkOpen();
+                boolean withTrailing = optBoolean( args, 0, false );
+
+                stream.awaitLine( context );
+                int length = stream.lineLength();
+                byte[] bytes = stream.take( length < 0 ? Integer.MAX_VALUE : length );
+                if( bytes == null ) return null;
+
+                return new Object[] { length < 0 || withTrailing ? bytes : Arrays.copyOf( bytes, length - 1 ) };
+            }
+            case 3: // close
+                close();
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private Object[] callText( ILuaContext context, int method, Object[] args ) throws LuaException, InterruptedException
+    {
+        switch( method )
+        {
+            case 0: // readLine
+            {
+                checkOpen();
+                boolean withTrailing = optBoolean( args, 0, false );
+
+                String line;
+                while( (line = nextLine()) == null && !ended ) fill( context, false );
+                if( line == null ) return null;
+
+                // While this is technically inaccurate, it's better than nothing
+                return new Object[] { withTrailing ? line + "\n" : line };
+            }
+            case 1: // readAll
+            {
+                checkOpen();
+                while( !ended ) fill( context, true );
+
+                StringBuilder result = new StringBuilder( pending.length() );
+                String line = nextLine();
+                while( line != null )
+                {
+                    result.append( line );
+                    line = nextLine();
+                    if( line != null ) result.append( "\n" );
+                }
+                return new Object[] { result.toString() };
+            }
+            case 2: // read
+            {
+                checkOpen();
+                int count = optInt( args, 0, 1 );
+                if( count < 0 ) throw new LuaException( "Cannot read a negative number of characters" );
+
+                while( pending.length() < count && !ended ) fill( context, false );
+                if( count > 0 && pending.length() == 0 ) return null;
+
+                int length = Math.min( count, pending.length() );
+                String result = pending.substring( 0, length );
+                pending.delete( 0, length );
+                scanned = 0;
+                return new Object[] { result };
+            }
+            case 3: // close
+                close();
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Wait for more of the response, and decode it into {@link #pending}.
+     *
+     * @param context The current Lua context.
+     * @param all     Whether to wait for the whole response, rather than just the next chunk.
+     * @throws LuaException         If the response failed, or the user terminated the program while waiting.
+     * @throws InterruptedException If the computer is shut down while waiting.
+     */
+    private void fill( ILuaContext context, boolean all ) throws LuaException, InterruptedException
+    {
+        if( all )
+        {
+            stream.awaitAll( context );
+        }
+        else
+        {
+            stream.awaitBytes( context, 1 );
+        }
+
+        byte[] bytes = stream.take( Integer.MAX_VALUE );
+        if( bytes == null ) ended = true;
+
+        ByteBuffer input;
+        if( leftover == null )
+        {
+            input = ByteBuffer.wrap( bytes == null ? new byte[0] : bytes );
+        }
+        else
+        {
+            input = ByteBuffer.allocate( leftover.length + (bytes == null ? 0 : bytes.length) );
+            input.put( leftover );
+            if( bytes != null ) input.put( bytes );
+            input.flip();
+        }
+
+        CharBuffer output = CharBuffer.allocate( (int) Math.ceil( input.remaining() * decoder.maxCharsPerByte() ) + 1 );
+        decoder.decode( input, output, ended );
+        if( ended ) decoder.flush( output );
+
+        output.flip();
+        pending.append( output );
+        leftover = input.hasRemaining() ? Arrays.copyOfRange( input.array(), input.position(), input.limit() ) : null;
+    }
+
+    /**
+     * Remove the first line from {@link #pending}. Like {@link java.io.BufferedReader#readLine()}, lines may end with
+     * {@code \n}, {@code \r} or {@code \r\n}.
+     *
+     * @return The line, without its terminator, or {@code null} if we do not yet have a whole line. Once the response
+     * has ended, the remaining characters are returned as the last line.
+     */
+    private String nextLine()
+    {
+        int length = pending.length();
+        for( int i = scanned; i < length; i++ )
+        {
+            char c = pending.charAt( i );
+            if( c != '\n' && c != '\r' ) continue;
+
+            // We need to see the next character to know whether a \r is followed by a \n.
+            int end = i + 1;
+            if( c == '\r' )
+            {
+                if( end == length && !ended ) break;
+                if( end < length && pending.charAt( end ) == '\n' ) end++;
+            }
+
+            String line = pending.substring( 0, i );
+            pending.delete( 0, end );
+            scanned = 0;
+            return line;
+        }
+
+        if( ended && length > 0 )
+        {
+            String line = pending.toString();
+            pending.setLength( 0 );
+            scanned = 0;
+            return line;
+        }
+
+        scanned = length > 0 && pending.charAt( length - 1 ) == '\r' ? length - 1 : length;
+        return null;
+    }
+}
@@ -48,7 +48,7 @@ public class Websocket extends Resource<Websocket>
     static final String CLOSE_EVENT = "websocket_closed";
     static final String MESSAGE_EVENT = "websocket_message";
 
-    private Future<?> executorFuture;
+    private Future<?> resolveFuture;
     private ChannelFuture connectFuture;
     private WeakReference<WebsocketHandle> websocketHandle;
 
@@ -114,25 +114,30 @@ public class Websocket extends Resource<Websocket>
     public void connect()
     {
         if( isClosed() ) return;
-        executorFuture = NetworkUtils.EXECUTOR.submit( this::doConnect );
+
+        boolean ssl = uri.getScheme().equalsIgnoreCase( "wss" );
+        resolveFuture = NetworkUtils.resolve( uri.getHost(), uri.getPort(), ssl ).addListener( r -> {
+            if( r.isSuccess() )
+            {
+                doConnect( ssl, (InetSocketAddress) r.getNow() );
+            }
+            else
+            {
+                failure( r.cause() instanceof HTTPRequestException ? r.cause().getMessage() : "Could not connect" );
+            }
+        } );
         checkClosed();
     }
 
-    private void doConnect()
+    private void doConnect( boolean ssl, InetSocketAddress socketAddress )
     {
-        // If we're cancelled, abort.
+        // If we were cancelled while resolving the host, abort.
         if( isClosed() ) return;
 
         try
         {
-            boolean ssl = uri.getScheme().equalsIgnoreCase( "wss" );
-
-            InetSocketAddress socketAddress = NetworkUtils.getAddress( uri.getHost(), uri.getPort(), ssl );
             SslContext sslContext = ssl ? NetworkUtils.getSslContext() : null;
 
-            // getAddress may have a slight delay, so let's perform another cancellation check.
-            if( isClosed() ) return;
-
             connectFuture = new Bootstrap()
                 .group( NetworkUtils.LOOP_GROUP )
                 .channel( NioSocketChannel.class )
@@ -152,6 +157,8 @@ public class Websocket extends Resource<Websocket>
                             ComputerCraft.httpMaxWebsocketMessage == 0 ? MAX_MESSAGE_SIZE : ComputerCraft.httpMaxWebsocketMessage
                         );
 
+                        // The aggregator is only used for the handshake response, and is removed by the handshaker once
+                        // it completes. Websocket frames are passed straight through to the handler.
                         p.addLast(
                             new HttpClientCodec(),
                             new HttpObjectAggregator( 8192 ),
@@ -210,7 +217,7 @@ public class Websocket extends Resource<Websocket>
     {
         super.dispose();
 
-        executorFuture = closeFuture( executorFuture );
+        resolveFuture = closeFuture( resolveFuture );
         connectFuture = closeChannel( connectFuture );
 
         WeakReference<WebsocketHandle> websocketHandleRef = this.websocketHandle;
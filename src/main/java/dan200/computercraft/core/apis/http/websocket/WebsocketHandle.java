@@ -12,16 +12,20 @@ import dan200.computercraft.api.lua.ILuaContext;
 import dan200.computercraft.api.lua.ILuaObject;
 import dan200.computercraft.api.lua.LuaException;
 import dan200.computercraft.core.tracking.TrackingField;
-import dan200.computercraft.shared.util.StringUtil;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.Channel;
 import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static dan200.computercraft.core.apis.ArgumentHelper.optBoolean;
 import static dan200.computercraft.core.apis.http.websocket.Websocket.MESSAGE_EVENT;
@@ -33,6 +37,13 @@ public class WebsocketHandle implements ILuaObject, Closeable
 
     private Channel channel;
 
+    /**
+     * Messages which have been sent, but not yet written to the channel. These are written and flushed together on the
+     * channel's event loop, so a computer sending many messages at once doesn't need a separate write for each.
+     */
+    private final Queue<WebSocketFrame> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+
     public WebsocketHandle( Websocket websocket, Channel channel )
     {
         this.websocket = websocket;
@@ -80,9 +91,10 @@ public class WebsocketHandle implements ILuaObject, Closeable
                 Channel channel = this.channel;
                 if( channel != null )
                 {
-                    channel.writeAndFlush( binary
-                        ? new BinaryWebSocketFrame( Unpooled.wrappedBuffer( StringUtil.encodeString( text ) ) )
-                        : new TextWebSocketFrame( text ) );
+                    pending.add( binary
+                        ? new BinaryWebSocketFrame( encodeBinary( channel, text ) )
+                        : new TextWebSocketFrame( ByteBufUtil.writeUtf8( channel.alloc(), text ) ) );
+                    if( flushQueued.compareAndSet( false, true ) ) channel.eventLoop().execute( () -> flush( channel ) );
                 }
 
                 return null;
@@ -97,6 +109,39 @@ public class WebsocketHandle implements ILuaObject, Closeable
         }
     }
 
+    /**
+     * Encode a Lua string as a binary message. Each character of the string represents a single byte.
+     *
+     * @param channel The channel to allocate the buffer from.
+     * @param text    The string to encode.
+     * @return The encoded message.
+     */
+    private static ByteBuf encodeBinary( Channel channel, String text )
+    {
+        ByteBuf buffer = channel.alloc().buffer( text.length() );
+        for( int i = 0; i < text.length(); i++ )
+        {
+            char c = text.charAt( i );
+            buffer.writeByte( c < 256 ? c : 63 );
+        }
+        return buffer;
+    }
+
+    /**
+     * Write all pending messages and flush them. Called on the channel's event loop.
+     *
+     * @param channel The channel to write to.
+     */
+    private void flush( Channel channel )
+    {
+        // Clear the flag before draining, so any message added after this point will queue another flush.
+        flushQueued.set( false );
+
+        WebSocketFrame frame;
+        while( (frame = pending.poll()) != null ) channel.write( frame, channel.voidPromise() );
+        channel.flush();
+    }
+
     private void checkOpen() throws LuaException
     {
         if( closed ) throw new LuaException( "attempt to use a closed file" );
@@ -110,7 +155,11 @@ public class WebsocketHandle implements ILuaObject, Closeable
         Channel channel = this.channel;
         if( channel != null )
         {
-            channel.close();
+            // Send anything which is still pending before closing.
+            channel.eventLoop().execute( () -> {
+                flush( channel );
+                channel.close();
+            } );
             this.channel = null;
         }
     }
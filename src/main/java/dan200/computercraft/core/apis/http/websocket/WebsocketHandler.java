@@ -6,9 +6,12 @@
 
 package dan200.computercraft.core.apis.http.websocket;
 
+import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.core.apis.http.HTTPRequestException;
 import dan200.computercraft.core.apis.http.NetworkUtils;
 import dan200.computercraft.core.tracking.TrackingField;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ConnectTimeoutException;
 import io.netty.channel.SimpleChannelInboundHandler;
@@ -18,13 +21,26 @@ import io.netty.handler.codec.http.websocketx.*;
 import io.netty.handler.timeout.ReadTimeoutException;
 import io.netty.util.CharsetUtil;
 
+import java.nio.charset.StandardCharsets;
+
 import static dan200.computercraft.core.apis.http.websocket.Websocket.MESSAGE_EVENT;
 
 public class WebsocketHandler extends SimpleChannelInboundHandler<Object>
 {
+    /**
+     * Same as {@link io.netty.handler.codec.MessageAggregator}.
+     */
+    private static final int DEFAULT_MAX_COMPOSITEBUFFER_COMPONENTS = 1024;
+
     private final Websocket websocket;
     private final WebSocketClientHandshaker handshaker;
 
+    /**
+     * The fragments of the message we are currently receiving, or {@code null} if we're not within a fragmented message.
+     */
+    private CompositeByteBuf fragments;
+    private boolean fragmentsBinary;
+
     public WebsocketHandler( Websocket websocket, WebSocketClientHandshaker handshaker )
     {
         this.handshaker = handshaker;
@@ -46,7 +62,14 @@ public class WebsocketHandler extends SimpleChannelInboundHandler<Object>
     }
 
     @Override
-    public void channelRead0( ChannelHandlerContext ctx, Object msg )
+    public void handlerRemoved( ChannelHandlerContext ctx ) throws Exception
+    {
+        releaseFragments();
+        super.handlerRemoved( ctx );
+    }
+
+    @Override
+    public void channelRead0( ChannelHandlerContext ctx, Object msg ) throws Exception
     {
         if( websocket.isClosed() ) return;
 
@@ -64,19 +87,38 @@ public class WebsocketHandler extends SimpleChannelInboundHandler<Object>
         }
 
         WebSocketFrame frame = (WebSocketFrame) msg;
-        if( frame instanceof TextWebSocketFrame )
+        if( frame instanceof TextWebSocketFrame || frame instanceof BinaryWebSocketFrame )
         {
-            String data = ((TextWebSocketFrame) frame).text();
-
-            websocket.environment().addTrackingChange( TrackingField.WEBSOCKET_INCOMING, data.length() );
-            websocket.environment().queueEvent( MESSAGE_EVENT, new Object[] { websocket.address(), data, false } );
+            boolean binary = frame instanceof BinaryWebSocketFrame;
+            if( frame.isFinalFragment() )
+            {
+                queueMessage( frame.content(), binary );
+            }
+            else
+            {
+                // The decoder ensures a new message is only started once the previous one has finished.
+                releaseFragments();
+                fragments = ctx.alloc().compositeBuffer( DEFAULT_MAX_COMPOSITEBUFFER_COMPONENTS );
+                fragmentsBinary = binary;
+                addFragment( frame.content() );
+            }
         }
-        else if( frame instanceof BinaryWebSocketFrame )
+        else if( frame instanceof ContinuationWebSocketFrame )
         {
-            byte[] converted = NetworkUtils.toBytes( frame.content() );
-
-            websocket.environment().addTrackingChange( TrackingField.WEBSOCKET_INCOMING, converted.length );
-            websocket.environment().queueEvent( MESSAGE_EVENT, new Object[] { websocket.address(), converted, true } );
+            if( fragments == null ) return;
+
+            addFragment( frame.content() );
+            if( frame.isFinalFragment() )
+            {
+                try
+                {
+                    queueMessage( fragments, fragmentsBinary );
+                }
+                finally
+                {
+                    releaseFragments();
+                }
+            }
         }
         else if( frame instanceof CloseWebSocketFrame )
         {
@@ -85,6 +127,47 @@ public class WebsocketHandler extends SimpleChannelInboundHandler<Object>
         }
     }
 
+    /**
+     * Queue a message for the computer.
+     *
+     * Binary messages, and text messages consisting entirely of ASCII, are copied straight from the received buffer into
+     * the byte string given to Lua. Other text is decoded from UTF-8 as before.
+     *
+     * @param content The message's contents.
+     * @param binary  Whether this is a binary message.
+     */
+    private void queueMessage( ByteBuf content, boolean binary )
+    {
+        int length = content.readableBytes();
+        Object data = binary || content.forEachByte( b -> b >= 0 ) < 0
+            ? NetworkUtils.toBytes( content )
+            : content.toString( StandardCharsets.UTF_8 );
+
+        websocket.environment().addTrackingChange( TrackingField.WEBSOCKET_INCOMING, length );
+        websocket.environment().queueEvent( MESSAGE_EVENT, new Object[] { websocket.address(), data, binary } );
+    }
+
+    private void addFragment( ByteBuf fragment ) throws TooLongFrameException
+    {
+        int limit = ComputerCraft.httpMaxWebsocketMessage == 0 ? Websocket.MAX_MESSAGE_SIZE : ComputerCraft.httpMaxWebsocketMessage;
+        if( fragments.readableBytes() + fragment.readableBytes() > limit )
+        {
+            releaseFragments();
+            throw new TooLongFrameException( "Message is too large" );
+        }
+
+        if( fragment.isReadable() ) fragments.addComponent( true, fragment.retain() );
+    }
+
+    private void releaseFragments()
+    {
+        if( fragments != null )
+        {
+            fragments.release();
+            fragments = null;
+        }
+    }
+
     @Override
     public void exceptionCaught( ChannelHandlerContext ctx, Throwable cause )
     {
@@ -304,6 +304,9 @@ public class Computer
 
     private final IPeripheral[] m_peripherals;
 
+    private final ComputerTimeslice m_timeslice = new ComputerTimeslice();
+    private final ComputerThread.TaskQueue m_taskQueue = new ComputerThread.TaskQueue( true );
+
     public Computer( IComputerEnvironment environment, Terminal terminal, int id )
     {
         ComputerThread.start();
@@ -395,6 +398,48 @@ public class Computer
         }
     }
 
+    public ComputerTimeslice getTimeslice()
+    {
+        return m_timeslice;
+    }
+
+    ComputerThread.TaskQueue getTaskQueue()
+    {
+        return m_taskQueue;
+    }
+
+    /**
+     * Get the number of runner threads which were abandoned while executing this computer's tasks, and are still
+     * stuck.
+     *
+     * @return The number of leaked runner threads.
+     */
+    public int getLeakedRunners()
+    {
+        return m_taskQueue.getLeakedRunners();
+    }
+
+    /**
+     * Whether this computer has leaked so many runner threads that its tasks are no longer executed.
+     *
+     * @return If this computer is degraded.
+     */
+    public boolean isDegraded()
+    {
+        return m_taskQueue.isDegraded();
+    }
+
+    /**
+     * Get the number of Lua coroutines which are alive on this computer.
+     *
+     * @return The number of live coroutines.
+     */
+    public int getLiveCoroutines()
+    {
+        ILuaMachine machine = m_machine;
+        return machine == null ? 0 : machine.getLiveCoroutines();
+    }
+
     public void unload()
     {
         synchronized( this )
@@ -553,6 +598,8 @@ public class Computer
         try
         {
             m_fileSystem = new FileSystem( "hdd", getRootMount() );
+            m_fileSystem.setTracker( ( field, change ) -> Tracking.addValue( this, field, change ) );
+            m_fileSystem.setPauseHandler( m_timeslice::pauseIfRequested );
             if( s_romMount == null )
             {
                 s_romMount = m_environment.createResourceMount( "computercraft", "lua/rom" );
@@ -892,6 +939,13 @@ public class Computer
                 return computer;
             }
 
+            @Override
+            public boolean isEssential()
+            {
+                // Always shut down, even if the computer is degraded, so its resources are released.
+                return true;
+            }
+
             @Override
             public void execute()
             {
@@ -8,19 +8,51 @@ package dan200.computercraft.core.computer;
 
 import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.core.tracking.Tracking;
+import dan200.computercraft.core.tracking.TrackingField;
 import dan200.computercraft.shared.util.ThreadUtils;
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.WeakHashMap;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Runs tasks for all computers on a fixed number of manager threads.
+ *
+ * Computers are scheduled fairly: each computer's task queue tracks how much CPU time it has used (its "virtual
+ * runtime"), and we always run the computer which is furthest behind. A computer which has run Lua code for longer
+ * than {@link ComputerCraft#computer_timeslice} while other computers are waiting will be paused (see
+ * {@link ComputerTimeslice}) and put back on the queue, rather than blocking everyone else.
+ *
+ * Each computer owns its {@link TaskQueue}, so submitting a task to a computer which is already scheduled is
+ * lock-free. The global {@link #s_taskLock} is only taken when a queue moves between idle and active.
+ *
+ * Every paused or stuck task holds on to its runner thread, so the total number of runners is capped at
+ * {@link ComputerCraft#computer_runner_limit}. Once this is reached, computers which need a new runner stay queued
+ * while we resume those which are already paused.
+ */
 public class ComputerThread
 {
     private static final int QUEUE_LIMIT = 256;
 
+    /**
+     * How long a task may execute for (not including time spent paused) before we attempt to abort it.
+     */
+    private static final long ABORT_TIMEOUT = TimeUnit.MILLISECONDS.toNanos( 7000 );
+
+    /**
+     * How long we wait between each abort stage (soft abort, hard abort and finally interrupting the thread).
+     */
+    private static final long ABORT_GRACE = TimeUnit.MILLISECONDS.toNanos( 1500 );
+
+    /**
+     * How long a manager thread waits before checking again, when there are queues to execute but no runners available
+     * for them. Quarantined runners do not notify us when they finish, so we must poll.
+     */
+    private static final long RUNNER_WAIT = 100;
+
     /**
      * Lock used for modifications to the object
      */
@@ -32,20 +64,51 @@ public class ComputerThread
     private static final Object s_taskLock = new Object();
 
     /**
-     * Map of objects to task list
+     * Active queues to execute, ordered by their virtual runtime. The first queue is the one which has had the least
+     * CPU time, and so will be executed next.
+     */
+    private static final TreeSet<TaskQueue> s_computerTasksActive = new TreeSet<>( TaskQueue.COMPARATOR );
+
+    /**
+     * The virtual runtime of the most recently scheduled queue. Queues which have been idle are moved up to (roughly)
+     * this point, so they cannot build up an unbounded amount of credit while asleep.
+     */
+    private static long s_minimumVirtualRuntime = 0;
+
+    private static long s_nextQueueId = 0;
+
+    /**
+     * Lock for {@link #s_runners}, {@link #s_idleRunners}, {@link #s_quarantinedRunners} and
+     * {@link TaskQueue#leakedRunners}.
+     */
+    private static final Object s_runnerLock = new Object();
+
+    /**
+     * The number of runner threads which exist: idle, executing, paused or quarantined.
      */
-    private static final WeakHashMap<Object, BlockingQueue<ITask>> s_computerTaskQueues = new WeakHashMap<>();
+    private static int s_runners = 0;
 
     /**
-     * Active queues to execute
+     * Runner threads which are not currently executing a task, and so may be reused. At most
+     * {@link ComputerCraft#computer_threads} runners are kept idle, any more are shut down.
      */
-    private static final BlockingQueue<BlockingQueue<ITask>> s_computerTasksActive = new LinkedBlockingQueue<>();
-    private static final Set<BlockingQueue<ITask>> s_computerTasksActiveSet = new HashSet<>();
+    private static final Deque<TaskRunner> s_idleRunners = new ArrayDeque<>();
 
     /**
-     * The default object for items which don't have an owner
+     * Runners which did not stop after being interrupted. These are checked whenever we need a new runner: ones which
+     * have finished their task are returned to the pool, and ones which have died are dropped.
      */
-    private static final Object s_defaultOwner = new Object();
+    private static final List<TaskRunner> s_quarantinedRunners = new ArrayList<>();
+
+    /**
+     * The total number of runners which have been abandoned (moved into quarantine).
+     */
+    private static long s_abandonedRunners = 0;
+
+    /**
+     * The queue for tasks which don't have an owner
+     */
+    private static final TaskQueue s_defaultQueue = new TaskQueue( false );
 
     /**
      * Whether the thread is stopped or should be stopped
@@ -106,9 +169,32 @@ public class ComputerThread
 
         synchronized( s_taskLock )
         {
-            s_computerTaskQueues.clear();
+            // Wake any computers which were paused, aborting them so they finish as soon as possible.
+            for( TaskQueue queue : s_computerTasksActive )
+            {
+                TaskRunner runner = queue.pausedRunner;
+                if( runner == null ) continue;
+
+                Computer computer = runner.task.getOwner();
+                if( computer != null )
+                {
+                    computer.abort( true );
+                    computer.getTimeslice().resume();
+                }
+
+                // Nobody will collect this runner once it finishes, so let it exit.
+                queue.pausedRunner = null;
+                stopRunner( runner );
+            }
+
+            for( TaskQueue queue : s_computerTasksActive )
+            {
+                queue.clear();
+                queue.scheduled.set( false );
+            }
+
             s_computerTasksActive.clear();
-            s_computerTasksActiveSet.clear();
+            s_minimumVirtualRuntime = 0;
         }
     }
 
@@ -120,38 +206,404 @@ public class ComputerThread
      */
     public static void queueTask( ITask task, Computer computer )
     {
-        Object queueObject = computer == null ? s_defaultOwner : computer;
+        TaskQueue queue = computer == null ? s_defaultQueue : computer.getTaskQueue();
+
+        // Only the thread which flips the queue from idle to scheduled needs to touch the shared state.
+        if( queue.offer( task ) && queue.scheduled.compareAndSet( false, true ) )
+        {
+            synchronized( s_taskLock )
+            {
+                schedule( queue, task.getOwner() );
+            }
+        }
+    }
+
+    /**
+     * Add a queue to the set of active queues. This should be called with {@link #s_taskLock} held, and only when the
+     * queue is not already active.
+     *
+     * @param queue The queue to schedule
+     * @param owner The computer the queue's tasks belong to, used for tracking.
+     */
+    private static void schedule( TaskQueue queue, Computer owner )
+    {
+        // Move sleeping queues up to the current minimum runtime, giving them a small bonus so that interactive
+        // computers remain responsive.
+        long runtime = queue.virtualRuntime;
+        long floor = queue.id < 0
+            ? s_minimumVirtualRuntime
+            : s_minimumVirtualRuntime - TimeUnit.MILLISECONDS.toNanos( ComputerCraft.computer_timeslice );
+        if( runtime < floor )
+        {
+            if( queue.preemptible && owner != null ) Tracking.addValue( owner, TrackingField.VIRTUAL_RUNTIME, floor - runtime );
+            queue.virtualRuntime = floor;
+        }
+
+        if( queue.id < 0 ) queue.id = s_nextQueueId++;
+
+        queue.scheduledAt = System.nanoTime();
+        s_computerTasksActive.add( queue );
+        s_taskLock.notify();
+    }
+
+    /**
+     * Get the total number of runner threads which have been abandoned after failing to stop.
+     *
+     * @return The number of abandoned runners.
+     */
+    public static long getAbandonedRunners()
+    {
+        synchronized( s_runnerLock )
+        {
+            return s_abandonedRunners;
+        }
+    }
+
+    /**
+     * Get the number of abandoned runner threads which are still stuck executing their task.
+     *
+     * @return The number of quarantined runners.
+     */
+    public static int getQuarantinedRunners()
+    {
+        synchronized( s_runnerLock )
+        {
+            sweepQuarantine();
+            return s_quarantinedRunners.size();
+        }
+    }
+
+    /**
+     * Get the number of idle runner threads which are available for reuse.
+     *
+     * @return The number of idle runners.
+     */
+    public static int getIdleRunners()
+    {
+        synchronized( s_runnerLock )
+        {
+            return s_idleRunners.size();
+        }
+    }
+
+    /**
+     * Get the total number of runner threads, including idle, paused and quarantined ones.
+     *
+     * @return The number of runners.
+     */
+    public static int getRunners()
+    {
+        synchronized( s_runnerLock )
+        {
+            return s_runners;
+        }
+    }
+
+    /**
+     * Determine whether any computers are waiting to execute. This is used to decide whether to preempt the currently
+     * running computer.
+     *
+     * @return Whether there are queues waiting for a thread.
+     */
+    private static boolean hasPendingQueues()
+    {
+        synchronized( s_taskLock )
+        {
+            return !s_computerTasksActive.isEmpty();
+        }
+    }
 
-        BlockingQueue<ITask> queue;
-        synchronized( s_computerTaskQueues )
+    /**
+     * Get an idle runner, or start a new one if we are below {@link ComputerCraft#computer_runner_limit}.
+     *
+     * @return The runner to use, or {@code null} if we have too many runners already.
+     */
+    private static TaskRunner getRunner()
+    {
+        synchronized( s_runnerLock )
         {
-            queue = s_computerTaskQueues.get( queueObject );
-            if( queue == null )
+            sweepQuarantine();
+
+            TaskRunner runner;
+            while( (runner = s_idleRunners.poll()) != null )
             {
-                s_computerTaskQueues.put( queueObject, queue = new LinkedBlockingQueue<>( QUEUE_LIMIT ) );
+                if( runner.thread.isAlive() ) return runner;
+                s_runners--;
             }
+
+            if( s_runners >= Math.max( ComputerCraft.computer_threads, ComputerCraft.computer_runner_limit ) ) return null;
+
+            runner = new TaskRunner();
+            (runner.thread = s_RunnerFactory.newThread( runner )).start();
+            s_runners++;
+            return runner;
         }
+    }
 
+    private static void releaseRunner( TaskRunner runner )
+    {
+        runner.reset();
+        synchronized( s_runnerLock )
+        {
+            if( s_idleRunners.size() < ComputerCraft.computer_threads )
+            {
+                s_idleRunners.push( runner );
+            }
+            else
+            {
+                runner.shutdown();
+                s_runners--;
+            }
+        }
+
+        // Wake any manager which was waiting for a runner to become available.
         synchronized( s_taskLock )
         {
-            if( queue.offer( task ) && !s_computerTasksActiveSet.contains( queue ) )
+            s_taskLock.notify();
+        }
+    }
+
+    /**
+     * Shut down a runner which we will not use again, even if it is still executing a task.
+     *
+     * @param runner The runner to stop.
+     */
+    private static void stopRunner( TaskRunner runner )
+    {
+        runner.shutdown();
+        synchronized( s_runnerLock )
+        {
+            s_runners--;
+        }
+    }
+
+    /**
+     * Abandon a runner which did not stop after being interrupted, charging it to the queue it was executing.
+     *
+     * @param runner The runner to abandon
+     * @param queue  The queue whose task the runner is stuck on.
+     */
+    private static void quarantine( TaskRunner runner, TaskQueue queue )
+    {
+        synchronized( s_runnerLock )
+        {
+            runner.leakedFrom = queue;
+            s_quarantinedRunners.add( runner );
+            s_abandonedRunners++;
+            if( queue.preemptible ) queue.leakedRunners++;
+        }
+    }
+
+    /**
+     * Check each quarantined runner, reclaiming any which have finished their task and dropping those which have died.
+     * This should be called with {@link #s_runnerLock} held.
+     */
+    private static void sweepQuarantine()
+    {
+        for( Iterator<TaskRunner> iterator = s_quarantinedRunners.iterator(); iterator.hasNext(); )
+        {
+            TaskRunner runner = iterator.next();
+            boolean alive = runner.thread.isAlive();
+            boolean finished = alive && runner.finished.poll();
+            if( alive && !finished ) continue;
+
+            iterator.remove();
+            if( runner.leakedFrom.preemptible ) runner.leakedFrom.leakedRunners--;
+            runner.leakedFrom = null;
+
+            if( finished && s_idleRunners.size() < ComputerCraft.computer_threads )
             {
-                s_computerTasksActive.add( queue );
-                s_computerTasksActiveSet.add( queue );
+                runner.reset();
+                s_idleRunners.push( runner );
+            }
+            else
+            {
+                if( finished ) runner.shutdown();
+                s_runners--;
+            }
+        }
+    }
+
+    /**
+     * Pending tasks for a single computer, along with the information needed to schedule it fairly.
+     *
+     * {@link #tasks} and {@link #scheduled} may be accessed from any thread. All other fields are guarded by
+     * {@link #s_taskLock}, or only accessed by the manager thread currently executing this queue.
+     */
+    static final class TaskQueue
+    {
+        static final Comparator<TaskQueue> COMPARATOR = ( a, b ) -> {
+            if( a == b ) return 0;
+            int compare = Long.compare( a.virtualRuntime, b.virtualRuntime );
+            return compare != 0 ? compare : Long.compare( a.id, b.id );
+        };
+
+        private final Queue<QueuedTask> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        /**
+         * Whether this queue is in {@link #s_computerTasksActive} or currently being executed. Whoever sets this
+         * from {@code false} to {@code true} is responsible for scheduling the queue.
+         */
+        final AtomicBoolean scheduled = new AtomicBoolean( false );
+
+        /**
+         * Whether this queue belongs to a specific computer, and so may be paused when its timeslice expires.
+         */
+        final boolean preemptible;
+
+        /**
+         * Whether we have logged that this queue is degraded. Only accessed by the executing manager thread.
+         */
+        boolean degradedWarned;
+
+        /**
+         * A unique id for this queue, used to break ties when sorting. This is {@code -1} until the queue is first
+         * scheduled.
+         */
+        long id = -1;
+
+        /**
+         * The amount of CPU time this queue has used, in nanoseconds. This must not be changed while the queue is
+         * within {@link #s_computerTasksActive}.
+         */
+        long virtualRuntime;
+
+        /**
+         * The time this queue was last added to {@link #s_computerTasksActive}, used to compute how long it waited.
+         */
+        long scheduledAt;
+
+        /**
+         * When the task last returned by {@link #poll()} was queued. Only accessed by the executing manager thread.
+         */
+        long polledQueuedAt;
+
+        /**
+         * The runner currently parked on a preempted task, or {@code null} if the queue is not paused.
+         */
+        TaskRunner pausedRunner;
+
+        /**
+         * The number of quarantined runners which are stuck executing one of this queue's tasks. This is guarded by
+         * {@link #s_runnerLock}.
+         */
+        int leakedRunners;
+
+        TaskQueue( boolean preemptible )
+        {
+            this.preemptible = preemptible;
+        }
+
+        boolean offer( ITask task )
+        {
+            if( size.incrementAndGet() > QUEUE_LIMIT )
+            {
+                size.decrementAndGet();
+                return false;
+            }
+
+            tasks.offer( new QueuedTask( task, System.nanoTime() ) );
+            return true;
+        }
+
+        ITask poll()
+        {
+            QueuedTask task = tasks.poll();
+            if( task == null ) return null;
+
+            size.decrementAndGet();
+            polledQueuedAt = task.queuedAt;
+            return task.task;
+        }
+
+        /**
+         * Remove tasks from this queue until we find an {@link ITask#isEssential() essential} one.
+         *
+         * @return The first essential task, or {@code null} if there are none and so the queue is now empty.
+         */
+        ITask pollEssential()
+        {
+            ITask task;
+            while( (task = poll()) != null && !task.isEssential() ) ;
+            return task;
+        }
+
+        boolean hasEssentialTask()
+        {
+            for( QueuedTask task : tasks )
+            {
+                if( task.task.isEssential() ) return true;
+            }
+            return false;
+        }
+
+        boolean isEmpty()
+        {
+            // Check the queue itself rather than the size, as the size is reserved before the task is added.
+            return tasks.isEmpty();
+        }
+
+        void clear()
+        {
+            while( poll() != null ) ;
+        }
+
+        /**
+         * Whether this queue has leaked too many runner threads. Degraded queues have their tasks discarded rather
+         * than executed, until the stuck runners finish or die.
+         *
+         * @return If this queue is degraded.
+         */
+        int getLeakedRunners()
+        {
+            synchronized( s_runnerLock )
+            {
+                if( leakedRunners > 0 ) sweepQuarantine();
+                return leakedRunners;
+            }
+        }
+
+        boolean isDegraded()
+        {
+            if( !preemptible ) return false;
+            synchronized( s_runnerLock )
+            {
+                if( leakedRunners == 0 ) return false;
+                sweepQuarantine();
+                return leakedRunners >= ComputerCraft.computer_leaked_runner_limit;
             }
         }
     }
 
     /**
-     * Responsible for pulling and managing computer tasks. This pulls a task from {@link #s_computerTasksActive},
-     * creates a new thread using {@link TaskRunner} or reuses a previous one and uses that to execute the task.
+     * A task within a {@link TaskQueue}, along with when it was queued.
+     */
+    private static final class QueuedTask
+    {
+        final ITask task;
+        final long queuedAt;
+
+        QueuedTask( ITask task, long queuedAt )
+        {
+            this.task = task;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    /**
+     * Responsible for pulling and managing computer tasks. This pulls the queue with the lowest virtual runtime from
+     * {@link #s_computerTasksActive}, and either resumes its paused task or starts its next task on a {@link TaskRunner}.
      *
-     * If the task times out, then it will attempt to interrupt the {@link TaskRunner} instance.
+     * If the task exceeds its timeslice then it will be paused, and if it times out then it will attempt to abort and
+     * eventually interrupt the {@link TaskRunner} instance.
      */
     private static final class TaskExecutor implements Runnable
     {
-        private TaskRunner runner;
-        private Thread thread;
+        /**
+         * The runner obtained by {@link #nextQueue()} for a queue which is starting a new task.
+         */
+        private TaskRunner reserved;
 
         @Override
         public void run()
@@ -161,15 +613,38 @@ public class ComputerThread
                 while( true )
                 {
                     // Wait for an active queue to execute
-                    BlockingQueue<ITask> queue = s_computerTasksActive.take();
+                    TaskQueue queue;
+                    synchronized( s_taskLock )
+                    {
+                        while( (queue = nextQueue()) == null )
+                        {
+                            if( s_computerTasksActive.isEmpty() )
+                            {
+                                s_taskLock.wait();
+                            }
+                            else
+                            {
+                                s_taskLock.wait( RUNNER_WAIT );
+                            }
+                        }
+
+                        if( queue.virtualRuntime > s_minimumVirtualRuntime ) s_minimumVirtualRuntime = queue.virtualRuntime;
+                    }
+
+                    TaskRunner runner = reserved;
+                    reserved = null;
 
                     // If threads should be stopped then return
                     synchronized( s_stateLock )
                     {
-                        if( s_stopped ) return;
+                        if( s_stopped )
+                        {
+                            if( runner != null ) releaseRunner( runner );
+                            return;
+                        }
                     }
 
-                    execute( queue );
+                    execute( queue, runner );
                 }
             }
             catch( InterruptedException ignored )
@@ -178,98 +653,301 @@ public class ComputerThread
             }
         }
 
-        private void execute( BlockingQueue<ITask> queue ) throws InterruptedException
+        /**
+         * Remove the next queue to execute from {@link #s_computerTasksActive}. This should be called with
+         * {@link #s_taskLock} held.
+         *
+         * This is normally the queue with the lowest virtual runtime. If that queue needs a new runner and none are
+         * available, we instead pick the first queue which is paused (and so already has a runner), leaving the other
+         * queue where it is. Any runner obtained for the queue is stored in {@link #reserved}.
+         *
+         * @return The queue to execute, or {@code null} if no queue can be executed right now.
+         */
+        private TaskQueue nextQueue()
         {
-            ITask task = queue.remove();
+            if( s_computerTasksActive.isEmpty() ) return null;
 
-            if( thread == null || !thread.isAlive() )
+            TaskQueue queue = s_computerTasksActive.first();
+            if( queue.pausedRunner == null && (!queue.isDegraded() || queue.hasEssentialTask()) && (reserved = getRunner()) == null )
             {
-                runner = new TaskRunner();
-                (thread = s_RunnerFactory.newThread( runner )).start();
+                queue = null;
+                for( TaskQueue paused : s_computerTasksActive )
+                {
+                    if( paused.pausedRunner != null )
+                    {
+                        queue = paused;
+                        break;
+                    }
+                }
+
+                if( queue == null ) return null;
             }
 
+            s_computerTasksActive.remove( queue );
+            return queue;
+        }
+
+        /**
+         * Execute a queue's paused task, or its next task.
+         *
+         * @param queue  The queue to execute.
+         * @param runner The runner to start the queue's next task on, or {@code null} if the queue is paused or
+         *               degraded.
+         * @throws InterruptedException If this thread was interrupted while waiting for the task.
+         */
+        private void execute( TaskQueue queue, TaskRunner runner ) throws InterruptedException
+        {
             long start = System.nanoTime();
+            long waited = start - queue.scheduledAt;
+
+            // Either resume the paused task or start a new one.
+            ITask task;
+            Computer computer;
+            if( queue.pausedRunner != null )
+            {
+                runner = queue.pausedRunner;
+                queue.pausedRunner = null;
+                task = runner.task;
+                computer = task.getOwner();
+                computer.getTimeslice().resume();
+            }
+            else if( runner == null )
+            {
+                // This computer has leaked too many threads, so don't give it any more. It has no essential tasks, so
+                // just discard everything.
+                task = queue.poll();
+                computer = task.getOwner();
+                if( !queue.degradedWarned )
+                {
+                    queue.degradedWarned = true;
+                    ComputerCraft.log.warn( "Computer " + (computer == null ? "unknown" : Integer.toString( computer.getID() ))
+                        + " has leaked too many runner threads. Its tasks will be discarded." );
+                }
+
+                queue.clear();
+                synchronized( s_taskLock )
+                {
+                    unschedule( queue, computer, start );
+                }
+                return;
+            }
+            else
+            {
+                // A degraded queue only runs its essential tasks, discarding everything before them.
+                task = queue.isDegraded() ? queue.pollEssential() : queue.poll();
+                if( task == null )
+                {
+                    releaseRunner( runner );
+                    synchronized( s_taskLock )
+                    {
+                        unschedule( queue, null, start );
+                    }
+                    return;
+                }
+
+                computer = task.getOwner();
+                runner.submit( task );
+                queue.degradedWarned = false;
+
+                if( computer != null ) Tracking.addTaskWait( computer, start - queue.polledQueuedAt );
+            }
 
-            // Execute the task
-            runner.submit( task );
+            boolean preemptible = queue.preemptible && computer != null;
+            if( preemptible ) Tracking.addValue( computer, TrackingField.WAIT_TIME, waited );
+
+            long timeslice = TimeUnit.MILLISECONDS.toNanos( ComputerCraft.computer_timeslice );
+            boolean pauseRequested = false, done = false, paused = false, terminated = false;
 
             try
             {
-                // If we timed out rather than exiting:
-                boolean done = runner.await( 7000 );
-                if( !done )
+                while( true )
                 {
-                    // Attempt to soft then hard abort
-                    Computer computer = task.getOwner();
-                    if( computer != null )
+                    long now = System.nanoTime();
+
+                    // Abort the task if it has been running for too long.
+                    long untilAbort = ABORT_TIMEOUT + runner.abortStage * ABORT_GRACE - (runner.runtime + now - start);
+                    if( untilAbort <= 0 )
                     {
-                        computer.abort( false );
+                        if( escalateAbort( runner, computer ) ) continue;
 
-                        done = runner.await( 1500 );
-                        if( !done )
-                        {
-                            computer.abort( true );
-                            done = runner.await( 1500 );
-                        }
+                        terminated = true;
+                        break;
                     }
 
-                    // Interrupt the thread
-                    if( !done )
+                    long wait = untilAbort;
+                    if( preemptible && !pauseRequested && runner.abortStage == 0 )
                     {
-                        StringBuilder builder = new StringBuilder( "Terminating " );
-                        if( computer != null )
+                        long untilPreempt = timeslice - (now - start);
+                        if( untilPreempt <= 0 )
                         {
-                            builder.append( "computer " ).append( computer.getID() );
-                        }
-                        else
-                        {
-                            builder.append( "unknown computer" );
-                        }
+                            if( hasPendingQueues() )
+                            {
+                                // Other computers are waiting, so ask this one to pause at the next opportunity.
+                                pauseRequested = true;
+                                computer.getTimeslice().requestPause( runner.finished::signal );
+                                continue;
+                            }
 
-                        builder.append( ". Thread is currently running" );
-                        for( StackTraceElement element : thread.getStackTrace() )
-                        {
-                            builder.append( "\n  at " ).append( element );
+                            untilPreempt = timeslice;
                         }
-                        ComputerCraft.log.error( builder.toString() );
 
-                        thread.interrupt();
-                        thread = null;
-                        runner = null;
+                        wait = Math.min( wait, untilPreempt );
+                    }
+
+                    if( runner.await( Math.max( 1, TimeUnit.NANOSECONDS.toMillis( wait ) ) ) )
+                    {
+                        paused = pauseRequested && computer.getTimeslice().isPaused();
+                        done = !paused;
+                        break;
                     }
                 }
             }
             finally
             {
                 long stop = System.nanoTime();
-                Computer computer = task.getOwner();
-                if( computer != null ) Tracking.addTaskTiming( computer, stop - start );
+                runner.runtime += stop - start;
 
-                // Re-add it back onto the queue or remove it
-                synchronized( s_taskLock )
+                if( paused )
                 {
-                    if( queue.isEmpty() )
+                    queue.pausedRunner = runner;
+                    Tracking.addValue( computer, TrackingField.PREEMPTIONS, 1 );
+                }
+                else
+                {
+                    // Cancel any pause request which was not acted upon before the task finished.
+                    if( pauseRequested ) computer.getTimeslice().resume();
+                    if( computer != null ) Tracking.addTaskTiming( computer, runner.runtime );
+                    if( done )
                     {
-                        s_computerTasksActiveSet.remove( queue );
+                        releaseRunner( runner );
+                    }
+                    else if( terminated )
+                    {
+                        quarantine( runner, queue );
                     }
                     else
                     {
-                        s_computerTasksActive.add( queue );
+                        // We were interrupted while waiting, so will not be around to collect this runner.
+                        stopRunner( runner );
                     }
                 }
+
+                // Charge the queue for the time it used, and re-add it back onto the queue or remove it
+                synchronized( s_taskLock )
+                {
+                    queue.virtualRuntime += stop - start;
+                    if( preemptible ) Tracking.addValue( computer, TrackingField.VIRTUAL_RUNTIME, stop - start );
+
+                    unschedule( queue, computer, stop );
+                }
+            }
+        }
+
+        /**
+         * Re-add a queue back onto the active set if it has more work to do, or mark it as idle otherwise. This should
+         * be called with {@link #s_taskLock} held.
+         *
+         * @param queue    The queue which has just been executed.
+         * @param computer The computer which owns the queue's task.
+         * @param now      The current time.
+         */
+        private void unschedule( TaskQueue queue, Computer computer, long now )
+        {
+            if( queue.pausedRunner == null && queue.isEmpty() )
+            {
+                // Mark the queue as idle, then check again in case a task was submitted in the meantime.
+                queue.scheduled.set( false );
+                if( !queue.isEmpty() && queue.scheduled.compareAndSet( false, true ) )
+                {
+                    schedule( queue, computer );
+                }
+            }
+            else
+            {
+                queue.scheduledAt = now;
+                s_computerTasksActive.add( queue );
+                s_taskLock.notify();
             }
         }
+
+        /**
+         * Move on to the next stage of aborting a task which has run for too long.
+         *
+         * @param runner   The runner executing the task
+         * @param computer The computer which owns this task
+         * @return Whether we should continue waiting for the task. If {@code false}, the runner has been interrupted
+         * and should be quarantined.
+         */
+        private boolean escalateAbort( TaskRunner runner, Computer computer )
+        {
+            if( computer != null && runner.abortStage < 2 )
+            {
+                // Attempt to soft then hard abort
+                computer.abort( runner.abortStage == 1 );
+                runner.abortStage++;
+                return true;
+            }
+
+            // Interrupt the thread
+            StringBuilder builder = new StringBuilder( "Terminating " );
+            if( computer != null )
+            {
+                builder.append( "computer " ).append( computer.getID() );
+            }
+            else
+            {
+                builder.append( "unknown computer" );
+            }
+
+            builder.append( ". Thread is currently running" );
+            for( StackTraceElement element : runner.thread.getStackTrace() )
+            {
+                builder.append( "\n  at " ).append( element );
+            }
+            ComputerCraft.log.error( builder.toString() );
+
+            runner.thread.interrupt();
+            return false;
+        }
     }
 
     /**
      * Responsible for the actual running of tasks. It waitin for the {@link TaskRunner#input} semaphore to be
      * triggered, consumes a task and then triggers {@link TaskRunner#finished}.
+     *
+     * The {@link TaskRunner#finished} semaphore is also triggered when the task is paused.
      */
     private static final class TaskRunner implements Runnable
     {
         private final Semaphore input = new Semaphore();
         private final Semaphore finished = new Semaphore();
-        private ITask task;
+        private Thread thread;
+
+        /**
+         * Set when this runner is no longer needed, so it should exit rather than wait for another task.
+         */
+        private volatile boolean stopped = false;
+
+        /**
+         * If this runner is quarantined, the queue whose task it is stuck on.
+         */
+        private TaskQueue leakedFrom;
+
+        /**
+         * The task currently being executed. This is only cleared by the manager thread, so remains available
+         * while the task is paused.
+         */
+        private volatile ITask task;
+
+        /**
+         * How long the current task has been running for, excluding any time spent paused.
+         */
+        private long runtime;
+
+        /**
+         * How far we have got in aborting this task: 0 if not aborted, 1 if soft aborted and 2 if hard aborted.
+         */
+        private int abortStage;
 
         @Override
         public void run()
@@ -281,19 +959,31 @@ public class ComputerThread
                     input.await();
                     try
                     {
-                        task.execute();
+                        ITask task = this.task;
+                        Computer computer = task.getOwner();
+                        if( computer == null )
+                        {
+                            task.execute();
+                        }
+                        else
+                        {
+                            computer.getTimeslice().bind( task::execute ).run();
+                        }
                     }
                     catch( RuntimeException e )
                     {
                         ComputerCraft.log.error( "Error running task.", e );
                     }
-                    task = null;
+
+                    // Clear any interrupt from a terminated task, so this runner can be reused.
+                    Thread.interrupted();
                     finished.signal();
+                    if( stopped ) return;
                 }
             }
             catch( InterruptedException e )
             {
-                ComputerCraft.log.error( "Error running task.", e );
+                if( !stopped ) ComputerCraft.log.error( "Error running task.", e );
                 Thread.currentThread().interrupt();
             }
         }
@@ -304,6 +994,19 @@ public class ComputerThread
             input.signal();
         }
 
+        void shutdown()
+        {
+            stopped = true;
+            thread.interrupt();
+        }
+
+        void reset()
+        {
+            task = null;
+            runtime = 0;
+            abortStage = 0;
+        }
+
         boolean await( long timeout ) throws InterruptedException
         {
             return finished.await( timeout );
@@ -331,6 +1034,13 @@ public class ComputerThread
             state = false;
         }
 
+        synchronized boolean poll()
+        {
+            if( !state ) return false;
+            state = false;
+            return true;
+        }
+
         synchronized boolean await( long timeout ) throws InterruptedException
         {
             if( !state )
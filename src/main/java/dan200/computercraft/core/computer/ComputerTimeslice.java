@@ -0,0 +1,134 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.computer;
+
+/**
+ * Allows the {@link ComputerThread} to preempt a computer which has exceeded its timeslice.
+ *
+ * The scheduler requests a pause with {@link #requestPause(Runnable)}. The Lua machine polls
+ * {@link #pauseIfRequested()} at safe points, which parks the executing thread (and so freezes the Lua state) until
+ * the scheduler picks this computer again and calls {@link #resume()}.
+ *
+ * Only threads which run this computer's code may be paused: its runner thread, and the threads backing each of its
+ * Lua coroutines (see {@link #bind(Runnable)}). Other threads can reach the same safe points (for instance when a
+ * peripheral uses the computer's file system from the server thread), and parking them would block them until the
+ * computer next runs.
+ */
+public final class ComputerTimeslice
+{
+    /**
+     * The computer whose code the current thread is running, if any.
+     */
+    private static final ThreadLocal<ComputerTimeslice> s_owner = new ThreadLocal<>();
+
+    private final Object lock = new Object();
+
+    private volatile boolean pauseRequested = false;
+    private boolean paused = false;
+    private Runnable pauseListener;
+
+    /**
+     * Pause the current thread if the scheduler has asked us to give up our timeslice. This is cheap to call when no
+     * pause has been requested, and does nothing if called from a thread which is not running this computer's code.
+     *
+     * If the thread is interrupted while paused, the interrupt flag is restored and the method returns immediately.
+     */
+    public void pauseIfRequested()
+    {
+        if( !pauseRequested || s_owner.get() != this ) return;
+
+        synchronized( lock )
+        {
+            if( !pauseRequested ) return;
+
+            paused = true;
+            Runnable listener = pauseListener;
+            if( listener != null ) listener.run();
+
+            try
+            {
+                while( paused ) lock.wait();
+            }
+            catch( InterruptedException e )
+            {
+                paused = false;
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Ask the computer to pause at the next safe point.
+     *
+     * @param listener Called on the computer's thread once it has paused.
+     */
+    void requestPause( Runnable listener )
+    {
+        synchronized( lock )
+        {
+            pauseListener = listener;
+            pauseRequested = true;
+        }
+    }
+
+    /**
+     * Whether the computer is currently parked within {@link #pauseIfRequested()}.
+     *
+     * @return If the computer is paused.
+     */
+    boolean isPaused()
+    {
+        synchronized( lock )
+        {
+            return paused;
+        }
+    }
+
+    /**
+     * Resume a paused computer, or cancel a pending pause request.
+     */
+    void resume()
+    {
+        synchronized( lock )
+        {
+            pauseRequested = false;
+            pauseListener = null;
+            paused = false;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Wrap a task so that, while it runs, the current thread is considered to be running this computer's code and so
+     * may be paused.
+     *
+     * @param task The task to wrap.
+     * @return The wrapped task.
+     */
+    public Runnable bind( Runnable task )
+    {
+        return () -> {
+            ComputerTimeslice previous = s_owner.get();
+            s_owner.set( this );
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                if( previous == null )
+                {
+                    s_owner.remove();
+                }
+                else
+                {
+                    s_owner.set( previous );
+                }
+            }
+        };
+    }
+}
@@ -11,4 +11,15 @@ public interface ITask
     Computer getOwner();
 
     void execute();
+
+    /**
+     * Whether this task must still be run when the computer is degraded, and so its other tasks are discarded. This
+     * should only be used for tasks which release the computer's resources, such as shutting it down.
+     *
+     * @return If this task must be run.
+     */
+    default boolean isEssential()
+    {
+        return false;
+    }
 }
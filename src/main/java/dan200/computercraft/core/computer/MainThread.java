@@ -6,66 +6,146 @@
 
 package dan200.computercraft.core.computer;
 
+import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.core.tracking.Tracking;
+import dan200.computercraft.core.tracking.TrackingField;
+import dan200.computercraft.shared.util.MpscQueue;
 
 import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Runs tasks on the main server thread, such as peripheral calls which interact with the world.
+ *
+ * Each tick we execute tasks until we exceed {@link ComputerCraft#maxMainGlobalTime}, cycling through computers in a
+ * round-robin fashion so that one computer cannot starve the others. Any tasks which do not fit within the budget are
+ * carried over to the next tick, and that tick resumes with the next computer in the rotation.
+ *
+ * Computer threads submit tasks through a lock-free {@link MpscQueue}. The server thread drains this into its own
+ * per-computer queues at the start of each tick, so the round-robin state is never shared between threads.
+ */
 public class MainThread
 {
-    private static final int MAX_TASKS_PER_TICK = 1000;
     private static final int MAX_TASKS_TOTAL = 50000;
 
-    private static final Queue<ITask> m_outstandingTasks = new ArrayDeque<>();
-    private static final Object m_nextUnusedTaskIDLock = new Object();
-    private static long m_nextUnusedTaskID = 0;
+    /**
+     * Tasks which have been submitted but not yet sorted into {@link #s_computerQueues}.
+     */
+    private static final MpscQueue<ITask> s_incoming = new MpscQueue<>();
+
+    /**
+     * The total number of tasks which have been submitted but not yet executed, used to enforce
+     * {@link #MAX_TASKS_TOTAL}.
+     */
+    private static final AtomicInteger s_totalTasks = new AtomicInteger();
+
+    /**
+     * Pending tasks for each computer. Queues are removed from this map once they are empty. This, and
+     * {@link #s_activeQueues}, are only accessed from the server thread.
+     */
+    private static final Map<Object, Queue<ITask>> s_computerQueues = new HashMap<>();
+
+    /**
+     * Computers with pending tasks, in the order they will be serviced.
+     */
+    private static final Queue<Queue<ITask>> s_activeQueues = new ArrayDeque<>();
+
+    /**
+     * The key for tasks which don't have an owner
+     */
+    private static final Object s_defaultOwner = new Object();
+
+    private static final AtomicLong s_nextUnusedTaskID = new AtomicLong();
 
     public static long getUniqueTaskID()
     {
-        synchronized( m_nextUnusedTaskIDLock )
+        return s_nextUnusedTaskID.incrementAndGet();
+    }
+
+    public static boolean queueTask( ITask task )
+    {
+        if( s_totalTasks.incrementAndGet() > MAX_TASKS_TOTAL )
         {
-            return ++m_nextUnusedTaskID;
+            s_totalTasks.decrementAndGet();
+            return false;
         }
+
+        s_incoming.offer( task );
+        return true;
     }
 
-    public static boolean queueTask( ITask task )
+    private static void sortTask( ITask task )
     {
-        synchronized( m_outstandingTasks )
+        Computer owner = task.getOwner();
+        Object key = owner == null ? s_defaultOwner : owner;
+
+        Queue<ITask> queue = s_computerQueues.get( key );
+        if( queue == null )
         {
-            if( m_outstandingTasks.size() < MAX_TASKS_TOTAL )
-            {
-                m_outstandingTasks.offer( task );
-                return true;
-            }
+            s_computerQueues.put( key, queue = new ArrayDeque<>() );
+            s_activeQueues.add( queue );
         }
-        return false;
+
+        queue.offer( task );
     }
 
     public static void executePendingTasks()
     {
-        int tasksThisTick = 0;
-        while( tasksThisTick < MAX_TASKS_PER_TICK )
+        long start = System.nanoTime();
+        long deadline = start + ComputerCraft.maxMainGlobalTime;
+
+        // Sort any newly submitted tasks into their computer's queue
+        s_incoming.drain( MainThread::sortTask );
+
+        int queueDepth = s_totalTasks.get();
+        if( s_activeQueues.isEmpty() ) return;
+
+        // Always execute at least one task, so that an expensive task cannot block the queue forever.
+        while( true )
         {
-            ITask task = null;
-            synchronized( m_outstandingTasks )
+            Queue<ITask> queue = s_activeQueues.poll();
+            if( queue == null ) break;
+
+            ITask task = queue.remove();
+            s_totalTasks.decrementAndGet();
+
+            // Move this computer to the back of the rotation, or remove it if it has no more work.
+            if( queue.isEmpty() )
             {
-                task = m_outstandingTasks.poll();
+                Computer owner = task.getOwner();
+                s_computerQueues.remove( owner == null ? s_defaultOwner : owner );
             }
-            if( task != null )
+            else
             {
-                long start = System.nanoTime();
-                task.execute();
+                s_activeQueues.add( queue );
+            }
 
-                long stop = System.nanoTime();
-                Computer computer = task.getOwner();
-                if( computer != null ) Tracking.addServerTiming( computer, stop - start );
+            long taskStart = System.nanoTime();
+            task.execute();
 
-                ++tasksThisTick;
-            }
-            else
+            long taskStop = System.nanoTime();
+            Computer computer = task.getOwner();
+            if( computer != null ) Tracking.addServerTiming( computer, taskStop - taskStart );
+
+            if( taskStop >= deadline ) break;
+        }
+
+        // Report any work which didn't fit within this tick's budget.
+        int carriedOver = 0;
+        for( Map.Entry<Object, Queue<ITask>> entry : s_computerQueues.entrySet() )
+        {
+            int pending = entry.getValue().size();
+            carriedOver += pending;
+            if( entry.getKey() instanceof Computer )
             {
-                break;
+                Tracking.addValue( (Computer) entry.getKey(), TrackingField.SERVER_CARRY_OVER, pending );
             }
         }
+
+        Tracking.addServerTick( System.nanoTime() - start, queueDepth, carriedOver );
     }
 }
@@ -0,0 +1,287 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.filesystem;
+
+import dan200.computercraft.shared.util.ThreadUtils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonReadableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Buffers writes to a file, writing them out once the buffer is full, when flushed or closed, or after at most
+ * {@link #FLUSH_INTERVAL} seconds.
+ *
+ * Programs often write a little at a time (such as a log line per event), each of which would otherwise be a separate
+ * write to disk. Space is still counted by {@link FileMount} as each write is made, so a program runs out of space at
+ * exactly the same point as it would without buffering.
+ *
+ * Buffered data is not visible to other handles until it is written out, so {@link FileMount} calls
+ * {@link #flush(Path)} before opening a file for reading. As channels only know the path they were opened with,
+ * {@link FileMount} also checks {@link #isBuffering(Path)} before renaming a file.
+ */
+final class BufferedWritableChannel implements SeekableByteChannel, Flushable
+{
+    private static final int FLUSH_INTERVAL = 1;
+
+    private static final Set<BufferedWritableChannel> dirty = ConcurrentHashMap.newKeySet();
+    private static final Set<BufferedWritableChannel> buffering = ConcurrentHashMap.newKeySet();
+
+    private static final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(
+        ThreadUtils.factory( "FileFlush" )
+    );
+
+    static
+    {
+        flusher.scheduleWithFixedDelay( BufferedWritableChannel::flushAll, FLUSH_INTERVAL, FLUSH_INTERVAL, TimeUnit.SECONDS );
+    }
+
+    private final SeekableByteChannel m_inner;
+    private final Path m_path;
+    private final ByteBuffer m_buffer;
+    private LongConsumer m_onWrite;
+    private boolean m_closed;
+
+    /**
+     * @param inner    The channel to write to.
+     * @param path     The file this channel writes to.
+     * @param capacity The size of the buffer, or 0 to write straight through.
+     */
+    BufferedWritableChannel( @Nonnull SeekableByteChannel inner, @Nonnull Path path, int capacity )
+    {
+        m_inner = inner;
+        m_path = path;
+        m_buffer = capacity > 0 ? ByteBuffer.allocate( capacity ) : null;
+        if( m_buffer != null ) buffering.add( this );
+    }
+
+    /**
+     * Write out any buffered data for a file, so that it can be read.
+     *
+     * @param path The file to flush.
+     */
+    static void flush( @Nonnull Path path )
+    {
+        for( BufferedWritableChannel channel : dirty )
+        {
+            if( channel.m_path.equals( path ) ) channel.flushQuietly();
+        }
+    }
+
+    /**
+     * Determine whether any open channel buffers writes to a file, or to anything within a directory. Such files
+     * should not be renamed, as the channel would continue to buffer under the old path, and so not be flushed when
+     * the new path is read.
+     *
+     * @param path The file or directory to check.
+     * @return Whether a channel is buffering writes to it.
+     */
+    static boolean isBuffering( @Nonnull Path path )
+    {
+        for( BufferedWritableChannel channel : buffering )
+        {
+            if( channel.m_path.startsWith( path ) ) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Set a listener which is called with the number of bytes written each time we write to the underlying channel.
+     *
+     * @param onWrite The listener to call.
+     */
+    synchronized void setWriteListener( @Nullable LongConsumer onWrite )
+    {
+        m_onWrite = onWrite;
+    }
+
+    @Override
+    public synchronized int write( ByteBuffer source ) throws IOException
+    {
+        if( m_closed ) throw new ClosedChannelException();
+
+        int length = source.remaining();
+        if( m_buffer == null ) return writeInner( source );
+
+        if( length > m_buffer.remaining() )
+        {
+            flushBuffer();
+
+            // Don't copy large writes into the buffer, just write them straight out.
+            if( length >= m_buffer.capacity() ) return writeInner( source );
+        }
+
+        if( m_buffer.position() == 0 ) dirty.add( this );
+        m_buffer.put( source );
+        return length;
+    }
+
+    /**
+     * Copy part of a file to this channel. Any buffered data is written first, and then the bytes are transferred
+     * directly, allowing the operating system to copy them without reading them into memory.
+     *
+     * @param source The file to copy from, starting at its current position.
+     * @param count  The maximum number of bytes to copy.
+     * @return The number of bytes copied.
+     * @throws IOException If the file could not be copied.
+     */
+    synchronized long transferFrom( FileChannel source, long count ) throws IOException
+    {
+        if( m_closed ) throw new ClosedChannelException();
+        flushBuffer();
+
+        long start = source.position();
+        long transferred = 0;
+        while( transferred < count )
+        {
+            long written = source.transferTo( start + transferred, count - transferred, m_inner );
+            if( written <= 0 ) break;
+
+            transferred += written;
+            if( m_onWrite != null ) m_onWrite.accept( written );
+        }
+
+        source.position( start + transferred );
+        return transferred;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException
+    {
+        if( m_closed ) throw new ClosedChannelException();
+        flushBuffer();
+    }
+
+    @Override
+    public synchronized long position() throws IOException
+    {
+        if( m_closed ) throw new ClosedChannelException();
+        return m_inner.position() + buffered();
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position( long newPosition ) throws IOException
+    {
+        if( m_closed ) throw new ClosedChannelException();
+        flushBuffer();
+        m_inner.position( newPosition );
+        return this;
+    }
+
+    @Override
+    public synchronized long size() throws IOException
+    {
+        if( m_closed ) throw new ClosedChannelException();
+        return Math.max( m_inner.size(), m_inner.position() + buffered() );
+    }
+
+    @Override
+    public synchronized SeekableByteChannel truncate( long size ) throws IOException
+    {
+        if( m_closed ) throw new ClosedChannelException();
+        flushBuffer();
+        m_inner.truncate( size );
+        return this;
+    }
+
+    @Override
+    public int read( ByteBuffer destination ) throws IOException
+    {
+        if( !isOpen() ) throw new ClosedChannelException();
+        throw new NonReadableChannelException();
+    }
+
+    @Override
+    public synchronized boolean isOpen()
+    {
+        return !m_closed && m_inner.isOpen();
+    }
+
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if( m_closed ) return;
+        m_closed = true;
+
+        try
+        {
+            flushBuffer();
+        }
+        finally
+        {
+            dirty.remove( this );
+            buffering.remove( this );
+            m_inner.close();
+        }
+    }
+
+    private int buffered()
+    {
+        return m_buffer == null ? 0 : m_buffer.position();
+    }
+
+    private void flushBuffer() throws IOException
+    {
+        if( m_buffer == null || m_buffer.position() == 0 ) return;
+
+        m_buffer.flip();
+        try
+        {
+            writeInner( m_buffer );
+        }
+        finally
+        {
+            // Keep anything we failed to write, so it is written (or the error reported) next time.
+            m_buffer.compact();
+            if( m_buffer.position() == 0 ) dirty.remove( this );
+        }
+    }
+
+    private int writeInner( ByteBuffer source ) throws IOException
+    {
+        int written = 0;
+        while( source.hasRemaining() )
+        {
+            int count = m_inner.write( source );
+            written += count;
+            if( m_onWrite != null ) m_onWrite.accept( count );
+        }
+        return written;
+    }
+
+    private static void flushAll()
+    {
+        for( BufferedWritableChannel channel : dirty ) channel.flushQuietly();
+    }
+
+    private synchronized void flushQuietly()
+    {
+        if( m_closed ) return;
+
+        try
+        {
+            flushBuffer();
+        }
+        catch( IOException | RuntimeException e )
+        {
+            // The buffer is kept, so this will be reported when the program next writes, flushes or closes.
+        }
+    }
+}
@@ -7,18 +7,32 @@
 package dan200.computercraft.core.filesystem;
 
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.filesystem.IWritableMount;
+import dan200.computercraft.shared.util.ThreadUtils;
 
 import javax.annotation.Nonnull;
 import java.io.*;
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
 
 public class FileMount implements IWritableMount
 {
@@ -27,18 +41,68 @@ public class FileMount implements IWritableMount
     private static final Set<OpenOption> WRITE_OPTIONS = Sets.newHashSet( StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING );
     private static final Set<OpenOption> APPEND_OPTIONS = Sets.newHashSet( StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.APPEND );
 
-    private class WritableCountingChannel implements WritableByteChannel
+    /**
+     * A directory inside each mount's root which stores our own metadata. This is hidden from computers, and does not
+     * count towards the used space.
+     *
+     * @see #readUsedSpace()
+     */
+    static final String METADATA_DIRECTORY = ".ccmeta";
+    static final String SIZE_FILE = "size";
+    private static final int SIZE_MAGIC = 0x43435332; // "CCS2"
+
+    /**
+     * How long to wait after a mount is modified before saving its used space. Mounts are also saved when unmounted.
+     */
+    private static final long SAVE_DELAY = 10;
+
+    /**
+     * Measures mounts whose size file is missing or stale, and saves modified ones. This is a single low priority
+     * thread, as measuring is only a head start: anything which needs the used space before it has been measured will
+     * do so itself.
+     */
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+        ThreadUtils.builder( "FileMount" ).setPriority( Thread.MIN_PRIORITY ).build()
+    );
+
+    class WritableCountingChannel implements WritableByteChannel, Flushable
     {
 
-        private final WritableByteChannel m_inner;
+        private final BufferedWritableChannel m_inner;
         long m_ignoredBytesLeft;
+        private boolean m_closed;
 
-        WritableCountingChannel( WritableByteChannel inner, long bytesToIgnore )
+        WritableCountingChannel( BufferedWritableChannel inner, long bytesToIgnore )
         {
             m_inner = inner;
             m_ignoredBytesLeft = bytesToIgnore;
         }
 
+        /**
+         * Set a listener which is called with the number of bytes written each time this file is written to disk.
+         *
+         * @param onWrite The listener to call.
+         */
+        void setWriteListener( LongConsumer onWrite )
+        {
+            m_inner.setWriteListener( onWrite );
+        }
+
+        /**
+         * Copy the remainder of a file into this one, without reading it into memory.
+         *
+         * @param source The file to copy from, starting at its current position.
+         * @return The number of bytes copied.
+         * @throws IOException If the file could not be copied, or there is not enough space.
+         */
+        long transferFrom( FileChannel source ) throws IOException
+        {
+            if( !isOpen() ) throw new ClosedChannelException();
+            long length = Math.max( source.size() - source.position(), 0 );
+            count( length );
+            return m_inner.transferFrom( source, length );
+        }
+
         @Override
         public int write( @Nonnull ByteBuffer b ) throws IOException
         {
@@ -54,18 +118,27 @@ public class FileMount implements IWritableMount
                 long newBytes = -m_ignoredBytesLeft;
                 m_ignoredBytesLeft = 0;
 
-                long bytesLeft = m_capacity - m_usedSpace;
-                if( newBytes > bytesLeft )
-                {
-                    throw new IOException( "Out of space" );
-                }
-                else
+                synchronized( FileMount.this )
                 {
-                    m_usedSpace += newBytes;
+                    long bytesLeft = m_capacity - m_usedSpace;
+                    if( newBytes > bytesLeft )
+                    {
+                        throw new IOException( "Out of space" );
+                    }
+                    else
+                    {
+                        m_usedSpace += newBytes;
+                    }
                 }
             }
         }
 
+        @Override
+        public void flush() throws IOException
+        {
+            m_inner.flush();
+        }
+
         @Override
         public boolean isOpen()
         {
@@ -75,7 +148,18 @@ public class FileMount implements IWritableMount
         @Override
         public void close() throws IOException
         {
-            m_inner.close();
+            try
+            {
+                m_inner.close();
+            }
+            finally
+            {
+                if( !m_closed )
+                {
+                    m_closed = true;
+                    endModification();
+                }
+            }
         }
     }
 
@@ -83,7 +167,7 @@ public class FileMount implements IWritableMount
     {
         private final SeekableByteChannel m_inner;
 
-        SeekableCountingChannel( SeekableByteChannel inner, long bytesToIgnore )
+        SeekableCountingChannel( BufferedWritableChannel inner, long bytesToIgnore )
         {
             super( inner, bytesToIgnore );
             this.m_inner = inner;
@@ -135,14 +219,52 @@ public class FileMount implements IWritableMount
     }
 
     private File m_rootPath;
+    private File m_metadataPath;
+    private File m_sizePath;
     private long m_capacity;
     private long m_usedSpace;
 
+    /**
+     * The pending measurement of this mount's used space, or {@code null} if {@link #m_usedSpace} is known.
+     */
+    private FutureTask<Long> m_measure;
+
+    /**
+     * The number of modifications in progress, including open write handles. The size file is only saved when there
+     * are none, so it never includes writes which have not reached the disk.
+     */
+    private int m_modifications;
+
+    /**
+     * Whether this mount has been modified since the size file was last saved. The size file is removed as soon as
+     * the mount is modified, so a crash before it is saved again forces the mount to be measured again.
+     */
+    private boolean m_dirty;
+    private boolean m_saveQueued;
+
     public FileMount( File rootPath, long capacity )
     {
         m_rootPath = rootPath;
+        m_metadataPath = new File( rootPath, METADATA_DIRECTORY );
+        m_sizePath = new File( m_metadataPath, SIZE_FILE );
         m_capacity = capacity + MINIMUM_FILE_SIZE;
-        m_usedSpace = created() ? measureUsedSpace( m_rootPath ) : MINIMUM_FILE_SIZE;
+
+        if( !created() )
+        {
+            m_usedSpace = MINIMUM_FILE_SIZE;
+        }
+        else if( !readUsedSpace() )
+        {
+            // Walking the whole directory is slow, so we do it off-thread. Mounts with no capacity can never be
+            // written to (such as resource pack directories), so we only measure those if something asks, and never
+            // save the result into them.
+            m_measure = new FutureTask<>( () -> {
+                long usedSpace = measureUsedSpace( m_rootPath );
+                if( capacity > 0 ) writeUsedSpace( usedSpace );
+                return usedSpace;
+            } );
+            if( capacity > 0 ) executor.execute( m_measure );
+        }
     }
 
     // IMount implementation
@@ -157,7 +279,7 @@ public class FileMount implements IWritableMount
         else
         {
             File file = getRealPath( path );
-            return file.exists();
+            return !isMetadata( path ) && file.exists();
         }
     }
 
@@ -171,7 +293,7 @@ public class FileMount implements IWritableMount
         else
         {
             File file = getRealPath( path );
-            return file.exists() && file.isDirectory();
+            return !isMetadata( path ) && file.exists() && file.isDirectory();
         }
     }
 
@@ -188,11 +310,12 @@ public class FileMount implements IWritableMount
         else
         {
             File file = getRealPath( path );
-            if( file.exists() && file.isDirectory() )
+            if( !isMetadata( path ) && file.exists() && file.isDirectory() )
             {
                 String[] paths = file.list();
                 for( String subPath : paths )
                 {
+                    if( path.isEmpty() && subPath.equals( METADATA_DIRECTORY ) ) continue;
                     if( new File( file, subPath ).exists() )
                     {
                         contents.add( subPath );
@@ -219,7 +342,7 @@ public class FileMount implements IWritableMount
         else
         {
             File file = getRealPath( path );
-            if( file.exists() )
+            if( !isMetadata( path ) && file.exists() )
             {
                 if( file.isDirectory() )
                 {
@@ -227,6 +350,7 @@ public class FileMount implements IWritableMount
                 }
                 else
                 {
+                    BufferedWritableChannel.flush( file.toPath() );
                     return file.length();
                 }
             }
@@ -242,8 +366,9 @@ public class FileMount implements IWritableMount
         if( created() )
         {
             File file = getRealPath( path );
-            if( file.exists() && !file.isDirectory() )
+            if( !isMetadata( path ) && file.exists() && !file.isDirectory() )
             {
+                BufferedWritableChannel.flush( file.toPath() );
                 return new FileInputStream( file );
             }
         }
@@ -257,9 +382,11 @@ public class FileMount implements IWritableMount
         if( created() )
         {
             File file = getRealPath( path );
-            if( file.exists() && !file.isDirectory() )
+            if( !isMetadata( path ) && file.exists() && !file.isDirectory() )
             {
-                return FileChannel.open( file.toPath(), READ_OPTIONS );
+                Path filePath = file.toPath();
+                BufferedWritableChannel.flush( filePath );
+                return FileChannel.open( filePath, READ_OPTIONS );
             }
         }
         throw new IOException( "/" + path + ": No such file" );
@@ -270,6 +397,8 @@ public class FileMount implements IWritableMount
     @Override
     public void makeDirectory( @Nonnull String path ) throws IOException
     {
+        if( isMetadata( path ) ) throw new IOException( "/" + path + ": Access denied" );
+
         create();
         File file = getRealPath( path );
         if( file.exists() )
@@ -281,27 +410,37 @@ public class FileMount implements IWritableMount
         }
         else
         {
-            int dirsToCreate = 1;
-            File parent = file.getParentFile();
-            while( !parent.exists() )
+            beginModification();
+            try
             {
-                ++dirsToCreate;
-                parent = parent.getParentFile();
-            }
+                int dirsToCreate = 1;
+                File parent = file.getParentFile();
+                while( !parent.exists() )
+                {
+                    ++dirsToCreate;
+                    parent = parent.getParentFile();
+                }
 
-            if( getRemainingSpace() < dirsToCreate * MINIMUM_FILE_SIZE )
-            {
-                throw new IOException( "/" + path + ": Out of space" );
-            }
+                long size = dirsToCreate * MINIMUM_FILE_SIZE;
+                synchronized( this )
+                {
+                    if( getRemainingSpace() < size )
+                    {
+                        throw new IOException( "/" + path + ": Out of space" );
+                    }
+                    m_usedSpace += size;
+                }
 
-            boolean success = file.mkdirs();
-            if( success )
-            {
-                m_usedSpace += dirsToCreate * MINIMUM_FILE_SIZE;
+                boolean success = file.mkdirs();
+                if( !success )
+                {
+                    releaseSpace( size );
+                    throw new IOException( "/" + path + ": Access denied" );
+                }
             }
-            else
+            finally
             {
-                throw new IOException( "/" + path + ": Access denied" );
+                endModification();
             }
         }
     }
@@ -309,7 +448,7 @@ public class FileMount implements IWritableMount
     @Override
     public void delete( @Nonnull String path ) throws IOException
     {
-        if( path.length() == 0 )
+        if( path.length() == 0 || isMetadata( path ) )
         {
             throw new IOException( "/" + path + ": Access denied" );
         }
@@ -319,7 +458,15 @@ public class FileMount implements IWritableMount
             File file = getRealPath( path );
             if( file.exists() )
             {
-                deleteRecursively( file );
+                beginModification();
+                try
+                {
+                    deleteRecursively( file );
+                }
+                finally
+                {
+                    endModification();
+                }
             }
         }
     }
@@ -341,7 +488,7 @@ public class FileMount implements IWritableMount
         boolean success = file.delete();
         if( success )
         {
-            m_usedSpace -= Math.max( MINIMUM_FILE_SIZE, fileSize );
+            releaseSpace( Math.max( MINIMUM_FILE_SIZE, fileSize ) );
         }
         else
         {
@@ -369,6 +516,8 @@ public class FileMount implements IWritableMount
     @Override
     public WritableByteChannel openChannelForWrite( @Nonnull String path ) throws IOException
     {
+        if( isMetadata( path ) ) throw new IOException( "/" + path + ": Access denied" );
+
         create();
         File file = getRealPath( path );
         if( file.exists() && file.isDirectory() )
@@ -377,23 +526,35 @@ public class FileMount implements IWritableMount
         }
         else
         {
-            if( !file.exists() )
+            beginModification();
+            try
             {
-                if( getRemainingSpace() < MINIMUM_FILE_SIZE )
+                synchronized( this )
                 {
-                    throw new IOException( "/" + path + ": Out of space" );
-                }
-                else
-                {
-                    m_usedSpace += MINIMUM_FILE_SIZE;
+                    if( !file.exists() )
+                    {
+                        if( getRemainingSpace() < MINIMUM_FILE_SIZE )
+                        {
+                            throw new IOException( "/" + path + ": Out of space" );
+                        }
+                        else
+                        {
+                            m_usedSpace += MINIMUM_FILE_SIZE;
+                        }
+                    }
+                    else
+                    {
+                        m_usedSpace -= Math.max( file.length(), MINIMUM_FILE_SIZE );
+                        m_usedSpace += MINIMUM_FILE_SIZE;
+                    }
                 }
+                return new SeekableCountingChannel( openBuffered( file, WRITE_OPTIONS ), MINIMUM_FILE_SIZE );
             }
-            else
+            catch( IOException | RuntimeException e )
             {
-                m_usedSpace -= Math.max( file.length(), MINIMUM_FILE_SIZE );
-                m_usedSpace += MINIMUM_FILE_SIZE;
+                endModification();
+                throw e;
             }
-            return new SeekableCountingChannel( Files.newByteChannel( file.toPath(), WRITE_OPTIONS ), MINIMUM_FILE_SIZE );
         }
     }
 
@@ -401,6 +562,8 @@ public class FileMount implements IWritableMount
     @Override
     public WritableByteChannel openChannelForAppend( @Nonnull String path ) throws IOException
     {
+        if( isMetadata( path ) ) throw new IOException( "/" + path + ": Access denied" );
+
         if( created() )
         {
             File file = getRealPath( path );
@@ -414,11 +577,20 @@ public class FileMount implements IWritableMount
             }
             else
             {
-                // Allowing seeking when appending is not recommended, so we use a separate channel.
-                return new WritableCountingChannel(
-                    Files.newByteChannel( file.toPath(), APPEND_OPTIONS ),
-                    Math.max( MINIMUM_FILE_SIZE - file.length(), 0 )
-                );
+                beginModification();
+                try
+                {
+                    // Allowing seeking when appending is not recommended, so we use a separate channel.
+                    return new WritableCountingChannel(
+                        openBuffered( file, APPEND_OPTIONS ),
+                        Math.max( MINIMUM_FILE_SIZE - file.length(), 0 )
+                    );
+                }
+                catch( IOException | RuntimeException e )
+                {
+                    endModification();
+                    throw e;
+                }
             }
         }
         else
@@ -427,9 +599,75 @@ public class FileMount implements IWritableMount
         }
     }
 
+    /**
+     * Move a file or directory to another location on this mount, or to another {@link FileMount}, by renaming it.
+     *
+     * @param path            The file to move.
+     * @param destination     The mount to move it to.
+     * @param destinationPath The path to move it to. This should not exist, but its parent directory should.
+     * @return Whether the file was moved. If not (such as when the two mounts are on different disks, or the file is open
+     * for writing) nothing has changed, and the file should be copied instead.
+     * @throws IOException If the file could not be moved, or the destination does not have enough space.
+     */
+    boolean moveTo( @Nonnull String path, @Nonnull FileMount destination, @Nonnull String destinationPath ) throws IOException
+    {
+        if( path.isEmpty() || !created() || isMetadata( path ) || isMetadata( destinationPath ) ) return false;
+
+        File source = getRealPath( path );
+        File target = destination.getRealPath( destinationPath );
+        if( !source.exists() || target.exists() || !target.getParentFile().isDirectory() ) return false;
+
+        // Open handles would keep buffering under the old path, so copy the file instead.
+        if( BufferedWritableChannel.isBuffering( source.toPath() ) ) return false;
+
+        // Moving within a mount doesn't change its size. Otherwise we reserve space on the destination up front, and
+        // only release it from this mount once moved. The two mounts are never locked at the same time.
+        long size = destination == this ? 0 : measureUsedSpace( source );
+        beginModification();
+        if( destination != this ) destination.beginModification();
+        try
+        {
+            if( size > 0 ) destination.reserveSpace( size );
+            try
+            {
+                Files.move( source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE );
+            }
+            catch( AtomicMoveNotSupportedException e )
+            {
+                if( size > 0 ) destination.releaseSpace( size );
+                return false;
+            }
+            catch( IOException | RuntimeException e )
+            {
+                if( size > 0 ) destination.releaseSpace( size );
+                throw e;
+            }
+
+            if( size > 0 ) releaseSpace( size );
+            return true;
+        }
+        finally
+        {
+            if( destination != this ) destination.endModification();
+            endModification();
+        }
+    }
+
+    private synchronized void reserveSpace( long size ) throws IOException
+    {
+        if( m_capacity - m_usedSpace < size ) throw new IOException( "Out of space" );
+        m_usedSpace += size;
+    }
+
+    private synchronized void releaseSpace( long size )
+    {
+        m_usedSpace -= size;
+    }
+
     @Override
-    public long getRemainingSpace()
+    public synchronized long getRemainingSpace()
     {
+        awaitUsedSpace();
         return Math.max( m_capacity - m_usedSpace, 0 );
     }
 
@@ -438,6 +676,18 @@ public class FileMount implements IWritableMount
         return new File( m_rootPath, path );
     }
 
+    /**
+     * Determine whether a path refers to our {@link #METADATA_DIRECTORY}, and so should be hidden from computers.
+     *
+     * @param path The path to check, relative to the root.
+     * @return Whether this path is part of the metadata directory.
+     */
+    private static boolean isMetadata( String path )
+    {
+        return path.startsWith( METADATA_DIRECTORY )
+            && (path.length() == METADATA_DIRECTORY.length() || path.charAt( METADATA_DIRECTORY.length() ) == '/');
+    }
+
     private boolean created()
     {
         return m_rootPath.exists();
@@ -455,9 +705,150 @@ public class FileMount implements IWritableMount
         }
     }
 
+    private static BufferedWritableChannel openBuffered( File file, Set<OpenOption> options ) throws IOException
+    {
+        return new BufferedWritableChannel( Files.newByteChannel( file.toPath(), options ), file.toPath(), ComputerCraft.file_write_buffer );
+    }
+
+    /**
+     * Wait for this mount's used space to be measured, measuring it on this thread if the background thread has not
+     * started yet. This must be called while holding the lock.
+     */
+    private void awaitUsedSpace()
+    {
+        FutureTask<Long> measure = m_measure;
+        if( measure == null ) return;
+
+        measure.run();
+        try
+        {
+            m_usedSpace = Futures.getUnchecked( measure );
+        }
+        catch( UncheckedExecutionException e )
+        {
+            ComputerCraft.log.error( "Error measuring used space of " + m_rootPath, e.getCause() );
+            m_usedSpace = measureUsedSpace( m_rootPath );
+        }
+        m_measure = null;
+    }
+
+    private synchronized void beginModification()
+    {
+        awaitUsedSpace();
+        m_modifications++;
+        if( !m_dirty )
+        {
+            m_dirty = true;
+            m_sizePath.delete();
+        }
+    }
+
+    private synchronized void endModification()
+    {
+        if( --m_modifications > 0 || m_saveQueued ) return;
+
+        m_saveQueued = true;
+        WeakReference<FileMount> mount = new WeakReference<>( this );
+        executor.schedule( () -> {
+            FileMount self = mount.get();
+            if( self != null ) self.saveUsedSpace();
+        }, SAVE_DELAY, TimeUnit.SECONDS );
+    }
+
+    /**
+     * Save the used space to the size file, if it has changed and no modifications are in progress. This is called
+     * shortly after the mount is modified, and when it is unmounted.
+     */
+    synchronized void saveUsedSpace()
+    {
+        m_saveQueued = false;
+        if( m_modifications > 0 || !m_dirty ) return;
+
+        m_dirty = false;
+        writeUsedSpace( m_usedSpace );
+    }
+
+    /**
+     * Read the used space from this mount's size file.
+     *
+     * The file also stores a fingerprint of the root directory's contents (see {@link #fingerprint()}), so we notice
+     * files being changed there by something other than this mount. Changes further down the tree which leave the
+     * top-level entries untouched are not detected: deleting the {@link #METADATA_DIRECTORY} will force the mount to be
+     * measured again.
+     *
+     * @return Whether the size file exists and is up to date.
+     */
+    private boolean readUsedSpace()
+    {
+        if( !m_sizePath.isFile() ) return false;
+
+        try( DataInputStream input = new DataInputStream( new FileInputStream( m_sizePath ) ) )
+        {
+            if( input.readInt() != SIZE_MAGIC ) return false;
+            long usedSpace = input.readLong();
+            if( input.readLong() != fingerprint() ) return false;
+
+            m_usedSpace = usedSpace;
+            return true;
+        }
+        catch( IOException e )
+        {
+            return false;
+        }
+    }
+
+    private void writeUsedSpace( long usedSpace )
+    {
+        if( !created() || (!m_metadataPath.isDirectory() && !m_metadataPath.mkdir()) ) return;
+
+        // Write to a temporary file first, so a crash never leaves a truncated size file behind.
+        File tempPath = new File( m_metadataPath, SIZE_FILE + ".tmp" );
+        try
+        {
+            try( DataOutputStream output = new DataOutputStream( new FileOutputStream( tempPath ) ) )
+            {
+                output.writeInt( SIZE_MAGIC );
+                output.writeLong( usedSpace );
+                output.writeLong( fingerprint() );
+            }
+            Files.move( tempPath.toPath(), m_sizePath.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch( IOException e )
+        {
+            // Not fatal: the mount will just be measured again when next loaded.
+            tempPath.delete();
+        }
+    }
+
+    /**
+     * Compute a fingerprint of the root directory: its modification time, along with the name, size and modification
+     * time of each entry in it. This changes whenever a file in the root is changed, or a file is added to or removed
+     * from a directory in the root.
+     *
+     * @return The root directory's fingerprint.
+     */
+    private long fingerprint()
+    {
+        long hash = m_rootPath.lastModified();
+        String[] contents = m_rootPath.list();
+        if( contents == null ) return hash;
+
+        Arrays.sort( contents );
+        for( String content : contents )
+        {
+            if( content.equals( METADATA_DIRECTORY ) ) continue;
+
+            File file = new File( m_rootPath, content );
+            hash = hash * 31 + content.hashCode();
+            hash = hash * 31 + file.length();
+            hash = hash * 31 + file.lastModified();
+        }
+        return hash;
+    }
+
     private long measureUsedSpace( File file )
     {
-        if( !file.exists() )
+        if( !file.exists() || file.equals( m_metadataPath ) )
         {
             return 0;
         }
@@ -465,6 +856,7 @@ public class FileMount implements IWritableMount
         {
             long size = MINIMUM_FILE_SIZE;
             String[] contents = file.list();
+            if( contents == null ) return size;
             for( String content : contents )
             {
                 size += measureUsedSpace( new File( file, content ) );
@@ -11,6 +11,7 @@ import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.filesystem.IFileSystem;
 import dan200.computercraft.api.filesystem.IMount;
 import dan200.computercraft.api.filesystem.IWritableMount;
+import dan200.computercraft.core.tracking.TrackingField;
 import dan200.computercraft.shared.util.IoUtil;
 
 import javax.annotation.Nonnull;
@@ -19,11 +20,16 @@ import java.io.IOException;
 import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.file.AccessDeniedException;
 import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.ObjLongConsumer;
 import java.util.regex.Pattern;
 
 public class FileSystem
@@ -35,6 +41,7 @@ public class FileSystem
 
         private IMount m_mount;
         private IWritableMount m_writableMount;
+        private volatile boolean m_removed;
 
         public MountWrapper( String label, String location, IMount mount )
         {
@@ -50,6 +57,23 @@ public class FileSystem
             m_writableMount = mount;
         }
 
+        /**
+         * Called once this mount is no longer part of the file system, so it can save anything it keeps in memory.
+         */
+        public void release()
+        {
+            m_removed = true;
+            if( m_writableMount instanceof FileMount ) ((FileMount) m_writableMount).saveUsedSpace();
+        }
+
+        /**
+         * @return Whether this mount has been removed from (or replaced within) the file system.
+         */
+        public boolean isRemoved()
+        {
+            return m_removed;
+        }
+
         public String getLabel()
         {
             return m_label;
@@ -185,25 +209,28 @@ public class FileSystem
             {
                 throw new FileSystemException( "/" + path + ": Access denied" );
             }
-            try
+            synchronized( m_writableMount )
             {
-                path = toLocal( path );
-                if( m_mount.exists( path ) )
+                try
                 {
-                    if( !m_mount.isDirectory( path ) )
+                    path = toLocal( path );
+                    if( m_mount.exists( path ) )
                     {
-                        throw new FileSystemException( "/" + path + ": File exists" );
+                        if( !m_mount.isDirectory( path ) )
+                        {
+                            throw new FileSystemException( "/" + path + ": File exists" );
+                        }
+                    }
+                    else
+                    {
+                        m_writableMount.makeDirectory( path );
                     }
                 }
-                else
+                catch( IOException e )
                 {
-                    m_writableMount.makeDirectory( path );
+                    throw new FileSystemException( e.getMessage() );
                 }
             }
-            catch( IOException e )
-            {
-                throw new FileSystemException( e.getMessage() );
-            }
         }
 
         public void delete( String path ) throws FileSystemException
@@ -212,21 +239,24 @@ public class FileSystem
             {
                 throw new FileSystemException( "/" + path + ": Access denied" );
             }
-            try
+            synchronized( m_writableMount )
             {
-                path = toLocal( path );
-                if( m_mount.exists( path ) )
+                try
                 {
-                    m_writableMount.delete( path );
+                    path = toLocal( path );
+                    if( m_mount.exists( path ) )
+                    {
+                        m_writableMount.delete( path );
+                    }
+                }
+                catch( AccessDeniedException e )
+                {
+                    throw new FileSystemException( "Access denied" );
+                }
+                catch( IOException e )
+                {
+                    throw new FileSystemException( e.getMessage() );
                 }
-            }
-            catch( AccessDeniedException e )
-            {
-                throw new FileSystemException( "Access denied" );
-            }
-            catch( IOException e )
-            {
-                throw new FileSystemException( e.getMessage() );
             }
         }
 
@@ -236,33 +266,36 @@ public class FileSystem
             {
                 throw new FileSystemException( "/" + path + ": Access denied" );
             }
-            try
+            synchronized( m_writableMount )
             {
-                path = toLocal( path );
-                if( m_mount.exists( path ) && m_mount.isDirectory( path ) )
+                try
                 {
-                    throw new FileSystemException( "/" + path + ": Cannot write to directory" );
-                }
-                else
-                {
-                    if( !path.isEmpty() )
+                    path = toLocal( path );
+                    if( m_mount.exists( path ) && m_mount.isDirectory( path ) )
                     {
-                        String dir = getDirectory( path );
-                        if( !dir.isEmpty() && !m_mount.exists( path ) )
+                        throw new FileSystemException( "/" + path + ": Cannot write to directory" );
+                    }
+                    else
+                    {
+                        if( !path.isEmpty() )
                         {
-                            m_writableMount.makeDirectory( dir );
+                            String dir = getDirectory( path );
+                            if( !dir.isEmpty() && !m_mount.exists( path ) )
+                            {
+                                m_writableMount.makeDirectory( dir );
+                            }
                         }
+                        return m_writableMount.openChannelForWrite( path );
                     }
-                    return m_writableMount.openChannelForWrite( path );
                 }
-            }
-            catch( AccessDeniedException e )
-            {
-                throw new FileSystemException( "Access denied" );
-            }
-            catch( IOException e )
-            {
-                throw new FileSystemException( e.getMessage() );
+                catch( AccessDeniedException e )
+                {
+                    throw new FileSystemException( "Access denied" );
+                }
+                catch( IOException e )
+                {
+                    throw new FileSystemException( e.getMessage() );
+                }
             }
         }
 
@@ -272,30 +305,53 @@ public class FileSystem
             {
                 throw new FileSystemException( "/" + path + ": Access denied" );
             }
-            try
+            synchronized( m_writableMount )
             {
-                path = toLocal( path );
-                if( !m_mount.exists( path ) )
+                try
                 {
-                    if( !path.isEmpty() )
+                    path = toLocal( path );
+                    if( !m_mount.exists( path ) )
                     {
-                        String dir = getDirectory( path );
-                        if( !dir.isEmpty() && !m_mount.exists( path ) )
+                        if( !path.isEmpty() )
                         {
-                            m_writableMount.makeDirectory( dir );
+                            String dir = getDirectory( path );
+                            if( !dir.isEmpty() && !m_mount.exists( path ) )
+                            {
+                                m_writableMount.makeDirectory( dir );
+                            }
                         }
+                        return m_writableMount.openChannelForWrite( path );
+                    }
+                    else if( m_mount.isDirectory( path ) )
+                    {
+                        throw new FileSystemException( "/" + path + ": Cannot write to directory" );
+                    }
+                    else
+                    {
+                        return m_writableMount.openChannelForAppend( path );
                     }
-                    return m_writableMount.openChannelForWrite( path );
                 }
-                else if( m_mount.isDirectory( path ) )
+                catch( AccessDeniedException e )
                 {
-                    throw new FileSystemException( "/" + path + ": Cannot write to directory" );
+                    throw new FileSystemException( "Access denied" );
                 }
-                else
+                catch( IOException e )
                 {
-                    return m_writableMount.openChannelForAppend( path );
+                    throw new FileSystemException( e.getMessage() );
                 }
             }
+        }
+
+        public boolean moveTo( String path, MountWrapper destination, String destinationPath ) throws FileSystemException
+        {
+            if( !(m_writableMount instanceof FileMount) || !(destination.m_writableMount instanceof FileMount) )
+            {
+                return false;
+            }
+            try
+            {
+                return ((FileMount) m_writableMount).moveTo( toLocal( path ), (FileMount) destination.m_writableMount, destination.toLocal( destinationPath ) );
+            }
             catch( AccessDeniedException e )
             {
                 throw new FileSystemException( "Access denied" );
@@ -306,6 +362,14 @@ public class FileSystem
             }
         }
 
+        /**
+         * @return The object to synchronise on when modifying this mount.
+         */
+        public Object getLock()
+        {
+            return m_writableMount != null ? m_writableMount : m_mount;
+        }
+
         // private members
 
         private String toLocal( String path )
@@ -314,12 +378,59 @@ public class FileSystem
         }
     }
 
+    /**
+     * A node in the tree of mount locations. Each node corresponds to a single path segment, and holds the mount at
+     * that location, if there is one.
+     */
+    private static final class MountNode
+    {
+        final String name;
+        final List<MountNode> children = new ArrayList<>( 0 );
+        MountWrapper mount;
+
+        MountNode( String name )
+        {
+            this.name = name;
+        }
+
+        /**
+         * Find the child whose name matches {@code path.substring( start, end )}, without allocating a new string.
+         */
+        MountNode getChild( String path, int start, int end )
+        {
+            int length = end - start;
+            for( int i = 0; i < children.size(); i++ )
+            {
+                MountNode child = children.get( i );
+                if( child.name.length() == length && path.regionMatches( start, child.name, 0, length ) ) return child;
+            }
+            return null;
+        }
+
+        boolean isEmpty()
+        {
+            return mount == null && children.isEmpty();
+        }
+    }
+
     private final FileSystemWrapperMount m_wrapper = new FileSystemWrapperMount( this );
-    private final Map<String, MountWrapper> m_mounts = new HashMap<>();
+    private final MountNode m_mounts = new MountNode( "" );
 
     private final HashMap<WeakReference<FileSystemWrapper<?>>, Closeable> m_openFiles = new HashMap<>();
     private final ReferenceQueue<FileSystemWrapper<?>> m_openFileQueue = new ReferenceQueue<>();
 
+    /**
+     * Guards the mount tree. Path operations hold the read lock, so computers may use different mounts (or the same
+     * mount) concurrently; only {@link #mount} and {@link #unmount} take the write lock.
+     *
+     * Operations which modify a mount also synchronise on it, so they do not interleave with changes made through
+     * another computer sharing the same mount.
+     */
+    private final ReadWriteLock m_lock = new ReentrantReadWriteLock();
+
+    private ObjLongConsumer<TrackingField> m_tracker;
+    private Runnable m_pause;
+
     public FileSystem( String rootLabel, IMount rootMount ) throws FileSystemException
     {
         mount( rootLabel, "", rootMount );
@@ -330,6 +441,30 @@ public class FileSystem
         mountWritable( rootLabel, "", rootMount );
     }
 
+    /**
+     * Set a tracker to report disk writes to. This receives {@link TrackingField#FS_WRITES} and
+     * {@link TrackingField#FS_BYTES_WRITTEN} for files opened on a {@link FileMount}.
+     *
+     * @param tracker The tracker to report to.
+     */
+    public void setTracker( ObjLongConsumer<TrackingField> tracker )
+    {
+        m_tracker = tracker;
+    }
+
+    /**
+     * Set a handler which is run between each directory of a large copy or search, while no locks are held. This allows the
+     * computer to be paused if it has used up its timeslice, rather than blocking other computers until the copy is
+     * done. The handler is run on whichever thread is copying, so should do nothing unless that thread is running the
+     * computer's own code.
+     *
+     * @param pause The handler to run.
+     */
+    public void setPauseHandler( Runnable pause )
+    {
+        m_pause = pause;
+    }
+
     public void unload()
     {
         // Close all dangling open files
@@ -339,9 +474,25 @@ public class FileSystem
             m_openFiles.clear();
             while( m_openFileQueue.poll() != null ) ;
         }
+
+        m_lock.readLock().lock();
+        try
+        {
+            release( m_mounts );
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized void mount( String label, String location, IMount mount ) throws FileSystemException
+    private static void release( MountNode node )
+    {
+        if( node.mount != null ) node.mount.release();
+        for( MountNode child : node.children ) release( child );
+    }
+
+    public void mount( String label, String location, IMount mount ) throws FileSystemException
     {
         if( mount == null ) throw new NullPointerException();
         location = sanitizePath( location );
@@ -352,7 +503,7 @@ public class FileSystem
         mount( new MountWrapper( label, location, mount ) );
     }
 
-    public synchronized void mountWritable( String label, String location, IWritableMount mount ) throws FileSystemException
+    public void mountWritable( String label, String location, IWritableMount mount ) throws FileSystemException
     {
         if( mount == null )
         {
@@ -366,20 +517,69 @@ public class FileSystem
         mount( new MountWrapper( label, location, mount ) );
     }
 
-    private synchronized void mount( MountWrapper wrapper )
+    private void mount( MountWrapper wrapper )
     {
-        String location = wrapper.getLocation();
-        m_mounts.remove( location );
-        m_mounts.put( location, wrapper );
+        m_lock.writeLock().lock();
+        try
+        {
+            String location = wrapper.getLocation();
+            MountNode node = m_mounts;
+            int start = 0;
+            while( start < location.length() )
+            {
+                int end = location.indexOf( '/', start );
+                if( end < 0 ) end = location.length();
+
+                MountNode child = node.getChild( location, start, end );
+                if( child == null ) node.children.add( child = new MountNode( location.substring( start, end ) ) );
+
+                node = child;
+                start = end + 1;
+            }
+
+            if( node.mount != null ) node.mount.release();
+            node.mount = wrapper;
+        }
+        finally
+        {
+            m_lock.writeLock().unlock();
+        }
     }
 
-    public synchronized void unmount( String path )
+    public void unmount( String path )
     {
-        path = sanitizePath( path );
-        m_mounts.remove( path );
+        m_lock.writeLock().lock();
+        try
+        {
+            path = sanitizePath( path );
+            unmount( m_mounts, path, 0 );
+        }
+        finally
+        {
+            m_lock.writeLock().unlock();
+        }
     }
 
-    public synchronized String combine( String path, String childPath )
+    private static void unmount( MountNode node, String path, int start )
+    {
+        if( start >= path.length() )
+        {
+            if( node.mount != null ) node.mount.release();
+            node.mount = null;
+            return;
+        }
+
+        int end = path.indexOf( '/', start );
+        if( end < 0 ) end = path.length();
+
+        MountNode child = node.getChild( path, start, end );
+        if( child == null ) return;
+
+        unmount( child, path, end + 1 );
+        if( child.isEmpty() ) node.children.remove( child );
+    }
+
+    public String combine( String path, String childPath )
     {
         path = sanitizePath( path, true );
         childPath = sanitizePath( childPath, true );
@@ -436,215 +636,415 @@ public class FileSystem
         }
     }
 
-    public synchronized long getSize( String path ) throws FileSystemException
+    public long getSize( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        return mount.getSize( path );
+        m_lock.readLock().lock();
+        try
+        {
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            return mount.getSize( path );
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized String[] list( String path ) throws FileSystemException
+    public String[] list( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
+        m_lock.readLock().lock();
+        try
+        {
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
 
-        // Gets a list of the files in the mount
-        List<String> list = new ArrayList<>();
-        mount.list( path, list );
+            // Gets a list of the files in the mount
+            List<String> list = new ArrayList<>();
+            mount.list( path, list );
 
-        // Add any mounts that are mounted at this location
-        for( MountWrapper otherMount : m_mounts.values() )
-        {
-            if( getDirectory( otherMount.getLocation() ).equals( path ) )
+            // Add any mounts that are mounted at this location
+            MountNode node = getMountNode( path );
+            if( node != null )
             {
-                list.add( getName( otherMount.getLocation() ) );
+                for( MountNode child : node.children )
+                {
+                    if( child.mount != null ) list.add( child.name );
+                }
             }
+
+            // Return list
+            String[] array = new String[list.size()];
+            list.toArray( array );
+            Arrays.sort( array );
+            return array;
         }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
+    }
+
+    public String[] find( String wildPath ) throws FileSystemException
+    {
+        List<String> matches = new ArrayList<>();
+        find( wildPath, matches::add );
 
-        // Return list
-        String[] array = new String[list.size()];
-        list.toArray( array );
-        Arrays.sort( array );
+        // Return matches
+        String[] array = new String[matches.size()];
+        matches.toArray( array );
         return array;
     }
 
-    private void findIn( String dir, List<String> matches, Pattern wildPattern ) throws FileSystemException
+    /**
+     * Find all files matching a wildcard pattern, passing each match to {@code consumer} as it is found.
+     *
+     * The pattern is matched one path segment at a time, so we only descend into directories which could contain a
+     * match, and never further than the pattern's depth.
+     *
+     * Like {@link #copy(String, String)}, the locks are only held while looking at each directory. After listing a
+     * directory, we give the {@link #setPauseHandler(Runnable) pause handler} a chance to suspend the computer, so a
+     * search of a large tree does not block other computers.
+     *
+     * @param wildPath The pattern to match, where {@code *} matches any characters within a single path segment.
+     * @param consumer The consumer to accept each matching path.
+     * @throws FileSystemException If a directory could not be listed.
+     */
+    public void find( String wildPath, Consumer<String> consumer ) throws FileSystemException
     {
-        String[] list = list( dir );
-        for( String entry : list )
+        // Match all the files on the system
+        wildPath = sanitizePath( wildPath, true );
+
+        // If we don't have a wildcard at all just check the file exists
+        if( wildPath.indexOf( '*' ) == -1 )
         {
-            String entryPath = dir.isEmpty() ? entry : (dir + "/" + entry);
-            if( wildPattern.matcher( entryPath ).matches() )
-            {
-                matches.add( entryPath );
-            }
-            if( isDir( entryPath ) )
+            if( exists( wildPath ) ) consumer.accept( wildPath );
+            return;
+        }
+
+        // Compile a pattern for each segment containing a wildcard. Other segments are matched literally.
+        String[] segments = wildPath.split( "/" );
+        Pattern[] patterns = new Pattern[segments.length];
+        for( int i = 0; i < segments.length; i++ )
+        {
+            String segment = segments[i];
+            if( segment.indexOf( '*' ) >= 0 )
             {
-                findIn( entryPath, matches, wildPattern );
+                patterns[i] = Pattern.compile( "^\\Q" + segment.replaceAll( "\\*", "\\\\E.*\\\\Q" ) + "\\E$" );
             }
         }
+
+        findIn( "", segments, patterns, 0, consumer );
     }
 
-    public synchronized String[] find( String wildPath ) throws FileSystemException
+    private void findIn( String dir, String[] segments, Pattern[] patterns, int depth, Consumer<String> consumer ) throws FileSystemException
     {
-        // Match all the files on the system
-        wildPath = sanitizePath( wildPath, true );
-
-        // If we don't have a wildcard at all just check the file exists
-        int starIndex = wildPath.indexOf( '*' );
-        if( starIndex == -1 )
+        boolean last = depth == segments.length - 1;
+        Pattern pattern = patterns[depth];
+        if( pattern == null )
         {
-            return exists( wildPath ) ? new String[] { wildPath } : new String[0];
+            // This segment has no wildcards, so there's no need to list the directory.
+            String entryPath = dir.isEmpty() ? segments[depth] : (dir + "/" + segments[depth]);
+            if( last )
+            {
+                if( exists( entryPath ) ) consumer.accept( entryPath );
+            }
+            else if( isDir( entryPath ) )
+            {
+                findIn( entryPath, segments, patterns, depth + 1, consumer );
+            }
+            return;
         }
 
-        // Find the all non-wildcarded directories. For instance foo/bar/baz* -> foo/bar
-        int prevDir = wildPath.substring( 0, starIndex ).lastIndexOf( '/' );
-        String startDir = prevDir == -1 ? "" : wildPath.substring( 0, prevDir );
+        if( !isDir( dir ) ) return;
+        String[] entries = list( dir );
 
-        // If this isn't a directory then just abort
-        if( !isDir( startDir ) ) return new String[0];
+        Runnable pause = m_pause;
+        if( pause != null ) pause.run();
 
-        // Scan as normal, starting from this directory
-        Pattern wildPattern = Pattern.compile( "^\\Q" + wildPath.replaceAll( "\\*", "\\\\E[^\\\\/]*\\\\Q" ) + "\\E$" );
-        List<String> matches = new ArrayList<>();
-        findIn( startDir, matches, wildPattern );
+        for( String entry : entries )
+        {
+            if( !pattern.matcher( entry ).matches() ) continue;
 
-        // Return matches
-        String[] array = new String[matches.size()];
-        matches.toArray( array );
-        return array;
+            String entryPath = dir.isEmpty() ? entry : (dir + "/" + entry);
+            if( last )
+            {
+                consumer.accept( entryPath );
+            }
+            else if( isDir( entryPath ) )
+            {
+                findIn( entryPath, segments, patterns, depth + 1, consumer );
+            }
+        }
     }
 
-    public synchronized boolean exists( String path ) throws FileSystemException
+    public boolean exists( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        return mount.exists( path );
+        m_lock.readLock().lock();
+        try
+        {
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            return mount.exists( path );
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized boolean isDir( String path ) throws FileSystemException
+    public boolean isDir( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        return mount.isDirectory( path );
+        m_lock.readLock().lock();
+        try
+        {
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            return mount.isDirectory( path );
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized boolean isReadOnly( String path ) throws FileSystemException
+    public boolean isReadOnly( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        return mount.isReadOnly( path );
+        m_lock.readLock().lock();
+        try
+        {
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            return mount.isReadOnly( path );
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized String getMountLabel( String path ) throws FileSystemException
+    public String getMountLabel( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        return mount.getLabel();
+        m_lock.readLock().lock();
+        try
+        {
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            return mount.getLabel();
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized void makeDir( String path ) throws FileSystemException
+    public void makeDir( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        mount.makeDirectory( path );
+        m_lock.readLock().lock();
+        try
+        {
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            mount.makeDirectory( path );
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized void delete( String path ) throws FileSystemException
+    public void delete( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        mount.delete( path );
+        m_lock.readLock().lock();
+        try
+        {
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            mount.delete( path );
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized void move( String sourcePath, String destPath ) throws FileSystemException
+    public void move( String sourcePath, String destPath ) throws FileSystemException
     {
-        sourcePath = sanitizePath( sourcePath );
-        destPath = sanitizePath( destPath );
-        if( isReadOnly( sourcePath ) || isReadOnly( destPath ) )
+        // Hold the write lock while checking the paths and attempting a rename, so nothing is mounted or unmounted in
+        // between.
+        MountWrapper sourceMount, destMount;
+        m_lock.writeLock().lock();
+        try
         {
-            throw new FileSystemException( "Access denied" );
+            sourcePath = sanitizePath( sourcePath );
+            destPath = sanitizePath( destPath );
+            if( isReadOnly( sourcePath ) || isReadOnly( destPath ) )
+            {
+                throw new FileSystemException( "Access denied" );
+            }
+            if( !exists( sourcePath ) )
+            {
+                throw new FileSystemException( "No such file" );
+            }
+            if( exists( destPath ) )
+            {
+                throw new FileSystemException( "File exists" );
+            }
+            if( contains( sourcePath, destPath ) )
+            {
+                throw new FileSystemException( "Can't move a directory inside itself" );
+            }
+
+            // Rename the file if we can. A rename is atomic, so we don't need to hold either mount's lock.
+            sourceMount = getMount( sourcePath );
+            destMount = getMount( destPath );
+            if( sourceMount.moveTo( sourcePath, destMount, destPath ) ) return;
         }
-        if( !exists( sourcePath ) )
+        finally
         {
-            throw new FileSystemException( "No such file" );
+            m_lock.writeLock().unlock();
         }
-        if( exists( destPath ) )
+
+        // Otherwise copy and then delete the files, only holding the locks for one file at a time. If either mount is
+        // removed part way through, we stop rather than carrying on with whatever has replaced it.
+        copyRecursive( sourcePath, destPath, sourceMount, destMount );
+
+        m_lock.readLock().lock();
+        try
         {
-            throw new FileSystemException( "File exists" );
+            checkMounted( sourceMount, destMount );
+            sourceMount.delete( sourcePath );
         }
-        if( contains( sourcePath, destPath ) )
+        finally
         {
-            throw new FileSystemException( "Can't move a directory inside itself" );
+            m_lock.readLock().unlock();
         }
-        copy( sourcePath, destPath );
-        delete( sourcePath );
     }
 
-    public synchronized void copy( String sourcePath, String destPath ) throws FileSystemException
+    public void copy( String sourcePath, String destPath ) throws FileSystemException
     {
-        sourcePath = sanitizePath( sourcePath );
-        destPath = sanitizePath( destPath );
-        if( isReadOnly( destPath ) )
+        m_lock.readLock().lock();
+        try
+        {
+            sourcePath = sanitizePath( sourcePath );
+            destPath = sanitizePath( destPath );
+            if( isReadOnly( destPath ) )
+            {
+                throw new FileSystemException( "/" + destPath + ": Access denied" );
+            }
+            if( !exists( sourcePath ) )
+            {
+                throw new FileSystemException( "/" + sourcePath + ": No such file" );
+            }
+            if( exists( destPath ) )
+            {
+                throw new FileSystemException( "/" + destPath + ": File exists" );
+            }
+            if( contains( sourcePath, destPath ) )
+            {
+                throw new FileSystemException( "/" + sourcePath + ": Can't copy a directory inside itself" );
+            }
+        }
+        finally
         {
-            throw new FileSystemException( "/" + destPath + ": Access denied" );
+            m_lock.readLock().unlock();
         }
-        if( !exists( sourcePath ) )
+
+        copyRecursive( sourcePath, destPath );
+    }
+
+    /**
+     * Copy a file or directory, one file at a time.
+     *
+     * The locks are only held while copying each file, so other operations can happen between them. After each
+     * directory, we also give the {@link #setPauseHandler(Runnable) pause handler} a chance to suspend the computer if
+     * others are waiting to run.
+     *
+     * @param sourcePath      The file or directory to copy.
+     * @param destinationPath The path to copy it to.
+     * @param pinned          Mounts which must remain part of the file system for the whole copy.
+     * @throws FileSystemException If the file could not be copied, or one of the pinned mounts was removed.
+     */
+    private void copyRecursive( String sourcePath, String destinationPath, MountWrapper... pinned ) throws FileSystemException
+    {
+        List<String> sourceChildren;
+        m_lock.readLock().lock();
+        try
         {
-            throw new FileSystemException( "/" + sourcePath + ": No such file" );
+            checkMounted( pinned );
+
+            MountWrapper sourceMount = getMount( sourcePath );
+            MountWrapper destinationMount = getMount( destinationPath );
+            if( !sourceMount.exists( sourcePath ) )
+            {
+                return;
+            }
+
+            if( sourceMount.isDirectory( sourcePath ) )
+            {
+                // Copy a directory:
+                // Make the new directory
+                destinationMount.makeDirectory( destinationPath );
+
+                // Copy the source contents into it
+                sourceChildren = new ArrayList<>();
+                sourceMount.list( sourcePath, sourceChildren );
+            }
+            else
+            {
+                // Copy a file, holding the destination mount's lock so other computers see either none or all of it.
+                synchronized( destinationMount.getLock() )
+                {
+                    copyFile( sourcePath, sourceMount, destinationPath, destinationMount );
+                }
+                return;
+            }
         }
-        if( exists( destPath ) )
+        finally
         {
-            throw new FileSystemException( "/" + destPath + ": File exists" );
+            m_lock.readLock().unlock();
         }
-        if( contains( sourcePath, destPath ) )
+
+        Runnable pause = m_pause;
+        if( pause != null ) pause.run();
+
+        for( String child : sourceChildren )
         {
-            throw new FileSystemException( "/" + sourcePath + ": Can't copy a directory inside itself" );
+            copyRecursive( combine( sourcePath, child ), combine( destinationPath, child ), pinned );
         }
-        copyRecursive( sourcePath, getMount( sourcePath ), destPath, getMount( destPath ) );
     }
 
-    private synchronized void copyRecursive( String sourcePath, MountWrapper sourceMount, String destinationPath, MountWrapper destinationMount ) throws FileSystemException
+    private static void checkMounted( MountWrapper... mounts ) throws FileSystemException
     {
-        if( !sourceMount.exists( sourcePath ) )
+        for( MountWrapper mount : mounts )
         {
-            return;
+            if( mount.isRemoved() ) throw new FileSystemException( "/" + mount.getLocation() + ": Mount was removed" );
         }
+    }
 
-        if( sourceMount.isDirectory( sourcePath ) )
+    private static void copyFile( String sourcePath, MountWrapper sourceMount, String destinationPath, MountWrapper destinationMount ) throws FileSystemException
+    {
+        try( ReadableByteChannel source = sourceMount.openForRead( sourcePath );
+             WritableByteChannel destination = destinationMount.openForWrite( destinationPath ) )
         {
-            // Copy a directory:
-            // Make the new directory
-            destinationMount.makeDirectory( destinationPath );
-
-            // Copy the source contents into it
-            List<String> sourceChildren = new ArrayList<>();
-            sourceMount.list( sourcePath, sourceChildren );
-            for( String child : sourceChildren )
+            if( source instanceof FileChannel && destination instanceof FileMount.WritableCountingChannel )
             {
-                copyRecursive(
-                    combine( sourcePath, child ), sourceMount,
-                    combine( destinationPath, child ), destinationMount
-                );
+                // Both files are on disk, so let the OS copy between them directly.
+                ((FileMount.WritableCountingChannel) destination).transferFrom( (FileChannel) source );
             }
-        }
-        else
-        {
-            // Copy a file:
-            try( ReadableByteChannel source = sourceMount.openForRead( sourcePath );
-                 WritableByteChannel destination = destinationMount.openForWrite( destinationPath ) )
+            else
             {
                 // Copy bytes as fast as we can
                 ByteStreams.copy( source, destination );
             }
-            catch( AccessDeniedException e )
-            {
-                throw new FileSystemException( "Access denied" );
-            }
-            catch( IOException e )
-            {
-                throw new FileSystemException( e.getMessage() );
-            }
+        }
+        catch( AccessDeniedException e )
+        {
+            throw new FileSystemException( "Access denied" );
+        }
+        catch( IOException e )
+        {
+            throw new FileSystemException( e.getMessage() );
         }
     }
 
@@ -661,7 +1061,7 @@ public class FileSystem
         }
     }
 
-    private synchronized <T extends Closeable> FileSystemWrapper<T> openFile( @Nonnull T file ) throws FileSystemException
+    private <T extends Closeable> FileSystemWrapper<T> openFile( @Nonnull T file ) throws FileSystemException
     {
         synchronized( m_openFiles )
         {
@@ -678,7 +1078,7 @@ public class FileSystem
         }
     }
 
-    synchronized void removeFile( FileSystemWrapper<?> handle )
+    void removeFile( FileSystemWrapper<?> handle )
     {
         synchronized( m_openFiles )
         {
@@ -686,60 +1086,96 @@ public class FileSystem
         }
     }
 
-    public synchronized <T extends Closeable> FileSystemWrapper<T> openForRead( String path, Function<ReadableByteChannel, T> open ) throws FileSystemException
+    public <T extends Closeable> FileSystemWrapper<T> openForRead( String path, Function<ReadableByteChannel, T> open ) throws FileSystemException
     {
-        cleanup();
+        m_lock.readLock().lock();
+        try
+        {
+            cleanup();
 
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        ReadableByteChannel channel = mount.openForRead( path );
-        if( channel != null )
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            ReadableByteChannel channel = mount.openForRead( path );
+            if( channel != null )
+            {
+                return openFile( open.apply( channel ) );
+            }
+            return null;
+        }
+        finally
         {
-            return openFile( open.apply( channel ) );
+            m_lock.readLock().unlock();
         }
-        return null;
     }
 
-    public synchronized <T extends Closeable> FileSystemWrapper<T> openForWrite( String path, boolean append, Function<WritableByteChannel, T> open ) throws FileSystemException
+    public <T extends Closeable> FileSystemWrapper<T> openForWrite( String path, boolean append, Function<WritableByteChannel, T> open ) throws FileSystemException
     {
-        cleanup();
+        m_lock.readLock().lock();
+        try
+        {
+            cleanup();
 
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        WritableByteChannel channel = append ? mount.openForAppend( path ) : mount.openForWrite( path );
-        if( channel != null )
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            WritableByteChannel channel = append ? mount.openForAppend( path ) : mount.openForWrite( path );
+            if( channel instanceof FileMount.WritableCountingChannel && m_tracker != null )
+            {
+                ObjLongConsumer<TrackingField> tracker = m_tracker;
+                ((FileMount.WritableCountingChannel) channel).setWriteListener( bytes -> {
+                    tracker.accept( TrackingField.FS_WRITES, 1 );
+                    tracker.accept( TrackingField.FS_BYTES_WRITTEN, bytes );
+                } );
+            }
+            if( channel != null )
+            {
+                return openFile( open.apply( channel ) );
+            }
+            return null;
+        }
+        finally
         {
-            return openFile( open.apply( channel ) );
+            m_lock.readLock().unlock();
         }
-        return null;
     }
 
     public long getFreeSpace( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        return mount.getFreeSpace();
+        m_lock.readLock().lock();
+        try
+        {
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            return mount.getFreeSpace();
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
     private MountWrapper getMount( String path ) throws FileSystemException
     {
-        // Return the deepest mount that contains a given path
-        Iterator<MountWrapper> it = m_mounts.values().iterator();
+        // Return the deepest mount that contains a given path. Paths above the root are not contained by any mount.
         MountWrapper match = null;
-        int matchLength = 999;
-        while( it.hasNext() )
+        if( !path.equals( ".." ) && !path.startsWith( "../" ) )
         {
-            MountWrapper mount = it.next();
-            if( contains( mount.getLocation(), path ) )
+            MountNode node = m_mounts;
+            match = node.mount;
+
+            int start = 0;
+            while( start < path.length() )
             {
-                int len = toLocal( path, mount.getLocation() ).length();
-                if( match == null || len < matchLength )
-                {
-                    match = mount;
-                    matchLength = len;
-                }
+                int end = path.indexOf( '/', start );
+                if( end < 0 ) end = path.length();
+
+                node = node.getChild( path, start, end );
+                if( node == null ) break;
+                if( node.mount != null ) match = node.mount;
+
+                start = end + 1;
             }
         }
+
         if( match == null )
         {
             throw new FileSystemException( "/" + path + ": Invalid Path" );
@@ -747,6 +1183,27 @@ public class FileSystem
         return match;
     }
 
+    /**
+     * Find the node for exactly this location, whether or not anything is mounted there.
+     *
+     * @param path The sanitised path to find.
+     * @return The node at this location, or {@code null} if there are no mounts at or below it.
+     */
+    private MountNode getMountNode( String path )
+    {
+        MountNode node = m_mounts;
+        int start = 0;
+        while( node != null && start < path.length() )
+        {
+            int end = path.indexOf( '/', start );
+            if( end < 0 ) end = path.length();
+
+            node = node.getChild( path, start, end );
+            start = end + 1;
+        }
+        return node;
+    }
+
     public IFileSystem getMountWrapper()
     {
         return m_wrapper;
@@ -18,6 +18,12 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
 import java.util.stream.Stream;
 
+/**
+ * A read-only mount of a directory within a {@link FileSystem}, such as a mod jar or zipped resource pack.
+ *
+ * The file system is assumed not to change once mounted: the directory tree is read once, and file contents are
+ * cached in the shared {@link ResourceCache}.
+ */
 public class FileSystemMount implements IMount
 {
     private final Entry rootEntry;
@@ -90,7 +96,7 @@ public class FileSystemMount implements IMount
         Entry file = getFile( path );
         if( file == null || file.directory ) throw new IOException( "/" + path + ": No such file" );
 
-        return Files.newInputStream( file.path, StandardOpenOption.READ );
+        return ResourceCache.openForRead( file.path );
     }
 
     @Nonnull
@@ -100,7 +106,7 @@ public class FileSystemMount implements IMount
         Entry file = getFile( path );
         if( file == null || file.directory ) throw new IOException( "/" + path + ": No such file" );
 
-        return Files.newByteChannel( file.path, StandardOpenOption.READ );
+        return ResourceCache.openChannelForRead( file.path );
     }
 
     private Entry getFile( String path )
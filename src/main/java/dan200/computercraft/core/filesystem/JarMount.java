@@ -9,6 +9,7 @@ package dan200.computercraft.core.filesystem;
 import dan200.computercraft.api.filesystem.IMount;
 
 import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -234,7 +235,8 @@ public class JarMount implements IMount
                 ZipEntry entry = m_zipFile.getEntry( fullPath );
                 if( entry != null )
                 {
-                    return m_zipFile.getInputStream( entry );
+                    byte[] contents = ResourceCache.getContents( file, file.getSize(), () -> m_zipFile.getInputStream( entry ) );
+                    return contents != null ? new ByteArrayInputStream( contents ) : m_zipFile.getInputStream( entry );
                 }
             }
             catch( Exception e )
@@ -0,0 +1,143 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.filesystem;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
+import dan200.computercraft.core.apis.handles.ArrayByteChannel;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of the decompressed contents of files within jars and zips, shared between every computer.
+ *
+ * Every computer reads much of the ROM when booting, and each read would otherwise inflate the file again. As
+ * archives do not change while the game is running, we read each file once and serve every later read from memory.
+ * The cached arrays are never modified, so handles read from them directly rather than from a copy.
+ */
+public final class ResourceCache
+{
+    /**
+     * The maximum total size of file contents to keep in memory, in bytes. The ROM is well under this.
+     */
+    public static final long MAX_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Files larger than this are always read from the archive.
+     */
+    private static final long MAX_FILE_SIZE = 1024 * 1024;
+
+    private static final AtomicLong s_residentBytes = new AtomicLong();
+
+    private static final Cache<Object, byte[]> s_contents = CacheBuilder.newBuilder()
+        .maximumWeight( MAX_SIZE )
+        .weigher( ( Object key, byte[] value ) -> value.length )
+        .removalListener( notification -> s_residentBytes.addAndGet( -notification.getValue().length ) )
+        .recordStats()
+        .build();
+
+    private ResourceCache()
+    {
+    }
+
+    /**
+     * Get the contents of a file, reading it if it is not already cached.
+     *
+     * @param key    A key uniquely identifying this file. This should implement {@link Object#equals(Object)} if the
+     *               file can be reached through more than one mount.
+     * @param size   The expected size of this file.
+     * @param reader Opens this file for reading.
+     * @return The file's contents, or {@code null} if it is too large to cache. The returned array must not be
+     * modified.
+     * @throws IOException If the file could not be read.
+     */
+    @Nullable
+    static byte[] getContents( @Nonnull Object key, long size, @Nonnull IOSupplier<InputStream> reader ) throws IOException
+    {
+        if( size > MAX_FILE_SIZE ) return null;
+
+        try
+        {
+            return s_contents.get( key, () -> {
+                byte[] contents;
+                try( InputStream stream = reader.get() )
+                {
+                    contents = ByteStreams.toByteArray( stream );
+                }
+                s_residentBytes.addAndGet( contents.length );
+                return contents;
+            } );
+        }
+        catch( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+            if( cause instanceof IOException ) throw (IOException) cause;
+            throw new IOException( cause.getMessage(), cause );
+        }
+    }
+
+    /**
+     * Open a file within an archive for reading.
+     *
+     * @param path The path to the file to open.
+     * @return A stream reading the file's contents.
+     * @throws IOException If the file could not be read.
+     */
+    @Nonnull
+    public static InputStream openForRead( @Nonnull Path path ) throws IOException
+    {
+        byte[] contents = getContents( path, Files.size( path ), () -> Files.newInputStream( path, StandardOpenOption.READ ) );
+        return contents != null ? new ByteArrayInputStream( contents ) : Files.newInputStream( path, StandardOpenOption.READ );
+    }
+
+    /**
+     * Open a file within an archive for reading.
+     *
+     * @param path The path to the file to open.
+     * @return A channel reading the file's contents.
+     * @throws IOException If the file could not be read.
+     */
+    @Nonnull
+    public static ReadableByteChannel openChannelForRead( @Nonnull Path path ) throws IOException
+    {
+        byte[] contents = getContents( path, Files.size( path ), () -> Files.newInputStream( path, StandardOpenOption.READ ) );
+        return contents != null ? new ArrayByteChannel( contents ) : Files.newByteChannel( path, StandardOpenOption.READ );
+    }
+
+    /**
+     * @return The proportion of reads which were served from the cache, between 0 and 1.
+     */
+    public static double getHitRate()
+    {
+        return s_contents.stats().hitRate();
+    }
+
+    /**
+     * @return The total size of all cached files, in bytes.
+     */
+    public static long getResidentBytes()
+    {
+        return s_residentBytes.get();
+    }
+
+    @FunctionalInterface
+    interface IOSupplier<T>
+    {
+        T get() throws IOException;
+    }
+}
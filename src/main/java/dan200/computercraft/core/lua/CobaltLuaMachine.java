@@ -6,9 +6,11 @@
 
 package dan200.computercraft.core.lua;
 
+import com.google.common.io.ByteStreams;
 import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.lua.*;
 import dan200.computercraft.core.computer.Computer;
+import dan200.computercraft.core.computer.ComputerTimeslice;
 import dan200.computercraft.core.computer.ITask;
 import dan200.computercraft.core.computer.MainThread;
 import dan200.computercraft.core.tracking.Tracking;
@@ -16,7 +18,6 @@ import dan200.computercraft.core.tracking.TrackingField;
 import dan200.computercraft.shared.util.ThreadUtils;
 import org.squiddev.cobalt.*;
 import org.squiddev.cobalt.compiler.CompileException;
-import org.squiddev.cobalt.compiler.LoadState;
 import org.squiddev.cobalt.debug.DebugFrame;
 import org.squiddev.cobalt.debug.DebugHandler;
 import org.squiddev.cobalt.debug.DebugState;
@@ -34,9 +35,11 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.squiddev.cobalt.Constants.NONE;
 import static org.squiddev.cobalt.ValueFactory.valueOf;
@@ -44,16 +47,60 @@ import static org.squiddev.cobalt.ValueFactory.varargsOf;
 
 public class CobaltLuaMachine implements ILuaMachine
 {
+    /**
+     * Each Lua coroutine runs on its own thread. The number of live coroutines is capped by
+     * {@link ComputerCraft#coroutine_limit}, and the pool itself never grows beyond that many threads either.
+     */
     private static final ThreadPoolExecutor coroutines = new ThreadPoolExecutor(
-        0, Integer.MAX_VALUE,
+        0, ComputerCraft.coroutine_limit,
         60L, TimeUnit.SECONDS,
         new SynchronousQueue<>(),
         ThreadUtils.factory( "Coroutine" )
     );
 
+    /**
+     * The number of {@link ComputerCraft#coroutine_limit}'s slots each computer reserves when it starts. This ensures a
+     * handful of computers with many coroutines cannot stop others from starting at all (the main routine is itself a
+     * coroutine), or from using the odd coroutine of their own.
+     */
+    static final int RESERVED_COROUTINES = 8;
+
+    private static final AtomicInteger s_liveCoroutines = new AtomicInteger();
+
+    /**
+     * Slots of {@link ComputerCraft#coroutine_limit} in use: each machine's reserved coroutines, plus every coroutine
+     * beyond them.
+     */
+    private static final AtomicInteger s_usedCoroutineSlots = new AtomicInteger();
+
+    private static final LuaString BIOS_NAME = valueOf( "@bios.lua" );
+
+    /**
+     * Boxed copies of small integers, as these are by far the most common numbers passed to Java (table keys, slot
+     * numbers, colours, etc...).
+     */
+    private static final int CACHED_MIN = -128;
+    private static final int CACHED_MAX = 1024;
+    private static final Double[] CACHED_NUMBERS = new Double[CACHED_MAX - CACHED_MIN + 1];
+
+    /**
+     * -0.0 compares equal to 0, so is checked for separately rather than being replaced with the cached 0.0.
+     */
+    private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits( -0.0 );
+
+    static
+    {
+        for( int i = 0; i < CACHED_NUMBERS.length; i++ ) CACHED_NUMBERS[i] = (double) (i + CACHED_MIN);
+    }
+
     private final Computer m_computer;
+    private final ComputerTimeslice m_timeslice;
+    private final StringCache m_strings = new StringCache();
+    private final AtomicInteger m_liveCoroutines = new AtomicInteger();
+    private int m_reservedCoroutines;
 
     private LuaState m_state;
+    private final ILuaContext m_context;
     private LuaTable m_globals;
     private LuaThread m_mainRoutine;
 
@@ -64,6 +111,7 @@ public class CobaltLuaMachine implements ILuaMachine
     public CobaltLuaMachine( Computer computer )
     {
         m_computer = computer;
+        m_timeslice = computer.getTimeslice();
 
         // Create an environment to run in
         LuaState state = this.m_state = LuaState.builder()
@@ -93,6 +141,9 @@ public class CobaltLuaMachine implements ILuaMachine
                 @Override
                 public void poll() throws LuaError
                 {
+                    // Give up our timeslice if other computers are waiting. This blocks until we're rescheduled.
+                    m_timeslice.pauseIfRequested();
+
                     if( m_hardAbortMessage != null ) LuaThread.yield( m_state, NONE );
                     handleSoftAbort();
                 }
@@ -117,20 +168,9 @@ public class CobaltLuaMachine implements ILuaMachine
                     throw new LuaError( message );
                 }
             } )
-            .coroutineFactory( command -> {
-                Tracking.addValue( m_computer, TrackingField.COROUTINES_CREATED, 1 );
-                coroutines.execute( () -> {
-                    try
-                    {
-                        command.run();
-                    }
-                    finally
-                    {
-                        Tracking.addValue( m_computer, TrackingField.COROUTINES_DISPOSED, 1 );
-                    }
-                } );
-            } )
+            .coroutineFactory( this::startCoroutine )
             .build();
+        m_context = new CobaltLuaContext( state );
 
         m_globals = new LuaTable();
         state.setupThread( m_globals );
@@ -168,6 +208,8 @@ public class CobaltLuaMachine implements ILuaMachine
 
         m_softAbortMessage = null;
         m_hardAbortMessage = null;
+
+        m_reservedCoroutines = reserveCoroutines();
     }
 
     @Override
@@ -190,7 +232,7 @@ public class CobaltLuaMachine implements ILuaMachine
 
         try
         {
-            LuaFunction value = LoadState.load( m_state, bios, "@bios.lua", m_globals );
+            LuaFunction value = PrototypeCache.load( valueOf( ByteStreams.toByteArray( bios ) ), BIOS_NAME, m_globals );
             m_mainRoutine = new LuaThread( m_state, value, m_globals );
         }
         catch( CompileException e )
@@ -263,6 +305,11 @@ public class CobaltLuaMachine implements ILuaMachine
         m_hardAbortMessage = abortMessage;
     }
 
+    /**
+     * Snapshots are not supported. Cobalt runs each coroutine (including the main one) on a separate Java thread, and
+     * a suspended coroutine's Lua frames live on that thread's stack. There is no way to capture them, and restoring
+     * the globals alone would leave the computer in a state no program expects.
+     */
     @Override
     public boolean saveState( OutputStream output )
     {
@@ -281,11 +328,114 @@ public class CobaltLuaMachine implements ILuaMachine
         return m_mainRoutine == null;
     }
 
+    @Override
+    public int getLiveCoroutines()
+    {
+        return m_liveCoroutines.get();
+    }
+
+    /**
+     * Get the number of coroutines which are alive across every computer.
+     *
+     * @return The number of live coroutines.
+     */
+    public static int getGlobalLiveCoroutines()
+    {
+        return s_liveCoroutines.get();
+    }
+
+    private void startCoroutine( Runnable command )
+    {
+        // Reserve a slot for this coroutine, both on this computer and (once it has used up its reserved coroutines)
+        // on the server. Rejecting the coroutine here errors within the Lua code which tried to start it.
+        int live = tryAcquire( m_liveCoroutines, ComputerCraft.computer_coroutine_limit );
+        if( live < 0 ) throw new RejectedExecutionException( "Too many coroutines" );
+
+        boolean shared = live >= m_reservedCoroutines;
+        if( shared && tryAcquire( s_usedCoroutineSlots, ComputerCraft.coroutine_limit ) < 0 )
+        {
+            m_liveCoroutines.decrementAndGet();
+            throw new RejectedExecutionException( "Too many coroutines on the server" );
+        }
+
+        s_liveCoroutines.incrementAndGet();
+        Tracking.addValue( m_computer, TrackingField.COROUTINES_CREATED, 1 );
+        try
+        {
+            // The coroutine runs this computer's Lua code, and so may be paused when its timeslice expires.
+            Runnable bound = m_timeslice.bind( command );
+            int limit = ComputerCraft.coroutine_limit;
+            if( coroutines.getMaximumPoolSize() != limit ) coroutines.setMaximumPoolSize( limit );
+            coroutines.execute( () -> {
+                try
+                {
+                    bound.run();
+                }
+                finally
+                {
+                    releaseCoroutine( shared );
+                }
+            } );
+        }
+        catch( RejectedExecutionException e )
+        {
+            // Every thread in the pool is busy. This may briefly happen when at the limit, as a finished coroutine
+            // releases its slot just before its thread becomes idle again.
+            releaseCoroutine( shared );
+            throw new RejectedExecutionException( "Too many coroutines on the server" );
+        }
+    }
+
+    private void releaseCoroutine( boolean shared )
+    {
+        m_liveCoroutines.decrementAndGet();
+        s_liveCoroutines.decrementAndGet();
+        if( shared ) s_usedCoroutineSlots.decrementAndGet();
+        Tracking.addValue( m_computer, TrackingField.COROUTINES_DISPOSED, 1 );
+    }
+
+    /**
+     * Take up to {@link #RESERVED_COROUTINES} of the server's coroutine slots for this machine, so it can always run
+     * a few coroutines however busy other computers are.
+     *
+     * @return The number of slots reserved. This may be fewer than {@link #RESERVED_COROUTINES} (or even none) if the
+     * server is at its limit already.
+     */
+    private static int reserveCoroutines()
+    {
+        while( true )
+        {
+            int used = s_usedCoroutineSlots.get();
+            int reserved = Math.max( 0, Math.min( RESERVED_COROUTINES, ComputerCraft.coroutine_limit - used ) );
+            if( s_usedCoroutineSlots.compareAndSet( used, used + reserved ) ) return reserved;
+        }
+    }
+
+    /**
+     * Increment a counter, so long as it is below a limit.
+     *
+     * @param counter The counter to increment.
+     * @param limit   The value the counter may not reach.
+     * @return The counter's value before incrementing it, or {@code -1} if it was already at the limit.
+     */
+    private static int tryAcquire( AtomicInteger counter, int limit )
+    {
+        while( true )
+        {
+            int current = counter.get();
+            if( current >= limit ) return -1;
+            if( counter.compareAndSet( current, current + 1 ) ) return current;
+        }
+    }
+
     @Override
     public void unload()
     {
         if( m_state == null ) return;
 
+        s_usedCoroutineSlots.addAndGet( -m_reservedCoroutines );
+        m_reservedCoroutines = 0;
+
         m_state.abandon();
         m_mainRoutine = null;
         m_state = null;
@@ -294,194 +444,219 @@ public class CobaltLuaMachine implements ILuaMachine
 
     private LuaTable wrapLuaObject( ILuaObject object )
     {
-        LuaTable table = new LuaTable();
-        String[] methods = object.getMethodNames();
-        for( int i = 0; i < methods.length; i++ )
+        LuaMethodTable methods = LuaMethodTable.of( object );
+        LuaTable table = new LuaTable( 0, methods.size() );
+        for( int i = 0; i < methods.size(); i++ )
+        {
+            LuaString name = methods.getName( i );
+            if( name != null ) table.rawset( name, new BoundMethod( object, methods, i ) );
+        }
+        return table;
+    }
+
+    /**
+     * A single method of an {@link ILuaObject}. The method names are shared through {@link LuaMethodTable}, and the
+     * {@link ILuaContext} is shared by the whole machine, so this only needs to hold the receiver.
+     */
+    private class BoundMethod extends VarArgFunction
+    {
+        private final ILuaObject m_object;
+        private final LuaMethodTable m_methods;
+        private final int m_method;
+
+        BoundMethod( ILuaObject object, LuaMethodTable methods, int method )
+        {
+            m_object = object;
+            m_methods = methods;
+            m_method = method;
+        }
+
+        @Override
+        public Varargs invoke( LuaState state, Varargs args ) throws LuaError
+        {
+            Object[] arguments = toObjects( args, 1 );
+            Object[] results;
+            try
+            {
+                results = m_object.callMethod( m_context, m_method, arguments );
+            }
+            catch( InterruptedException e )
+            {
+                throw new OrphanedThread();
+            }
+            catch( LuaException e )
+            {
+                throw new LuaError( e.getMessage(), e.getLevel() );
+            }
+            catch( Throwable t )
+            {
+                if( ComputerCraft.logPeripheralErrors )
+                {
+                    ComputerCraft.log.error( "Error calling " + m_methods.getMethodName( m_method ) + " on " + m_object, t );
+                }
+                throw new LuaError( "Java Exception Thrown: " + t.toString(), 0 );
+            }
+            return toValues( results );
+        }
+    }
+
+    private class CobaltLuaContext implements ILuaContext
+    {
+        private final LuaState m_luaState;
+
+        CobaltLuaContext( LuaState state )
+        {
+            m_luaState = state;
+        }
+
+        @Nonnull
+        @Override
+        public Object[] pullEvent( String filter ) throws LuaException, InterruptedException
+        {
+            Object[] results = pullEventRaw( filter );
+            if( results.length >= 1 && results[0].equals( "terminate" ) )
+            {
+                throw new LuaException( "Terminated", 0 );
+            }
+            return results;
+        }
+
+        @Nonnull
+        @Override
+        public Object[] pullEventRaw( String filter ) throws InterruptedException
+        {
+            return yield( new Object[] { filter } );
+        }
+
+        @Nonnull
+        @Override
+        public Object[] yield( Object[] yieldArgs ) throws InterruptedException
+        {
+            try
+            {
+                Varargs results = LuaThread.yield( m_luaState, toValues( yieldArgs ) );
+                return toObjects( results, 1 );
+            }
+            catch( OrphanedThread e )
+            {
+                throw new InterruptedException();
+            }
+            catch( Throwable e )
+            {
+                throw new RuntimeException( e );
+            }
+        }
+
+        @Override
+        public long issueMainThreadTask( @Nonnull final ILuaTask task ) throws LuaException
         {
-            if( methods[i] != null )
+            // Issue command
+            final long taskID = MainThread.getUniqueTaskID();
+            final ITask iTask = new ITask()
             {
-                final int method = i;
-                final ILuaObject apiObject = object;
-                final String methodName = methods[i];
-                table.rawset( methodName, new VarArgFunction()
+                @Override
+                public Computer getOwner()
+                {
+                    return m_computer;
+                }
+
+                @Override
+                public void execute()
                 {
-                    @Override
-                    public Varargs invoke( final LuaState state, Varargs _args ) throws LuaError
+                    try
                     {
-                        Object[] arguments = toObjects( _args, 1 );
-                        Object[] results;
-                        try
+                        Object[] results = task.execute();
+                        if( results != null )
                         {
-                            results = apiObject.callMethod( new ILuaContext()
-                            {
-                                @Nonnull
-                                @Override
-                                public Object[] pullEvent( String filter ) throws LuaException, InterruptedException
-                                {
-                                    Object[] results = pullEventRaw( filter );
-                                    if( results.length >= 1 && results[0].equals( "terminate" ) )
-                                    {
-                                        throw new LuaException( "Terminated", 0 );
-                                    }
-                                    return results;
-                                }
-
-                                @Nonnull
-                                @Override
-                                public Object[] pullEventRaw( String filter ) throws InterruptedException
-                                {
-                                    return yield( new Object[] { filter } );
-                                }
-
-                                @Nonnull
-                                @Override
-                                public Object[] yield( Object[] yieldArgs ) throws InterruptedException
-                                {
-                                    try
-                                    {
-                                        Varargs results = LuaThread.yield( state, toValues( yieldArgs ) );
-                                        return toObjects( results, 1 );
-                                    }
-                                    catch( OrphanedThread e )
-                                    {
-                                        throw new InterruptedException();
-                                    }
-                                    catch( Throwable e )
-                                    {
-                                        throw new RuntimeException( e );
-                                    }
-                                }
-
-                                @Override
-                                public long issueMainThreadTask( @Nonnull final ILuaTask task ) throws LuaException
-                                {
-                                    // Issue command
-                                    final long taskID = MainThread.getUniqueTaskID();
-                                    final ITask iTask = new ITask()
-                                    {
-                                        @Override
-                                        public Computer getOwner()
-                                        {
-                                            return m_computer;
-                                        }
-
-                                        @Override
-                                        public void execute()
-                                        {
-                                            try
-                                            {
-                                                Object[] results = task.execute();
-                                                if( results != null )
-                                                {
-                                                    Object[] eventArguments = new Object[results.length + 2];
-                                                    eventArguments[0] = taskID;
-                                                    eventArguments[1] = true;
-                                                    System.arraycopy( results, 0, eventArguments, 2, results.length );
-                                                    m_computer.queueEvent( "task_complete", eventArguments );
-                                                }
-                                                else
-                                                {
-                                                    m_computer.queueEvent( "task_complete", new Object[] { taskID, true } );
-                                                }
-                                            }
-                                            catch( LuaException e )
-                                            {
-                                                m_computer.queueEvent( "task_complete", new Object[] {
-                                                    taskID, false, e.getMessage()
-                                                } );
-                                            }
-                                            catch( Throwable t )
-                                            {
-                                                if( ComputerCraft.logPeripheralErrors )
-                                                {
-                                                    ComputerCraft.log.error( "Error running task", t );
-                                                }
-                                                m_computer.queueEvent( "task_complete", new Object[] {
-                                                    taskID, false, "Java Exception Thrown: " + t.toString()
-                                                } );
-                                            }
-                                        }
-                                    };
-                                    if( MainThread.queueTask( iTask ) )
-                                    {
-                                        return taskID;
-                                    }
-                                    else
-                                    {
-                                        throw new LuaException( "Task limit exceeded" );
-                                    }
-                                }
-
-                                @Override
-                                public Object[] executeMainThreadTask( @Nonnull final ILuaTask task ) throws LuaException, InterruptedException
-                                {
-                                    // Issue task
-                                    final long taskID = issueMainThreadTask( task );
-
-                                    // Wait for response
-                                    while( true )
-                                    {
-                                        Object[] response = pullEvent( "task_complete" );
-                                        if( response.length >= 3 && response[1] instanceof Number && response[2] instanceof Boolean )
-                                        {
-                                            if( ((Number) response[1]).intValue() == taskID )
-                                            {
-                                                Object[] returnValues = new Object[response.length - 3];
-                                                if( (Boolean) response[2] )
-                                                {
-                                                    // Extract the return values from the event and return them
-                                                    System.arraycopy( response, 3, returnValues, 0, returnValues.length );
-                                                    return returnValues;
-                                                }
-                                                else
-                                                {
-                                                    // Extract the error message from the event and raise it
-                                                    if( response.length >= 4 && response[3] instanceof String )
-                                                    {
-                                                        throw new LuaException( (String) response[3] );
-                                                    }
-                                                    else
-                                                    {
-                                                        throw new LuaException();
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-
-                                }
-                            }, method, arguments );
+                            Object[] eventArguments = new Object[results.length + 2];
+                            eventArguments[0] = taskID;
+                            eventArguments[1] = true;
+                            System.arraycopy( results, 0, eventArguments, 2, results.length );
+                            m_computer.queueEvent( "task_complete", eventArguments );
                         }
-                        catch( InterruptedException e )
+                        else
                         {
-                            throw new OrphanedThread();
+                            m_computer.queueEvent( "task_complete", new Object[] { taskID, true } );
                         }
-                        catch( LuaException e )
+                    }
+                    catch( LuaException e )
+                    {
+                        m_computer.queueEvent( "task_complete", new Object[] {
+                            taskID, false, e.getMessage()
+                        } );
+                    }
+                    catch( Throwable t )
+                    {
+                        if( ComputerCraft.logPeripheralErrors )
                         {
-                            throw new LuaError( e.getMessage(), e.getLevel() );
+                            ComputerCraft.log.error( "Error running task", t );
                         }
-                        catch( Throwable t )
+                        m_computer.queueEvent( "task_complete", new Object[] {
+                            taskID, false, "Java Exception Thrown: " + t.toString()
+                        } );
+                    }
+                }
+            };
+            if( MainThread.queueTask( iTask ) )
+            {
+                return taskID;
+            }
+            else
+            {
+                throw new LuaException( "Task limit exceeded" );
+            }
+        }
+
+        @Override
+        public Object[] executeMainThreadTask( @Nonnull final ILuaTask task ) throws LuaException, InterruptedException
+        {
+            // Issue task
+            final long taskID = issueMainThreadTask( task );
+
+            // Wait for response
+            while( true )
+            {
+                Object[] response = pullEvent( "task_complete" );
+                if( response.length >= 3 && response[1] instanceof Number && response[2] instanceof Boolean )
+                {
+                    if( ((Number) response[1]).intValue() == taskID )
+                    {
+                        Object[] returnValues = new Object[response.length - 3];
+                        if( (Boolean) response[2] )
+                        {
+                            // Extract the return values from the event and return them
+                            System.arraycopy( response, 3, returnValues, 0, returnValues.length );
+                            return returnValues;
+                        }
+                        else
                         {
-                            if( ComputerCraft.logPeripheralErrors )
+                            // Extract the error message from the event and raise it
+                            if( response.length >= 4 && response[3] instanceof String )
                             {
-                                ComputerCraft.log.error( "Error calling " + methodName + " on " + apiObject, t );
+                                throw new LuaException( (String) response[3] );
+                            }
+                            else
+                            {
+                                throw new LuaException();
                             }
-                            throw new LuaError( "Java Exception Thrown: " + t.toString(), 0 );
                         }
-                        return toValues( results );
                     }
-                } );
+                }
             }
+
         }
-        return table;
     }
 
-    private LuaValue toValue( Object object, Map<Object, LuaValue> values )
+    LuaValue toValue( Object object, Map<Object, LuaValue> values )
     {
         if( object == null )
         {
             return Constants.NIL;
         }
+        else if( object instanceof Integer )
+        {
+            return valueOf( (int) (Integer) object );
+        }
         else if( object instanceof Number )
         {
             double d = ((Number) object).doubleValue();
@@ -493,8 +668,7 @@ public class CobaltLuaMachine implements ILuaMachine
         }
         else if( object instanceof String )
         {
-            String s = object.toString();
-            return valueOf( s );
+            return m_strings.toLua( (String) object );
         }
         else if( object instanceof byte[] )
         {
@@ -504,21 +678,27 @@ public class CobaltLuaMachine implements ILuaMachine
         else if( object instanceof Map )
         {
             // Table:
-            // Start remembering stuff
-            if( values == null )
+            // See if we've already converted this table
+            if( values != null )
             {
-                values = new IdentityHashMap<>();
+                LuaValue existing = values.get( object );
+                if( existing != null ) return existing;
             }
-            else if( values.containsKey( object ) )
-            {
-                return values.get( object );
-            }
-            LuaTable table = new LuaTable();
-            values.put( object, table );
+
+            Map<?, ?> map = (Map<?, ?>) object;
+            LuaTable table = new LuaTable( 0, map.size() );
+            if( values != null ) values.put( object, table );
 
             // Convert all keys
-            for( Map.Entry<?, ?> pair : ((Map<?, ?>) object).entrySet() )
+            for( Map.Entry<?, ?> pair : map.entrySet() )
             {
+                // Flat tables cannot contain cycles, so we only start remembering tables once we find a nested one.
+                if( values == null && (pair.getKey() instanceof Map || pair.getValue() instanceof Map) )
+                {
+                    values = new IdentityHashMap<>();
+                    values.put( object, table );
+                }
+
                 LuaValue key = toValue( pair.getKey(), values );
                 LuaValue value = toValue( pair.getValue(), values );
                 if( !key.isNil() && !value.isNil() )
@@ -538,12 +718,17 @@ public class CobaltLuaMachine implements ILuaMachine
         }
     }
 
-    private Varargs toValues( Object[] objects )
+    Varargs toValues( Object[] objects )
     {
         if( objects == null || objects.length == 0 )
         {
             return Constants.NONE;
         }
+        else if( objects.length == 1 )
+        {
+            // A single value is already a Varargs, so there's no need to allocate an array.
+            return toValue( objects[0], null );
+        }
 
         LuaValue[] values = new LuaValue[objects.length];
         for( int i = 0; i < values.length; i++ )
@@ -554,7 +739,7 @@ public class CobaltLuaMachine implements ILuaMachine
         return varargsOf( values );
     }
 
-    private static Object toObject( LuaValue value, Map<LuaValue, Object> objects )
+    Object toObject( LuaValue value, Map<LuaValue, Object> objects )
     {
         switch( value.type() )
         {
@@ -566,7 +751,14 @@ public class CobaltLuaMachine implements ILuaMachine
             case Constants.TINT:
             case Constants.TNUMBER:
             {
-                return value.toDouble();
+                double number = value.toDouble();
+                int integer = (int) number;
+                if( integer == number && integer >= CACHED_MIN && integer <= CACHED_MAX
+                    && Double.doubleToRawLongBits( number ) != NEGATIVE_ZERO_BITS )
+                {
+                    return CACHED_NUMBERS[integer - CACHED_MIN];
+                }
+                return number;
             }
             case Constants.TBOOLEAN:
             {
@@ -574,22 +766,20 @@ public class CobaltLuaMachine implements ILuaMachine
             }
             case Constants.TSTRING:
             {
-                return value.toString();
+                return m_strings.toJava( (LuaString) value );
             }
             case Constants.TTABLE:
             {
                 // Table:
-                // Start remembering stuff
-                if( objects == null )
+                // See if we've already converted this table
+                if( objects != null )
                 {
-                    objects = new IdentityHashMap<>();
-                }
-                else if( objects.containsKey( value ) )
-                {
-                    return objects.get( value );
+                    Object existing = objects.get( value );
+                    if( existing != null ) return existing;
                 }
+
                 Map<Object, Object> table = new HashMap<>();
-                objects.put( value, table );
+                if( objects != null ) objects.put( value, table );
 
                 LuaTable luaTable = (LuaTable) value;
 
@@ -613,6 +803,14 @@ public class CobaltLuaMachine implements ILuaMachine
                     }
 
                     LuaValue v = keyValue.arg( 2 );
+
+                    // Flat tables cannot contain cycles, so we only start remembering tables once we find a nested one.
+                    if( objects == null && (k.type() == Constants.TTABLE || v.type() == Constants.TTABLE) )
+                    {
+                        objects = new IdentityHashMap<>();
+                        objects.put( value, table );
+                    }
+
                     Object keyObject = toObject( k, objects );
                     Object valueObject = toObject( v, objects );
                     if( keyObject != null && valueObject != null )
@@ -629,7 +827,7 @@ public class CobaltLuaMachine implements ILuaMachine
         }
     }
 
-    private static Object[] toObjects( Varargs values, int startIdx )
+    Object[] toObjects( Varargs values, int startIdx )
     {
         int count = values.count();
         Object[] objects = new Object[count - startIdx + 1];
@@ -670,7 +868,14 @@ public class CobaltLuaMachine implements ILuaMachine
                     {
                         chunkname = OperationHelper.concat( EQ_STR, chunkname );
                     }
-                    return BaseLib.loadStream( state, script.toInputStream(), chunkname );
+                    try
+                    {
+                        return PrototypeCache.load( script, chunkname, state.getCurrentThread().getfenv() );
+                    }
+                    catch( CompileException | IOException e )
+                    {
+                        return varargsOf( Constants.NIL, valueOf( e.getMessage() ) );
+                    }
                 }
             }
 
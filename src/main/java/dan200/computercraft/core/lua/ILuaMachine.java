@@ -23,11 +23,35 @@ public interface ILuaMachine
 
     void hardAbort( String abortMessage );
 
+    /**
+     * Write a snapshot of this machine's state, so that it may later be resumed with {@link #restoreState(InputStream)}
+     * rather than rebooting.
+     *
+     * @param output The stream to write the snapshot to.
+     * @return Whether a snapshot was written. Machines which cannot be snapshotted return {@code false}, and should
+     * not write anything.
+     */
     boolean saveState( OutputStream output );
 
+    /**
+     * Restore this machine's state from a snapshot written by {@link #saveState(OutputStream)}.
+     *
+     * @param input The stream to read the snapshot from.
+     * @return Whether the state was restored. If not, the computer should be booted as normal.
+     */
     boolean restoreState( InputStream input );
 
     boolean isFinished();
 
+    /**
+     * Get the number of coroutines which are currently alive within this machine.
+     *
+     * @return The number of live coroutines.
+     */
+    default int getLiveCoroutines()
+    {
+        return 0;
+    }
+
     void unload();
 }
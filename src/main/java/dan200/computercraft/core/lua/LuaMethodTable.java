@@ -0,0 +1,114 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.lua;
+
+import dan200.computercraft.api.lua.ILuaObject;
+import org.squiddev.cobalt.LuaString;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.squiddev.cobalt.ValueFactory.valueOf;
+
+/**
+ * The Lua-side method names for a class of {@link ILuaObject}, shared between every instance of that class and every
+ * computer.
+ *
+ * Most objects return the same method names every time, so we convert them to {@link LuaString}s once rather than
+ * whenever an object is passed to Lua. Some classes expose different methods depending on their state (for instance
+ * seekable and non-seekable handles), so we keep a handful of tables for each class.
+ *
+ * Tables are attached to each class with a {@link ClassValue}, rather than held in a map, so that we don't keep
+ * classes (and their class loaders) alive once nothing else uses them.
+ */
+final class LuaMethodTable
+{
+    private static final int MAX_VARIANTS = 8;
+
+    private static final ClassValue<AtomicReference<LuaMethodTable[]>> s_tables = new ClassValue<AtomicReference<LuaMethodTable[]>>()
+    {
+        @Override
+        protected AtomicReference<LuaMethodTable[]> computeValue( Class<?> type )
+        {
+            return new AtomicReference<>( new LuaMethodTable[0] );
+        }
+    };
+
+    private final String[] m_methodNames;
+    private final LuaString[] m_names;
+
+    private LuaMethodTable( String[] methodNames )
+    {
+        m_methodNames = methodNames;
+        m_names = new LuaString[methodNames.length];
+        for( int i = 0; i < methodNames.length; i++ )
+        {
+            if( methodNames[i] != null ) m_names[i] = valueOf( methodNames[i] );
+        }
+    }
+
+    /**
+     * Get the method table for an object.
+     *
+     * @param object The object to get the methods of.
+     * @return The method table. This should not be modified.
+     */
+    @Nonnull
+    static LuaMethodTable of( @Nonnull ILuaObject object )
+    {
+        String[] methodNames = object.getMethodNames();
+        AtomicReference<LuaMethodTable[]> tables = s_tables.get( object.getClass() );
+
+        for( LuaMethodTable variant : tables.get() )
+        {
+            if( Arrays.equals( variant.m_methodNames, methodNames ) ) return variant;
+        }
+
+        // Take a copy, just in case the object modifies the array later.
+        LuaMethodTable table = new LuaMethodTable( methodNames.clone() );
+        tables.updateAndGet( existing -> {
+            // Drop the oldest variant if this class has too many. This is only really hit by wrapper objects whose
+            // methods come from elsewhere.
+            LuaMethodTable[] result = Arrays.copyOfRange( existing, existing.length >= MAX_VARIANTS ? 1 : 0, existing.length + 1 );
+            result[result.length - 1] = table;
+            return result;
+        } );
+
+        return table;
+    }
+
+    /**
+     * @return The number of method slots in this table. Some slots may be empty.
+     */
+    int size()
+    {
+        return m_names.length;
+    }
+
+    /**
+     * Get the Lua name of a method.
+     *
+     * @param method The method's index.
+     * @return The method's name, or {@code null} if this slot has no method.
+     */
+    LuaString getName( int method )
+    {
+        return m_names[method];
+    }
+
+    /**
+     * Get the Java name of a method, used for error messages.
+     *
+     * @param method The method's index.
+     * @return The method's name.
+     */
+    String getMethodName( int method )
+    {
+        return m_methodNames[method];
+    }
+}
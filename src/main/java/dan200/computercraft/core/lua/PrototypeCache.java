@@ -0,0 +1,184 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.lua;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.squiddev.cobalt.LuaString;
+import org.squiddev.cobalt.LuaTable;
+import org.squiddev.cobalt.Prototype;
+import org.squiddev.cobalt.compiler.CompileException;
+import org.squiddev.cobalt.compiler.LuaC;
+import org.squiddev.cobalt.function.LuaFunction;
+import org.squiddev.cobalt.function.LuaInterpretedFunction;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of compiled Lua chunks, shared between every computer.
+ *
+ * Computers constantly recompile the same code: the bios on every boot, and the ROM's APIs and programs whenever
+ * they are loaded. As a {@link Prototype} is immutable, we compile each chunk once and create a new closure over it
+ * for every machine which loads it.
+ *
+ * Chunks are keyed on their name and their full contents, so it does not matter where the code came from: any two
+ * identical chunks share a prototype.
+ */
+public final class PrototypeCache
+{
+    /**
+     * The maximum total size of source code (and chunk names) whose prototypes we keep, in bytes. The ROM is well
+     * under this.
+     */
+    private static final long MAX_SOURCE_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Chunks larger than this are not cached, as they are unlikely to be shared. This includes the chunk's name, which
+     * for {@code loadstring} is the source itself.
+     */
+    private static final int MAX_CHUNK_SIZE = 256 * 1024;
+
+    private static final Cache<Key, Prototype> s_prototypes = CacheBuilder.newBuilder()
+        .maximumWeight( MAX_SOURCE_SIZE )
+        .weigher( ( Key key, Prototype value ) -> key.name.length + key.source.length )
+        .recordStats()
+        .build();
+
+    private static final AtomicLong s_compileTime = new AtomicLong();
+
+    private PrototypeCache()
+    {
+    }
+
+    /**
+     * Load a chunk of Lua code, reusing a previously compiled prototype if possible.
+     *
+     * @param source The source code to load.
+     * @param name   The chunk's name.
+     * @param env    The environment for the loaded function.
+     * @return The loaded function.
+     * @throws CompileException If the code could not be compiled.
+     * @throws IOException      If the code could not be read.
+     */
+    @Nonnull
+    static LuaFunction load( @Nonnull LuaString source, @Nonnull LuaString name, @Nonnull LuaTable env ) throws CompileException, IOException
+    {
+        // Large chunks are unlikely to be shared, and binary chunks don't need compiling, so neither are cached.
+        if( source.length + name.length > MAX_CHUNK_SIZE || (source.length > 0 && source.bytes[source.offset] == 27) )
+        {
+            return new LuaInterpretedFunction( compile( source, name ), env );
+        }
+
+        Key key = new Key( name, source );
+        Prototype prototype = s_prototypes.getIfPresent( key );
+        if( prototype == null )
+        {
+            // Two computers may compile the same chunk at once. This is harmless, and much simpler than blocking one
+            // until the other has finished.
+            prototype = compile( source, name );
+            s_prototypes.put( key.compact(), prototype );
+        }
+
+        return new LuaInterpretedFunction( prototype, env );
+    }
+
+    private static Prototype compile( LuaString source, LuaString name ) throws CompileException, IOException
+    {
+        long start = System.nanoTime();
+        try
+        {
+            return LuaC.compile( source.toInputStream(), name );
+        }
+        finally
+        {
+            s_compileTime.addAndGet( System.nanoTime() - start );
+        }
+    }
+
+    /**
+     * @return The number of chunks which were loaded from the cache.
+     */
+    public static long getHits()
+    {
+        return s_prototypes.stats().hitCount();
+    }
+
+    /**
+     * @return The number of chunks which had to be compiled.
+     */
+    public static long getMisses()
+    {
+        return s_prototypes.stats().missCount();
+    }
+
+    /**
+     * @return The total time spent compiling chunks, in nanoseconds.
+     */
+    public static long getCompileTime()
+    {
+        return s_compileTime.get();
+    }
+
+    private static final class Key
+    {
+        final LuaString name;
+        final LuaString source;
+        private final int hash;
+
+        Key( LuaString name, LuaString source )
+        {
+            this.name = name;
+            this.source = source;
+            this.hash = 31 * name.hashCode() + source.hashCode();
+        }
+
+        private Key( LuaString name, LuaString source, int hash )
+        {
+            this.name = name;
+            this.source = source;
+            this.hash = hash;
+        }
+
+        /**
+         * Get a copy of this key which does not share its strings' backing arrays. Lookups may use strings which are
+         * views into much larger arrays (such as a file's contents, or a whole string), which we should not keep alive
+         * once cached.
+         *
+         * @return A key owning just the bytes it needs.
+         */
+        Key compact()
+        {
+            return new Key( compact( name ), compact( source ), hash );
+        }
+
+        private static LuaString compact( LuaString value )
+        {
+            return value.offset == 0 && value.bytes.length == value.length
+                ? value
+                : LuaString.valueOf( Arrays.copyOfRange( value.bytes, value.offset, value.offset + value.length ) );
+        }
+
+        @Override
+        public boolean equals( Object o )
+        {
+            if( o == this ) return true;
+            if( !(o instanceof Key) ) return false;
+
+            Key other = (Key) o;
+            return hash == other.hash && name.equals( other.name ) && source.equals( other.source );
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.lua;
+
+import org.squiddev.cobalt.LuaString;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+import static org.squiddev.cobalt.ValueFactory.valueOf;
+
+/**
+ * A small direct-mapped cache of conversions between Java and Lua strings.
+ *
+ * Peripheral results tend to repeat the same short strings over and over (item names, keys of nested tables, side
+ * names), so we remember the most recent conversion for each slot rather than re-encoding each one. Long strings
+ * are never cached, and short Lua strings which are a view into a larger one are copied before being cached, so the
+ * cache never keeps more than {@link #MAX_LENGTH} bytes of each string alive.
+ *
+ * This is not thread safe, and is intended to be owned by a single {@link CobaltLuaMachine}.
+ */
+final class StringCache
+{
+    private static final int SIZE = 256;
+    private static final int MAX_LENGTH = 32;
+
+    private final String[] m_javaKeys = new String[SIZE];
+    private final LuaString[] m_luaValues = new LuaString[SIZE];
+
+    private final LuaString[] m_luaKeys = new LuaString[SIZE];
+    private final String[] m_javaValues = new String[SIZE];
+
+    @Nonnull
+    LuaString toLua( @Nonnull String value )
+    {
+        if( value.length() > MAX_LENGTH ) return valueOf( value );
+
+        int slot = slot( value.hashCode() );
+        String key = m_javaKeys[slot];
+        if( key != null && key.equals( value ) ) return m_luaValues[slot];
+
+        LuaString result = valueOf( value );
+        m_javaKeys[slot] = value;
+        m_luaValues[slot] = result;
+        return result;
+    }
+
+    @Nonnull
+    String toJava( @Nonnull LuaString value )
+    {
+        if( value.length > MAX_LENGTH ) return value.toString();
+
+        int slot = slot( value.hashCode() );
+        LuaString key = m_luaKeys[slot];
+        if( key != null && key.equals( value ) ) return m_javaValues[slot];
+
+        String result = value.toString();
+        m_luaKeys[slot] = value.bytes.length > MAX_LENGTH
+            ? valueOf( Arrays.copyOfRange( value.bytes, value.offset, value.offset + value.length ) )
+            : value;
+        m_javaValues[slot] = result;
+        return result;
+    }
+
+    private static int slot( int hash )
+    {
+        return (hash ^ (hash >>> 16)) & (SIZE - 1);
+    }
+}
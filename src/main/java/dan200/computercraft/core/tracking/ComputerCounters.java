@@ -0,0 +1,150 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.tracking;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The values recorded for a single computer by a single thread.
+ *
+ * Only the owning thread writes to these counters, so they are updated with an ordered write rather than a lock or
+ * compare-and-swap. Other threads only read them, when merging them into a {@link ComputerTracker} for a dump.
+ */
+final class ComputerCounters
+{
+    static final int TASKS = 0;
+    static final int TOTAL_TIME = 1;
+    static final int MAX_TIME = 2;
+    static final int SERVER_COUNT = 3;
+    static final int SERVER_TIME = 4;
+    private static final int FIELDS = 5;
+
+    final ComputerTracker tracker;
+
+    /**
+     * Each counter, followed by one for every {@link TrackingField} (indexed by {@link TrackingField#index()}). This
+     * is replaced by the owning thread if a field is created after these counters were.
+     */
+    private volatile AtomicLongArray values;
+
+    /**
+     * Histograms for {@link TrackingField#TASK_LATENCY}, {@link TrackingField#WAIT_LATENCY} and
+     * {@link TrackingField#SERVER_LATENCY}. These are only created once something is recorded, as most threads only
+     * record some of them.
+     */
+    private volatile AtomicLongArray taskLatency;
+    private volatile AtomicLongArray waitLatency;
+    private volatile AtomicLongArray serverLatency;
+
+    ComputerCounters( ComputerTracker tracker )
+    {
+        this.tracker = tracker;
+        this.values = new AtomicLongArray( FIELDS + TrackingField.count() );
+    }
+
+    void addTaskTiming( long time )
+    {
+        AtomicLongArray values = this.values;
+        values.lazySet( TASKS, values.get( TASKS ) + 1 );
+        values.lazySet( TOTAL_TIME, values.get( TOTAL_TIME ) + time );
+        if( time > values.get( MAX_TIME ) ) values.lazySet( MAX_TIME, time );
+
+        AtomicLongArray latency = taskLatency;
+        if( latency == null ) taskLatency = latency = new AtomicLongArray( LatencyHistogram.BUCKETS );
+        LatencyHistogram.record( latency, time );
+    }
+
+    void addTaskWait( long time )
+    {
+        AtomicLongArray latency = waitLatency;
+        if( latency == null ) waitLatency = latency = new AtomicLongArray( LatencyHistogram.BUCKETS );
+        LatencyHistogram.record( latency, time );
+    }
+
+    void addServerTiming( long time )
+    {
+        AtomicLongArray values = this.values;
+        values.lazySet( SERVER_COUNT, values.get( SERVER_COUNT ) + 1 );
+        values.lazySet( SERVER_TIME, values.get( SERVER_TIME ) + time );
+
+        AtomicLongArray latency = serverLatency;
+        if( latency == null ) serverLatency = latency = new AtomicLongArray( LatencyHistogram.BUCKETS );
+        LatencyHistogram.record( latency, time );
+    }
+
+    void addValue( TrackingField field, long change )
+    {
+        int index = FIELDS + field.index();
+        AtomicLongArray values = this.values;
+        if( index >= values.length() ) values = grow( index + 1 );
+        values.lazySet( index, values.get( index ) + change );
+    }
+
+    /**
+     * Add another set of counters to this one. This is used to fold in the counters of threads which have since died,
+     * and so should only be called on counters which are not owned by any thread.
+     *
+     * @param other The counters to add.
+     */
+    void add( ComputerCounters other )
+    {
+        AtomicLongArray otherValues = other.values;
+        AtomicLongArray values = this.values;
+        if( otherValues.length() > values.length() ) values = grow( otherValues.length() );
+        for( int i = 0; i < otherValues.length(); i++ )
+        {
+            long value = otherValues.get( i );
+            values.set( i, i == MAX_TIME ? Math.max( values.get( i ), value ) : values.get( i ) + value );
+        }
+
+        taskLatency = addLatency( taskLatency, other.taskLatency );
+        waitLatency = addLatency( waitLatency, other.waitLatency );
+        serverLatency = addLatency( serverLatency, other.serverLatency );
+    }
+
+    private static AtomicLongArray addLatency( AtomicLongArray latency, AtomicLongArray other )
+    {
+        if( other == null ) return latency;
+        if( latency == null ) latency = new AtomicLongArray( LatencyHistogram.BUCKETS );
+        for( int i = 0; i < LatencyHistogram.BUCKETS; i++ ) latency.set( i, latency.get( i ) + other.get( i ) );
+        return latency;
+    }
+
+    long get( int index )
+    {
+        return values.get( index );
+    }
+
+    long getValue( TrackingField field )
+    {
+        int index = FIELDS + field.index();
+        AtomicLongArray values = this.values;
+        return index < values.length() ? values.get( index ) : 0;
+    }
+
+    /**
+     * Get the recorded histogram for a latency field.
+     *
+     * @param field The field to get.
+     * @return The histogram's counts, or {@code null} if nothing has been recorded.
+     */
+    AtomicLongArray getLatency( TrackingField field )
+    {
+        if( field == TrackingField.TASK_LATENCY ) return taskLatency;
+        if( field == TrackingField.WAIT_LATENCY ) return waitLatency;
+        if( field == TrackingField.SERVER_LATENCY ) return serverLatency;
+        return null;
+    }
+
+    private AtomicLongArray grow( int size )
+    {
+        AtomicLongArray values = this.values;
+        AtomicLongArray grown = new AtomicLongArray( Math.max( size, FIELDS + TrackingField.count() ) );
+        for( int i = 0; i < values.length(); i++ ) grown.set( i, values.get( i ) );
+        return this.values = grown;
+    }
+}
@@ -9,11 +9,21 @@ package dan200.computercraft.core.tracking;
 import dan200.computercraft.core.computer.Computer;
 import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 public class ComputerTracker
 {
+    private static final List<TrackingField> LATENCY_FIELDS = Arrays.asList(
+        TrackingField.TASK_LATENCY, TrackingField.WAIT_LATENCY, TrackingField.SERVER_LATENCY
+    );
+
     private final WeakReference<Computer> computer;
     private final int computerId;
 
@@ -26,6 +36,12 @@ public class ComputerTracker
 
     private final Object2LongOpenHashMap<TrackingField> fields;
 
+    /**
+     * Histograms for each latency field. These are only present in trackers returned by
+     * {@link TrackingContext#getImmutableTimings()}.
+     */
+    private final Map<TrackingField, LatencyHistogram> latencies = new IdentityHashMap<>( 3 );
+
     public ComputerTracker( Computer computer )
     {
         this.computer = new WeakReference<>( computer );
@@ -79,27 +95,49 @@ public class ComputerTracker
         return totalTime / tasks;
     }
 
-    void addTaskTiming( long time )
+    /**
+     * Add the values recorded by one thread to this tracker.
+     *
+     * @param counters The values to add.
+     */
+    void merge( ComputerCounters counters )
     {
-        tasks++;
-        totalTime += time;
-        if( time > maxTime ) maxTime = time;
-    }
+        tasks += counters.get( ComputerCounters.TASKS );
+        totalTime += counters.get( ComputerCounters.TOTAL_TIME );
+        maxTime = Math.max( maxTime, counters.get( ComputerCounters.MAX_TIME ) );
 
-    void addMainTiming( long time )
-    {
-        serverCount++;
-        serverTime += time;
-    }
+        serverCount += counters.get( ComputerCounters.SERVER_COUNT );
+        serverTime += counters.get( ComputerCounters.SERVER_TIME );
+
+        for( TrackingField field : LATENCY_FIELDS )
+        {
+            AtomicLongArray latency = counters.getLatency( field );
+            if( latency != null ) latencies.computeIfAbsent( field, x -> new LatencyHistogram() ).add( latency );
+        }
 
-    void addValue( TrackingField field, long change )
-    {
         synchronized( fields )
         {
-            fields.addTo( field, change );
+            for( TrackingField field : TrackingField.fields().values() )
+            {
+                long value = counters.getValue( field );
+                if( value != 0 ) fields.addTo( field, value );
+            }
         }
     }
 
+    /**
+     * Get the histogram of a latency field, such as {@link TrackingField#TASK_LATENCY}.
+     *
+     * @param field The field to get.
+     * @return This field's histogram. This will be empty if nothing was recorded, or the field is not a latency.
+     */
+    @Nonnull
+    public LatencyHistogram getLatency( TrackingField field )
+    {
+        LatencyHistogram histogram = latencies.get( field );
+        return histogram != null ? histogram : new LatencyHistogram();
+    }
+
     public long get( TrackingField field )
     {
         if( field == TrackingField.TASKS ) return tasks;
@@ -110,6 +148,9 @@ public class ComputerTracker
         if( field == TrackingField.SERVER_COUNT ) return serverCount;
         if( field == TrackingField.SERVER_TIME ) return serverTime;
 
+        // Latencies are sorted by their 99th percentile.
+        if( LATENCY_FIELDS.contains( field ) ) return getLatency( field ).getValueAtPercentile( 99 );
+
         synchronized( fields )
         {
             return fields.getLong( field );
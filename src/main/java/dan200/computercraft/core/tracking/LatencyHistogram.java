@@ -0,0 +1,158 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.tracking;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size histogram of durations in nanoseconds, from which percentiles can be read.
+ *
+ * Like an HDR histogram, values are grouped into buckets whose width grows with their magnitude: every power of two is
+ * split into {@link #SUB_BUCKETS} linear buckets. This means any value is reported to within 12.5%, using the same
+ * ~2KiB whether it is a microsecond or a minute.
+ */
+public final class LatencyHistogram
+{
+    /**
+     * Values are first divided by this power of two, so the smallest distinguishable duration is about a microsecond.
+     */
+    private static final int UNIT_SHIFT = 10;
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The largest power of two (in units) we distinguish. Anything larger than this (~73 minutes) goes in the last
+     * bucket.
+     */
+    private static final int MAX_EXPONENT = 31;
+
+    /**
+     * Values below {@code 2 * SUB_BUCKETS} units are recorded exactly. Each power of two above that takes another
+     * {@link #SUB_BUCKETS} buckets.
+     */
+    static final int BUCKETS = 2 * SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+
+    /**
+     * Record a single value.
+     *
+     * @param value The value to record, in nanoseconds.
+     */
+    public void record( long value )
+    {
+        counts[bucket( value )]++;
+        total++;
+    }
+
+    /**
+     * Add all values from another histogram into this one.
+     *
+     * @param other The histogram to add.
+     */
+    public void add( LatencyHistogram other )
+    {
+        for( int i = 0; i < BUCKETS; i++ ) counts[i] += other.counts[i];
+        total += other.total;
+    }
+
+    /**
+     * Add counts recorded by {@link #record(AtomicLongArray, long)}.
+     *
+     * @param counts The counts to add.
+     */
+    void add( AtomicLongArray counts )
+    {
+        for( int i = 0; i < BUCKETS; i++ )
+        {
+            long count = counts.get( i );
+            this.counts[i] += count;
+            total += count;
+        }
+    }
+
+    /**
+     * @return The number of values recorded.
+     */
+    public long getCount()
+    {
+        return total;
+    }
+
+    /**
+     * Get the value at a given percentile.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The largest value which could be in the bucket containing this percentile, or 0 if nothing has been
+     * recorded.
+     */
+    public long getValueAtPercentile( double percentile )
+    {
+        if( total == 0 ) return 0;
+
+        long target = Math.max( 1, (long) Math.ceil( total * Math.min( percentile, 100 ) / 100 ) );
+        long seen = 0;
+        for( int i = 0; i < BUCKETS; i++ )
+        {
+            seen += counts[i];
+            if( seen >= target ) return highestValue( i );
+        }
+
+        return highestValue( BUCKETS - 1 );
+    }
+
+    /**
+     * Record a value into an array of counts, written to by a single thread and read by any.
+     *
+     * @param counts The counts to add to, with {@link #BUCKETS} elements.
+     * @param value  The value to record, in nanoseconds.
+     */
+    static void record( AtomicLongArray counts, long value )
+    {
+        int bucket = bucket( value );
+        counts.lazySet( bucket, counts.get( bucket ) + 1 );
+    }
+
+    static int bucket( long value )
+    {
+        long units = Math.max( value, 0 ) >>> UNIT_SHIFT;
+        if( units < 2 * SUB_BUCKETS ) return (int) units;
+
+        int exponent = 63 - Long.numberOfLeadingZeros( units );
+        if( exponent > MAX_EXPONENT ) return BUCKETS - 1;
+
+        int subBucket = (int) (units >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return 2 * SUB_BUCKETS + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Get the largest value which would be placed in a bucket.
+     *
+     * @param bucket The bucket's index.
+     * @return The bucket's largest value, in nanoseconds.
+     */
+    static long highestValue( int bucket )
+    {
+        long lowestUnits, width;
+        if( bucket < 2 * SUB_BUCKETS )
+        {
+            lowestUnits = bucket;
+            width = 1;
+        }
+        else
+        {
+            int exponent = (bucket - 2 * SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+            int subBucket = (bucket - 2 * SUB_BUCKETS) % SUB_BUCKETS;
+            width = 1L << (exponent - SUB_BUCKET_BITS);
+            lowestUnits = (1L << exponent) + subBucket * width;
+        }
+
+        return ((lowestUnits + width) << UNIT_SHIFT) - 1;
+    }
+}
@@ -29,6 +29,16 @@ public interface Tracker
         addTiming( computer, time );
     }
 
+    /**
+     * Report how long a task waited in a computer's queue before it started executing.
+     *
+     * @param computer The computer which queued this task.
+     * @param time     The time between the task being queued and it starting.
+     */
+    default void addTaskWait( Computer computer, long time )
+    {
+    }
+
     /**
      * Report how long a task executed on the server thread took.
      *
@@ -41,6 +51,19 @@ public interface Tracker
     {
     }
 
+    /**
+     * Report how the server thread's task budget was used during a single tick.
+     *
+     * This is only reported for ticks where there were server tasks to execute.
+     *
+     * @param time        The time spent executing server tasks this tick.
+     * @param queueDepth  The number of tasks queued at the start of the tick.
+     * @param carriedOver The number of tasks left over for the next tick, as they did not fit within the budget.
+     */
+    default void addServerTick( long time, int queueDepth, int carriedOver )
+    {
+    }
+
     /**
      * Increment an arbitrary field by some value. Implementations may track how often this is called
      * as well as the change, to compute some level of "average".
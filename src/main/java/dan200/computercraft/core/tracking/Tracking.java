@@ -12,15 +12,19 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class Tracking
 {
-    static final AtomicInteger tracking = new AtomicInteger( 0 );
-
     private static final Object lock = new Object();
     private static final HashMap<UUID, TrackingContext> contexts = new HashMap<>();
     private static final List<Tracker> trackers = new ArrayList<>();
+    private static final List<TrackingContext> running = new ArrayList<>();
+
+    /**
+     * Every tracker which is currently recording. This array is replaced (never modified) whenever a tracker is added,
+     * started or stopped, so recording a value is just a volatile read, and never locks or allocates.
+     */
+    private static volatile Tracker[] active = new Tracker[0];
 
     public static TrackingContext getContext( UUID uuid )
     {
@@ -37,41 +41,51 @@ public class Tracking
         synchronized( lock )
         {
             trackers.add( tracker );
-            tracking.incrementAndGet();
+            updateActive();
         }
     }
 
-    public static void addTaskTiming( Computer computer, long time )
+    static void start( TrackingContext context )
     {
-        if( tracking.get() == 0 ) return;
+        synchronized( lock )
+        {
+            running.add( context );
+            updateActive();
+        }
+    }
 
-        synchronized( contexts )
+    static void stop( TrackingContext context )
+    {
+        synchronized( lock )
         {
-            for( TrackingContext context : contexts.values() ) context.addTaskTiming( computer, time );
-            for( Tracker tracker : trackers ) tracker.addTaskTiming( computer, time );
+            running.remove( context );
+            updateActive();
         }
     }
 
+    public static void addTaskTiming( Computer computer, long time )
+    {
+        for( Tracker tracker : active ) tracker.addTaskTiming( computer, time );
+    }
+
+    public static void addTaskWait( Computer computer, long time )
+    {
+        for( Tracker tracker : active ) tracker.addTaskWait( computer, time );
+    }
+
     public static void addServerTiming( Computer computer, long time )
     {
-        if( tracking.get() == 0 ) return;
+        for( Tracker tracker : active ) tracker.addServerTiming( computer, time );
+    }
 
-        synchronized( contexts )
-        {
-            for( TrackingContext context : contexts.values() ) context.addServerTiming( computer, time );
-            for( Tracker tracker : trackers ) tracker.addServerTiming( computer, time );
-        }
+    public static void addServerTick( long time, int queueDepth, int carriedOver )
+    {
+        for( Tracker tracker : active ) tracker.addServerTick( time, queueDepth, carriedOver );
     }
 
     public static void addValue( Computer computer, TrackingField field, long change )
     {
-        if( tracking.get() == 0 ) return;
-
-        synchronized( lock )
-        {
-            for( TrackingContext context : contexts.values() ) context.addValue( computer, field, change );
-            for( Tracker tracker : trackers ) tracker.addValue( computer, field, change );
-        }
+        for( Tracker tracker : active ) tracker.addValue( computer, field, change );
     }
 
     public static void reset()
@@ -80,7 +94,17 @@ public class Tracking
         {
             contexts.clear();
             trackers.clear();
-            tracking.set( 0 );
+            running.clear();
+            updateActive();
         }
     }
+
+    private static void updateActive()
+    {
+        Tracker[] active = new Tracker[trackers.size() + running.size()];
+        int i = 0;
+        for( Tracker tracker : trackers ) active[i++] = tracker;
+        for( Tracker tracker : running ) active[i++] = tracker;
+        Tracking.active = active;
+    }
 }
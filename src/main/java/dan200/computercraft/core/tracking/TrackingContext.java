@@ -9,9 +9,11 @@ package dan200.computercraft.core.tracking;
 import com.google.common.collect.MapMaker;
 import dan200.computercraft.core.computer.Computer;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Tracks timing information about computers, including how long they ran for
@@ -22,96 +24,259 @@ import java.util.Map;
  */
 public class TrackingContext implements Tracker
 {
-    private boolean tracking = false;
+    private volatile boolean tracking = false;
 
     private final List<ComputerTracker> timings = new ArrayList<>();
     private final Map<Computer, ComputerTracker> timingLookup = new MapMaker().weakKeys().makeMap();
 
-    public synchronized void start()
+    /**
+     * Every thread records into its own {@link Shard}, which are only merged together when the timings are read. This
+     * means recording a value does not need to lock or allocate.
+     *
+     * Many threads are short lived (such as those backing Lua coroutines), so when merging we fold the shards of dead
+     * threads into {@link #retired} and drop them.
+     */
+    private volatile ThreadLocal<Shard> shard;
+    private volatile Queue<Shard> shards;
+    private final Map<ComputerTracker, ComputerCounters> retired = new IdentityHashMap<>();
+
+    private final LongAdder serverTicks = new LongAdder();
+    private final LongAdder serverTickTime = new LongAdder();
+    private final LongAccumulator serverTickMaxTime = new LongAccumulator( Math::max, 0 );
+    private final LongAccumulator serverMaxQueueDepth = new LongAccumulator( Math::max, 0 );
+    private final LongAdder serverCarriedOver = new LongAdder();
+
+    public TrackingContext()
     {
-        if( !tracking ) Tracking.tracking.incrementAndGet();
-        tracking = true;
+        resetShards();
+    }
 
+    public synchronized void start()
+    {
         timings.clear();
         timingLookup.clear();
+        retired.clear();
+        resetShards();
+
+        serverTicks.reset();
+        serverTickTime.reset();
+        serverTickMaxTime.reset();
+        serverMaxQueueDepth.reset();
+        serverCarriedOver.reset();
+
+        if( !tracking )
+        {
+            tracking = true;
+            Tracking.start( this );
+        }
     }
 
     public synchronized boolean stop()
     {
         if( !tracking ) return false;
 
-        Tracking.tracking.decrementAndGet();
         tracking = false;
+        Tracking.stop( this );
         timingLookup.clear();
         return true;
     }
 
     public synchronized List<ComputerTracker> getImmutableTimings()
     {
+        Map<ComputerTracker, ComputerTracker> merged = new IdentityHashMap<>( timings.size() );
         ArrayList<ComputerTracker> timings = new ArrayList<>( this.timings.size() );
-        for( ComputerTracker timing : this.timings ) timings.add( new ComputerTracker( timing ) );
+        for( ComputerTracker timing : this.timings )
+        {
+            ComputerTracker copy = new ComputerTracker( timing );
+            merged.put( timing, copy );
+            timings.add( copy );
+        }
+
+        for( Iterator<Shard> iterator = shards.iterator(); iterator.hasNext(); )
+        {
+            Shard shard = iterator.next();
+            if( shard.isAlive() )
+            {
+                for( ComputerCounters counters : shard.counters ) merge( merged, counters );
+            }
+            else
+            {
+                // This thread will never record anything again, so fold its counters into our retired totals.
+                iterator.remove();
+                for( ComputerCounters counters : shard.counters )
+                {
+                    retired.computeIfAbsent( counters.tracker, ComputerCounters::new ).add( counters );
+                }
+            }
+        }
+
+        for( ComputerCounters counters : retired.values() ) merge( merged, counters );
+
         return timings;
     }
 
-    public synchronized List<ComputerTracker> getTimings()
+    private static void merge( Map<ComputerTracker, ComputerTracker> merged, ComputerCounters counters )
+    {
+        ComputerTracker timing = merged.get( counters.tracker );
+        if( timing != null ) timing.merge( counters );
+    }
+
+    public List<ComputerTracker> getTimings()
+    {
+        return getImmutableTimings();
+    }
+
+    /**
+     * Get the number of ticks in which server tasks were executed.
+     *
+     * @return The number of ticks with server tasks.
+     */
+    public long getServerTicks()
+    {
+        return serverTicks.sum();
+    }
+
+    public long getServerTickTime()
+    {
+        return serverTickTime.sum();
+    }
+
+    public long getServerTickMaxTime()
+    {
+        return serverTickMaxTime.get();
+    }
+
+    public long getServerMaxQueueDepth()
+    {
+        return serverMaxQueueDepth.get();
+    }
+
+    /**
+     * Get the total number of server tasks which were carried over to a later tick, summed across all ticks.
+     *
+     * @return The number of tasks carried over.
+     */
+    public long getServerCarriedOver()
     {
-        return new ArrayList<>( timings );
+        return serverCarriedOver.sum();
     }
 
     @Override
     public void addTaskTiming( Computer computer, long time )
     {
         if( !tracking ) return;
+        shard.get().getCounters( computer ).addTaskTiming( time );
+    }
 
-        synchronized( this )
-        {
-            ComputerTracker computerTimings = timingLookup.get( computer );
-            if( computerTimings == null )
-            {
-                computerTimings = new ComputerTracker( computer );
-                timingLookup.put( computer, computerTimings );
-                timings.add( computerTimings );
-            }
-
-            computerTimings.addTaskTiming( time );
-        }
+    @Override
+    public void addTaskWait( Computer computer, long time )
+    {
+        if( !tracking ) return;
+        shard.get().getCounters( computer ).addTaskWait( time );
     }
 
     @Override
     public void addServerTiming( Computer computer, long time )
     {
         if( !tracking ) return;
+        shard.get().getCounters( computer ).addServerTiming( time );
+    }
 
-        synchronized( this )
-        {
-            ComputerTracker computerTimings = timingLookup.get( computer );
-            if( computerTimings == null )
-            {
-                computerTimings = new ComputerTracker( computer );
-                timingLookup.put( computer, computerTimings );
-                timings.add( computerTimings );
-            }
+    @Override
+    public void addServerTick( long time, int queueDepth, int carriedOver )
+    {
+        if( !tracking ) return;
 
-            computerTimings.addMainTiming( time );
-        }
+        serverTicks.increment();
+        serverTickTime.add( time );
+        serverTickMaxTime.accumulate( time );
+        serverMaxQueueDepth.accumulate( queueDepth );
+        serverCarriedOver.add( carriedOver );
     }
 
     @Override
     public void addValue( Computer computer, TrackingField field, long change )
     {
         if( !tracking ) return;
+        shard.get().getCounters( computer ).addValue( field, change );
+    }
 
-        synchronized( this )
+    private void resetShards()
+    {
+        Queue<Shard> shards = this.shards = new ConcurrentLinkedQueue<>();
+        this.shard = ThreadLocal.withInitial( () -> {
+            Shard shard = new Shard( Thread.currentThread() );
+            shards.add( shard );
+            return shard;
+        } );
+    }
+
+    private synchronized ComputerTracker getTracker( Computer computer )
+    {
+        ComputerTracker computerTimings = timingLookup.get( computer );
+        if( computerTimings == null )
         {
-            ComputerTracker computerTimings = timingLookup.get( computer );
-            if( computerTimings == null )
+            computerTimings = new ComputerTracker( computer );
+            timingLookup.put( computer, computerTimings );
+            timings.add( computerTimings );
+        }
+
+        return computerTimings;
+    }
+
+    /**
+     * The counters recorded by a single thread.
+     */
+    private final class Shard
+    {
+        private final WeakReference<Thread> owner;
+
+        /**
+         * The counters for each computer, looked up by the owning thread.
+         */
+        private final Map<Computer, ComputerCounters> lookup = new WeakHashMap<>();
+
+        /**
+         * Every set of counters in this shard, which may be read from any thread.
+         */
+        final Queue<ComputerCounters> counters = new ConcurrentLinkedQueue<>();
+
+        /**
+         * The last counters we used. Computer threads tend to run one computer for a while, so this saves a lookup.
+         */
+        private ComputerCounters last;
+
+        Shard( Thread owner )
+        {
+            this.owner = new WeakReference<>( owner );
+        }
+
+        /**
+         * Whether the owning thread may still record into this shard. Once this returns {@code false}, every value
+         * the thread recorded is visible to the caller.
+         *
+         * @return If the owning thread is still alive.
+         */
+        boolean isAlive()
+        {
+            Thread thread = owner.get();
+            return thread != null && thread.isAlive();
+        }
+
+        ComputerCounters getCounters( Computer computer )
+        {
+            ComputerCounters last = this.last;
+            if( last != null && last.tracker.getComputer() == computer ) return last;
+
+            ComputerCounters counters = lookup.get( computer );
+            if( counters == null )
             {
-                computerTimings = new ComputerTracker( computer );
-                timingLookup.put( computer, computerTimings );
-                timings.add( computerTimings );
+                counters = new ComputerCounters( getTracker( computer ) );
+                lookup.put( computer, counters );
+                this.counters.add( counters );
             }
 
-            computerTimings.addValue( field, change );
+            return this.last = counters;
         }
     }
 }
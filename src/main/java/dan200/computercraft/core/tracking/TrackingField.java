@@ -14,22 +14,37 @@ import java.util.function.LongFunction;
 public class TrackingField
 {
     private static final Map<String, TrackingField> fields = new HashMap<>();
+    private static int nextIndex = 0;
 
     public static final TrackingField TASKS = TrackingField.of( "tasks", "Tasks", x -> String.format( "%4d", x ) );
     public static final TrackingField TOTAL_TIME = TrackingField.of( "total", "Total time", x -> String.format( "%7.1fms", x / 1e6 ) );
     public static final TrackingField AVERAGE_TIME = TrackingField.of( "average", "Average time", x -> String.format( "%4.1fms", x / 1e6 ) );
     public static final TrackingField MAX_TIME = TrackingField.of( "max", "Max time", x -> String.format( "%5.1fms", x / 1e6 ) );
 
+    public static final TrackingField TASK_LATENCY = TrackingField.of( "task_latency", "Task time percentiles", TrackingField::formatLatency );
+    public static final TrackingField WAIT_LATENCY = TrackingField.of( "wait_latency", "Queue wait percentiles", TrackingField::formatLatency );
+    public static final TrackingField SERVER_LATENCY = TrackingField.of( "server_latency", "Server task percentiles", TrackingField::formatLatency );
+
+    public static final TrackingField WAIT_TIME = TrackingField.of( "wait", "Queue wait time", x -> String.format( "%7.1fms", x / 1e6 ) );
+    public static final TrackingField VIRTUAL_RUNTIME = TrackingField.of( "vruntime", "Virtual runtime", x -> String.format( "%7.1fms", x / 1e6 ) );
+    public static final TrackingField PREEMPTIONS = TrackingField.of( "preempted", "Times preempted", TrackingField::formatDefault );
+
     public static final TrackingField SERVER_COUNT = TrackingField.of( "server_count", "Server task count", x -> String.format( "%4d", x ) );
     public static final TrackingField SERVER_TIME = TrackingField.of( "server_time", "Server task time", x -> String.format( "%7.1fms", x / 1e6 ) );
+    public static final TrackingField SERVER_CARRY_OVER = TrackingField.of( "server_carry_over", "Server tasks carried over", TrackingField::formatDefault );
 
     public static final TrackingField PERIPHERAL_OPS = TrackingField.of( "peripheral", "Peripheral calls", TrackingField::formatDefault );
     public static final TrackingField FS_OPS = TrackingField.of( "fs", "Filesystem operations", TrackingField::formatDefault );
+    public static final TrackingField FS_WRITES = TrackingField.of( "fs_writes", "Filesystem writes", TrackingField::formatDefault );
+    public static final TrackingField FS_BYTES_WRITTEN = TrackingField.of( "fs_bytes_written", "Filesystem bytes written", TrackingField::formatBytes );
     public static final TrackingField TURTLE_OPS = TrackingField.of( "turtle", "Turtle operations", TrackingField::formatDefault );
 
     public static final TrackingField HTTP_REQUESTS = TrackingField.of( "http", "HTTP requests", TrackingField::formatDefault );
     public static final TrackingField HTTP_UPLOAD = TrackingField.of( "http_upload", "HTTP upload", TrackingField::formatBytes );
     public static final TrackingField HTTP_DOWNLOAD = TrackingField.of( "http_download", "HTTT download", TrackingField::formatBytes );
+    public static final TrackingField HTTP_DOWNLOAD_COMPRESSED = TrackingField.of( "http_download_compressed", "HTTP download (compressed)", TrackingField::formatBytes );
+    public static final TrackingField HTTP_CONNECTIONS = TrackingField.of( "http_connections", "HTTP connections opened", TrackingField::formatDefault );
+    public static final TrackingField HTTP_REUSED = TrackingField.of( "http_reused", "HTTP connections reused", TrackingField::formatDefault );
 
     public static final TrackingField WEBSOCKET_INCOMING = TrackingField.of( "websocket_incoming", "Websocket incoming", TrackingField::formatBytes );
     public static final TrackingField WEBSOCKET_OUTGOING = TrackingField.of( "websocket_outgoing", "Websocket outgoing", TrackingField::formatBytes );
@@ -37,6 +52,7 @@ public class TrackingField
     public static final TrackingField COROUTINES_CREATED = TrackingField.of( "coroutines_created", "Coroutines created", x -> String.format( "%4d", x ) );
     public static final TrackingField COROUTINES_DISPOSED = TrackingField.of( "coroutines_dead", "Coroutines disposed", x -> String.format( "%4d", x ) );
 
+    private final int index;
     private final String id;
     private final String displayName;
     private final LongFunction<String> format;
@@ -51,8 +67,27 @@ public class TrackingField
         return displayName;
     }
 
-    private TrackingField( String id, String displayName, LongFunction<String> format )
+    /**
+     * A unique index for this field, allowing counters to be stored in an array rather than a map.
+     *
+     * @return This field's index.
+     */
+    int index()
     {
+        return index;
+    }
+
+    /**
+     * @return The number of fields which have been created.
+     */
+    static synchronized int count()
+    {
+        return nextIndex;
+    }
+
+    private TrackingField( int index, String id, String displayName, LongFunction<String> format )
+    {
+        this.index = index;
         this.id = id;
         this.displayName = displayName;
         this.format = format;
@@ -63,9 +98,9 @@ public class TrackingField
         return format.apply( value );
     }
 
-    public static TrackingField of( String id, String displayName, LongFunction<String> format )
+    public static synchronized TrackingField of( String id, String displayName, LongFunction<String> format )
     {
-        TrackingField field = new TrackingField( id, displayName, format );
+        TrackingField field = new TrackingField( nextIndex++, id, displayName, format );
         fields.put( id, field );
         return field;
     }
@@ -80,6 +115,11 @@ public class TrackingField
         return String.format( "%6d", value );
     }
 
+    private static String formatLatency( long value )
+    {
+        return String.format( "%7.2fms", value / 1e6 );
+    }
+
     /**
      * So technically a kibibyte, but let's not argue here.
      */
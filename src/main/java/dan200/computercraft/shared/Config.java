@@ -21,6 +21,7 @@ import net.minecraftforge.fml.client.config.IConfigElement;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static dan200.computercraft.ComputerCraft.DEFAULT_HTTP_BLACKLIST;
 import static dan200.computercraft.ComputerCraft.DEFAULT_HTTP_WHITELIST;
@@ -39,10 +40,17 @@ public class Config
     private static Property computerSpaceLimit;
     private static Property floppySpaceLimit;
     private static Property maximumFilesOpen;
+    private static Property fileWriteBuffer;
     private static Property disableLua51Features;
     private static Property defaultComputerSettings;
     private static Property debugEnabled;
     private static Property computerThreads;
+    private static Property computerTimeslice;
+    private static Property computerLeakedRunnerLimit;
+    private static Property computerRunnerLimit;
+    private static Property maxMainGlobalTime;
+    private static Property coroutineLimit;
+    private static Property computerCoroutineLimit;
     private static Property logComputerErrors;
 
     private static Property httpEnable;
@@ -56,6 +64,8 @@ public class Config
     private static Property httpMaxUpload;
     private static Property httpMaxWebsockets;
     private static Property httpMaxWebsocketMessage;
+    private static Property httpMaxHostConnections;
+    private static Property httpKeepAlive;
 
     private static Property commandBlockEnabled;
     private static Property modemRange;
@@ -94,6 +104,12 @@ public class Config
             maximumFilesOpen.setComment( "Set how many files a computer can have open at the same time. Set to 0 for unlimited." );
             maximumFilesOpen.setMinValue( 0 );
 
+            fileWriteBuffer = config.get( CATEGORY_GENERAL, "file_write_buffer", ComputerCraft.file_write_buffer );
+            fileWriteBuffer
+                .setMinValue( 0 )
+                .setComment( "The size (in bytes) of the buffer used for each file opened for writing. Small writes are batched together, " +
+                    "and written to disk when the buffer is full, the file is flushed or closed, or after a second. Set to 0 to disable." );
+
             disableLua51Features = config.get( CATEGORY_GENERAL, "disable_lua51_features", ComputerCraft.disable_lua51_features );
             disableLua51Features.setComment( "Set this to true to disable Lua 5.1 functions that will be removed in a future update. Useful for ensuring forward compatibility of your programs now." );
 
@@ -110,14 +126,51 @@ public class Config
                 .setComment( "Set the number of threads computers can run on. A higher number means more computers can run at once, but may induce lag.\n" +
                     "Please note that some mods may not work with a thread count higher than 1. Use with caution." );
 
+            computerTimeslice = config.get( CATEGORY_GENERAL, "computer_timeslice", ComputerCraft.computer_timeslice );
+            computerTimeslice
+                .setMinValue( 1 )
+                .setComment( "The time (in milliseconds) a computer can run Lua code for before it is paused, allowing other computers to run. " +
+                    "Computers are only paused when other computers are waiting to execute." );
+
+            computerLeakedRunnerLimit = config.get( CATEGORY_GENERAL, "computer_leaked_runner_limit", ComputerCraft.computer_leaked_runner_limit );
+            computerLeakedRunnerLimit
+                .setMinValue( 1 )
+                .setComment( "The number of threads a computer can leave stuck (by running code which cannot be aborted) before it is " +
+                    "degraded. Degraded computers will not have any further tasks executed until their stuck threads finish." );
+
+            computerRunnerLimit = config.get( CATEGORY_GENERAL, "computer_runner_limit", ComputerCraft.computer_runner_limit );
+            computerRunnerLimit
+                .setMinValue( 1 )
+                .setComment( "The maximum number of threads computers' code may run on, including those of paused and stuck computers. " +
+                    "Once this is reached, computers will wait for a paused computer to finish before starting. This is never less than computer_threads." );
+
+            maxMainGlobalTime = config.get( CATEGORY_GENERAL, "max_main_global_time", (int) TimeUnit.NANOSECONDS.toMillis( ComputerCraft.maxMainGlobalTime ) );
+            maxMainGlobalTime
+                .setMinValue( 1 )
+                .setComment( "The time (in milliseconds) the server thread may spend executing computer tasks (such as peripheral calls) each tick. " +
+                    "Tasks which do not fit are carried over to the next tick. Note that at least one task is run each tick, so this may be exceeded." );
+
+            coroutineLimit = config.get( CATEGORY_GENERAL, "coroutine_limit", ComputerCraft.coroutine_limit );
+            coroutineLimit
+                .setMinValue( 1 )
+                .setComment( "The maximum number of Lua coroutines which may be alive across all computers. Each coroutine is backed by " +
+                    "a thread, so this also limits the number of coroutine threads. Creating a coroutine beyond this limit will error. " +
+                    "Each computer reserves 8 of these when it starts, so one computer cannot stop another from running." );
+
+            computerCoroutineLimit = config.get( CATEGORY_GENERAL, "computer_coroutine_limit", ComputerCraft.computer_coroutine_limit );
+            computerCoroutineLimit
+                .setMinValue( 1 )
+                .setComment( "The maximum number of Lua coroutines which may be alive on a single computer." );
+
             logComputerErrors = config.get( CATEGORY_GENERAL, "log_computer_errors", ComputerCraft.logPeripheralErrors );
             logComputerErrors.setComment( "Log exceptions thrown by peripherals and other Lua objects.\n" +
                 "This makes it easier for mod authors to debug problems, but may result in log spam should people use buggy methods." );
 
             setOrder(
                 CATEGORY_GENERAL,
-                computerSpaceLimit, floppySpaceLimit, maximumFilesOpen,
-                disableLua51Features, defaultComputerSettings, debugEnabled, computerThreads, logComputerErrors
+                computerSpaceLimit, floppySpaceLimit, maximumFilesOpen, fileWriteBuffer,
+                disableLua51Features, defaultComputerSettings, debugEnabled, computerThreads, computerTimeslice, computerLeakedRunnerLimit, computerRunnerLimit,
+                maxMainGlobalTime, coroutineLimit, computerCoroutineLimit, logComputerErrors
             );
         }
 
@@ -168,10 +221,19 @@ public class Config
             httpMaxWebsocketMessage.setMinValue( 0 );
             httpMaxWebsocketMessage.setMaxValue( Websocket.MAX_MESSAGE_SIZE );
 
+            httpMaxHostConnections = config.get( CATEGORY_HTTP, "max_host_connections", ComputerCraft.httpMaxHostConnections );
+            httpMaxHostConnections.setComment( "The number of connections which may be open to a single server at one time, across all computers. Additional requests will wait for a connection to become free." );
+            httpMaxHostConnections.setMinValue( 1 );
+
+            httpKeepAlive = config.get( CATEGORY_HTTP, "keep_alive", ComputerCraft.httpKeepAlive );
+            httpKeepAlive.setComment( "The period of time (in milliseconds) to keep an idle connection open, so it can be reused by later requests to the same server. Set to 0 to open a new connection for every request." );
+            httpKeepAlive.setMinValue( 0 );
+
             setOrder(
                 CATEGORY_HTTP,
                 httpEnable, httpWebsocketEnable, httpWhitelist, httpBlacklist,
-                httpTimeout, httpMaxRequests, httpMaxDownload, httpMaxUpload, httpMaxWebsockets, httpMaxWebsocketMessage
+                httpTimeout, httpMaxRequests, httpMaxDownload, httpMaxUpload, httpMaxWebsockets, httpMaxWebsocketMessage,
+                httpMaxHostConnections, httpKeepAlive
             );
         }
 
@@ -308,10 +370,17 @@ public class Config
         ComputerCraft.computerSpaceLimit = computerSpaceLimit.getInt();
         ComputerCraft.floppySpaceLimit = floppySpaceLimit.getInt();
         ComputerCraft.maximumFilesOpen = Math.max( 0, maximumFilesOpen.getInt() );
+        ComputerCraft.file_write_buffer = Math.max( 0, fileWriteBuffer.getInt() );
         ComputerCraft.disable_lua51_features = disableLua51Features.getBoolean();
         ComputerCraft.default_computer_settings = defaultComputerSettings.getString();
         ComputerCraft.debug_enable = debugEnabled.getBoolean();
         ComputerCraft.computer_threads = computerThreads.getInt();
+        ComputerCraft.computer_timeslice = Math.max( 1, computerTimeslice.getInt() );
+        ComputerCraft.computer_leaked_runner_limit = Math.max( 1, computerLeakedRunnerLimit.getInt() );
+        ComputerCraft.computer_runner_limit = Math.max( 1, computerRunnerLimit.getInt() );
+        ComputerCraft.maxMainGlobalTime = TimeUnit.MILLISECONDS.toNanos( Math.max( 1, maxMainGlobalTime.getInt() ) );
+        ComputerCraft.coroutine_limit = Math.max( 1, coroutineLimit.getInt() );
+        ComputerCraft.computer_coroutine_limit = Math.max( 1, computerCoroutineLimit.getInt() );
         ComputerCraft.logPeripheralErrors = logComputerErrors.getBoolean();
 
         // HTTP
@@ -326,6 +395,8 @@ public class Config
         ComputerCraft.httpMaxUpload = Math.max( 0, httpMaxUpload.getLong() );
         ComputerCraft.httpMaxWebsockets = Math.max( 1, httpMaxWebsockets.getInt() );
         ComputerCraft.httpMaxWebsocketMessage = Math.max( 0, httpMaxWebsocketMessage.getInt() );
+        ComputerCraft.httpMaxHostConnections = Math.max( 1, httpMaxHostConnections.getInt() );
+        ComputerCraft.httpKeepAlive = Math.max( 0, httpKeepAlive.getInt() );
 
         // Peripheral
         ComputerCraft.enableCommandBlock = commandBlockEnabled.getBoolean();
@@ -10,7 +10,12 @@ import com.google.common.collect.Sets;
 import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.peripheral.IPeripheral;
 import dan200.computercraft.core.computer.Computer;
+import dan200.computercraft.core.computer.ComputerThread;
+import dan200.computercraft.core.filesystem.ResourceCache;
+import dan200.computercraft.core.lua.CobaltLuaMachine;
+import dan200.computercraft.core.lua.PrototypeCache;
 import dan200.computercraft.core.tracking.ComputerTracker;
+import dan200.computercraft.core.tracking.LatencyHistogram;
 import dan200.computercraft.core.tracking.Tracking;
 import dan200.computercraft.core.tracking.TrackingContext;
 import dan200.computercraft.core.tracking.TrackingField;
@@ -32,6 +37,7 @@ import net.minecraft.world.World;
 
 import javax.annotation.Nonnull;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import static dan200.computercraft.shared.command.text.ChatHelpers.*;
@@ -108,6 +114,27 @@ public final class CommandComputerCraft extends CommandDelegate
                     }
 
                     table.display( context.getSender() );
+
+                    context.getSender().sendMessage( text( String.format(
+                        "%d coroutines alive (limit %d)", CobaltLuaMachine.getGlobalLiveCoroutines(), ComputerCraft.coroutine_limit
+                    ) ) );
+                    context.getSender().sendMessage( text( String.format(
+                        "Compile cache: %d hits, %d misses, %d ms compiling",
+                        PrototypeCache.getHits(), PrototypeCache.getMisses(), TimeUnit.NANOSECONDS.toMillis( PrototypeCache.getCompileTime() )
+                    ) ) );
+                    context.getSender().sendMessage( text( String.format(
+                        "ROM cache: %.1f%% hit rate, %d KiB resident (limit %d KiB)",
+                        ResourceCache.getHitRate() * 100, ResourceCache.getResidentBytes() / 1024, ResourceCache.MAX_SIZE / 1024
+                    ) ) );
+
+                    long abandoned = ComputerThread.getAbandonedRunners();
+                    if( abandoned > 0 )
+                    {
+                        context.getSender().sendMessage( text( String.format(
+                            "%d runner threads abandoned (%d still stuck, %d idle)",
+                            abandoned, ComputerThread.getQuarantinedRunners(), ComputerThread.getIdleRunners()
+                        ) ) );
+                    }
                 }
                 else if( arguments.size() == 1 )
                 {
@@ -121,6 +148,11 @@ public final class CommandComputerCraft extends CommandDelegate
                     table.row( header( "Position" ), linkPosition( context, computer ) );
                     table.row( header( "Family" ), text( computer.getFamily().toString() ) );
 
+                    Computer core = computer.getComputer();
+                    table.row( header( "Leaked threads" ), text( Integer.toString( core.getLeakedRunners() ) ) );
+                    table.row( header( "Degraded" ), bool( core.isDegraded() ) );
+                    table.row( header( "Coroutines" ), text( Integer.toString( core.getLiveCoroutines() ) ) );
+
                     for( int i = 0; i < 6; i++ )
                     {
                         IPeripheral peripheral = computer.getPeripheral( i );
@@ -329,6 +361,7 @@ public final class CommandComputerCraft extends CommandDelegate
                 TrackingContext timings = getTimingContext( context );
                 if( !timings.stop() ) throw new CommandException( "Tracking not enabled" );
                 displayTimings( context, timings.getImmutableTimings(), TrackingField.AVERAGE_TIME );
+                displayServerTicks( context, timings );
             }
         } );
 
@@ -347,7 +380,9 @@ public final class CommandComputerCraft extends CommandDelegate
                     if( field == null ) throw new CommandException( "Unknown field '" + arguments.get( 0 ) + "'" );
                 }
 
-                displayTimings( context, getTimingContext( context ).getImmutableTimings(), field );
+                TrackingContext timings = getTimingContext( context );
+                displayTimings( context, timings.getImmutableTimings(), field );
+                displayServerTicks( context, timings );
             }
 
             @Nonnull
@@ -509,11 +544,24 @@ public final class CommandComputerCraft extends CommandDelegate
 
         boolean defaultLayout = field == TrackingField.TASKS || field == TrackingField.TOTAL_TIME
             || field == TrackingField.AVERAGE_TIME || field == TrackingField.MAX_TIME;
+        boolean latencyLayout = field == TrackingField.TASK_LATENCY || field == TrackingField.WAIT_LATENCY
+            || field == TrackingField.SERVER_LATENCY;
 
+        TableBuilder table;
+        if( defaultLayout )
+        {
+            table = new TableBuilder( TRACK_ID, "Computer", "Tasks", "Total", "Average", "Maximum" );
+        }
+        else if( latencyLayout )
+        {
+            table = new TableBuilder( TRACK_ID, "Computer", "Count", "p50", "p90", "p99", "p99.9" );
+        }
+        else
+        {
+            table = new TableBuilder( TRACK_ID, "Computer", field.displayName() );
+        }
 
-        TableBuilder table = defaultLayout
-            ? new TableBuilder( TRACK_ID, "Computer", "Tasks", "Total", "Average", "Maximum" )
-            : new TableBuilder( TRACK_ID, "Computer", field.displayName() );
+        LatencyHistogram total = new LatencyHistogram();
 
         for( ComputerTracker entry : timings )
         {
@@ -532,15 +580,47 @@ public final class CommandComputerCraft extends CommandDelegate
                     text( entry.getFormatted( TrackingField.MAX_TIME ) )
                 );
             }
+            else if( latencyLayout )
+            {
+                LatencyHistogram latency = entry.getLatency( field );
+                total.add( latency );
+                table.row( latencyRow( computerComponent, field, latency ) );
+            }
             else
             {
                 table.row( computerComponent, text( entry.getFormatted( field ) ) );
             }
         }
 
+        if( latencyLayout ) table.row( latencyRow( text( "All computers" ), field, total ) );
+
         table.display( context.getSender() );
     }
 
+    private static ITextComponent[] latencyRow( ITextComponent computer, TrackingField field, LatencyHistogram latency )
+    {
+        return new ITextComponent[] {
+            computer,
+            text( Long.toString( latency.getCount() ) ),
+            text( field.format( latency.getValueAtPercentile( 50 ) ) ),
+            text( field.format( latency.getValueAtPercentile( 90 ) ) ),
+            text( field.format( latency.getValueAtPercentile( 99 ) ) ),
+            text( field.format( latency.getValueAtPercentile( 99.9 ) ) )
+        };
+    }
+
+    private static void displayServerTicks( CommandContext context, TrackingContext timings )
+    {
+        long ticks = timings.getServerTicks();
+        if( ticks == 0 ) return;
+
+        context.getSender().sendMessage( text( String.format(
+            "Server tasks ran in %d ticks: %.1fms average, %.1fms max per tick. Up to %d tasks queued, %d carried over in total.",
+            ticks, timings.getServerTickTime() / 1e6 / ticks, timings.getServerTickMaxTime() / 1e6,
+            timings.getServerMaxQueueDepth(), timings.getServerCarriedOver()
+        ) ) );
+    }
+
     private static void withComputers( List<String> selectors, Consumer<Collection<ServerComputer>> action ) throws CommandException
     {
         Set<ServerComputer> computers = Sets.newHashSet();
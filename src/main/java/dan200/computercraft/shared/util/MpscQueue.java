@@ -0,0 +1,120 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.shared.util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * An unbounded, lock-free queue which supports many producers but only a single consumer.
+ *
+ * Producers append with a single atomic swap, and never contend with the consumer. This is a linked queue in the
+ * style of Dmitry Vyukov's MPSC queue: a producer which has swapped the head but not yet linked its node will make
+ * the queue briefly appear shorter to the consumer, but no element is ever lost.
+ *
+ * {@link #poll()} and {@link #drain(Consumer)} must only ever be called from one thread at a time.
+ *
+ * @param <T> The type of element in this queue.
+ */
+public final class MpscQueue<T>
+{
+    private static final class Node<T>
+    {
+        T value;
+        volatile Node<T> next;
+
+        Node( T value )
+        {
+            this.value = value;
+        }
+    }
+
+    /**
+     * The most recently added node, which producers swap out.
+     */
+    private final AtomicReference<Node<T>> head;
+
+    /**
+     * The last consumed node. Its successor is the next element to be returned. Only accessed by the consumer.
+     */
+    private Node<T> tail;
+
+    public MpscQueue()
+    {
+        Node<T> stub = new Node<>( null );
+        head = new AtomicReference<>( stub );
+        tail = stub;
+    }
+
+    /**
+     * Add an element to this queue. This may be called from any thread.
+     *
+     * @param value The element to add.
+     */
+    public void offer( @Nonnull T value )
+    {
+        Node<T> node = new Node<>( value );
+        Node<T> previous = head.getAndSet( node );
+        previous.next = node;
+    }
+
+    /**
+     * Remove the oldest element from the queue. This must only be called from the consumer thread.
+     *
+     * @return The removed element, or {@code null} if the queue is empty.
+     */
+    @Nullable
+    public T poll()
+    {
+        Node<T> next = tail.next;
+        if( next == null ) return null;
+
+        T value = next.value;
+        next.value = null;
+        tail = next;
+        return value;
+    }
+
+    /**
+     * Remove every element currently in the queue, passing each one to {@code consumer} in insertion order. Elements
+     * added while draining are left for the next call. This must only be called from the consumer thread.
+     *
+     * @param consumer The consumer to accept each element.
+     * @return The number of elements drained.
+     */
+    public int drain( @Nonnull Consumer<? super T> consumer )
+    {
+        // Stop at the current head, so producers cannot keep us draining forever.
+        Node<T> last = head.get();
+        int count = 0;
+
+        Node<T> next;
+        while( tail != last && (next = tail.next) != null )
+        {
+            T value = next.value;
+            next.value = null;
+            tail = next;
+            count++;
+
+            consumer.accept( value );
+        }
+
+        return count;
+    }
+
+    /**
+     * Determine whether this queue is empty. This is only accurate when called from the consumer thread.
+     *
+     * @return Whether there are no visible elements in the queue.
+     */
+    public boolean isEmpty()
+    {
+        return tail.next == null;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis;
+
+import com.google.common.net.InetAddresses;
+import dan200.computercraft.ComputerCraft;
+import org.apache.logging.log4j.LogManager;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AddressPredicateTest
+{
+    @Before
+    public void setup()
+    {
+        ComputerCraft.log = LogManager.getLogger();
+    }
+
+    @Test
+    public void testDomains()
+    {
+        AddressPredicate predicate = new AddressPredicate( "example.com", "*.example.org", "pastebin.*", "a*b*c" );
+
+        assertTrue( predicate.matches( "example.com" ) );
+        assertTrue( predicate.matches( "EXAMPLE.com" ) );
+        assertFalse( predicate.matches( "www.example.com" ) );
+
+        assertTrue( predicate.matches( "www.example.org" ) );
+        assertTrue( predicate.matches( ".example.org" ) );
+        assertFalse( predicate.matches( "example.org" ) );
+
+        assertTrue( predicate.matches( "pastebin.com" ) );
+        assertFalse( predicate.matches( "pastebin" ) );
+
+        assertTrue( predicate.matches( "abc" ) );
+        assertTrue( predicate.matches( "a-b-c" ) );
+        assertFalse( predicate.matches( "a-b-" ) );
+    }
+
+    @Test
+    public void testWildcard()
+    {
+        AddressPredicate predicate = new AddressPredicate( "*" );
+        assertTrue( predicate.matches( "" ) );
+        assertTrue( predicate.matches( "example.com" ) );
+
+        assertFalse( new AddressPredicate().matches( "example.com" ) );
+    }
+
+    @Test
+    public void testDefaultBlacklist()
+    {
+        AddressPredicate predicate = new AddressPredicate( ComputerCraft.DEFAULT_HTTP_BLACKLIST );
+
+        assertTrue( predicate.matches( "localhost", InetAddresses.forString( "127.0.0.1" ) ) );
+        assertTrue( predicate.matches( null, InetAddresses.forString( "127.255.255.255" ) ) );
+        assertTrue( predicate.matches( null, InetAddresses.forString( "10.1.2.3" ) ) );
+        assertTrue( predicate.matches( null, InetAddresses.forString( "172.31.0.1" ) ) );
+        assertFalse( predicate.matches( null, InetAddresses.forString( "172.32.0.1" ) ) );
+        assertTrue( predicate.matches( null, InetAddresses.forString( "192.168.0.1" ) ) );
+        assertFalse( predicate.matches( null, InetAddresses.forString( "192.169.0.1" ) ) );
+        assertTrue( predicate.matches( null, InetAddresses.forString( "fd12::1" ) ) );
+        assertFalse( predicate.matches( null, InetAddresses.forString( "fe12::1" ) ) );
+        assertFalse( predicate.matches( "example.com", InetAddresses.forString( "93.184.216.34" ) ) );
+
+        // 6to4 addresses are checked against the IPv4 address they contain.
+        assertTrue( predicate.matches( null, InetAddresses.forString( "2002:7f00:1::" ) ) );
+    }
+
+    @Test
+    public void testPrefixSizes()
+    {
+        AddressPredicate predicate = new AddressPredicate( "1.2.3.4/32", "8.0.0.0/0", "::1/200", "nonsense/8", "1.1.1.1/x" );
+
+        assertTrue( predicate.matches( null, InetAddresses.forString( "1.2.3.4" ) ) );
+        assertTrue( predicate.matches( null, InetAddresses.forString( "9.9.9.9" ) ) );
+        assertTrue( predicate.matches( null, InetAddresses.forString( "::1" ) ) );
+        assertFalse( predicate.matches( null, InetAddresses.forString( "::2" ) ) );
+    }
+
+    @Test
+    public void testHostOrAddress()
+    {
+        AddressPredicate predicate = new AddressPredicate( "*.example.com", "192.168.*" );
+
+        assertTrue( predicate.matches( "www.example.com", InetAddresses.forString( "1.2.3.4" ) ) );
+        assertTrue( predicate.matches( "other.org", InetAddresses.forString( "192.168.1.1" ) ) );
+        assertFalse( predicate.matches( "other.org", InetAddresses.forString( "1.2.3.4" ) ) );
+    }
+}
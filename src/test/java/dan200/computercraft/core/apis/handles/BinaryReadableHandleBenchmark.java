@@ -0,0 +1,88 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.handles;
+
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.core.apis.ObjectWrapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading files on disk through {@link BinaryReadableHandle}, as done by {@code fs.open(path, "rb")}.
+ *
+ * Run with {@code ./gradlew jmh -PjmhArgs=BinaryReadableHandleBenchmark}.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class BinaryReadableHandleBenchmark
+{
+    @Param( { "1024", "1048576", "16777216" } )
+    public int size;
+
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        // Lines of 63 characters, roughly those of a typical Lua program.
+        byte[] contents = new byte[size];
+        for( int i = 0; i < size; i++ ) contents[i] = (byte) (i % 64 == 63 ? '\n' : 'a' + i % 26);
+
+        file = Files.createTempFile( "cc-handle", ".bin" );
+        Files.write( file, contents );
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        Files.delete( file );
+    }
+
+    @Benchmark
+    public int readAll() throws IOException, LuaException
+    {
+        try( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+        {
+            return new ObjectWrapper( new BinaryReadableHandle( channel ) ).<byte[]>callOf( "readAll" ).length;
+        }
+    }
+
+    @Benchmark
+    public int readLine() throws IOException, LuaException
+    {
+        try( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+        {
+            ObjectWrapper wrapper = new ObjectWrapper( new BinaryReadableHandle( channel ) );
+            int lines = 0;
+            while( wrapper.call( "readLine" ) != null ) lines++;
+            return lines;
+        }
+    }
+
+    @Benchmark
+    public int readChunks() throws IOException, LuaException
+    {
+        try( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+        {
+            ObjectWrapper wrapper = new ObjectWrapper( new BinaryReadableHandle( channel ) );
+            int total = 0;
+            Object[] result;
+            while( (result = wrapper.call( "read", 65536 )) != null ) total += ((byte[]) result[0]).length;
+            return total;
+        }
+    }
+}
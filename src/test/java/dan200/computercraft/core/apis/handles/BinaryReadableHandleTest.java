@@ -10,9 +10,12 @@ import dan200.computercraft.api.lua.LuaException;
 import dan200.computercraft.core.apis.ObjectWrapper;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class BinaryReadableHandleTest
 {
@@ -59,6 +62,56 @@ public class BinaryReadableHandleTest
         assertEquals( 1000, wrapper.<byte[]>callOf( "read", 11000 ).length );
     }
 
+    @Test
+    public void testReadAllLarge() throws LuaException
+    {
+        byte[] input = new byte[200 * 1024 + 7];
+        for( int i = 0; i < input.length; i++ ) input[i] = (byte) (i * 31);
+
+        ObjectWrapper wrapper = new ObjectWrapper( new BinaryReadableHandle( new ArrayByteChannel( input ) ) );
+        assertEquals( 0, (int) wrapper.callOf( Integer.class, "read" ) );
+        assertArrayEquals( Arrays.copyOfRange( input, 1, input.length ), wrapper.callOf( "readAll" ) );
+        assertNull( wrapper.call( "readAll" ) );
+    }
+
+    @Test
+    public void testReadLines() throws LuaException
+    {
+        char[] chars = new char[10000];
+        Arrays.fill( chars, 'A' );
+        String longLine = new String( chars );
+
+        ObjectWrapper wrapper = fromString( "first\n\n" + longLine + "\nlast" );
+        assertEquals( "first", new String( wrapper.<byte[]>callOf( "readLine" ), StandardCharsets.UTF_8 ) );
+        assertEquals( "\n", new String( wrapper.<byte[]>callOf( "readLine", true ), StandardCharsets.UTF_8 ) );
+        assertEquals( longLine, new String( wrapper.<byte[]>callOf( "readLine" ), StandardCharsets.UTF_8 ) );
+        assertEquals( "last", new String( wrapper.<byte[]>callOf( "readLine" ), StandardCharsets.UTF_8 ) );
+        assertNull( wrapper.call( "readLine" ) );
+    }
+
+    @Test
+    public void testReadAllAfterLine() throws LuaException
+    {
+        ObjectWrapper wrapper = fromString( "first\nsecond\nthird" );
+        assertEquals( "first", new String( wrapper.<byte[]>callOf( "readLine" ), StandardCharsets.UTF_8 ) );
+        assertEquals( "second\nthird", new String( wrapper.<byte[]>callOf( "readAll" ), StandardCharsets.UTF_8 ) );
+        assertNull( wrapper.call( "readAll" ) );
+    }
+
+    @Test
+    public void testSeekAfterLine() throws LuaException
+    {
+        ObjectWrapper wrapper = fromString( "first\nsecond\nthird" );
+        assertEquals( "first", new String( wrapper.<byte[]>callOf( "readLine" ), StandardCharsets.UTF_8 ) );
+        assertEquals( 6L, (long) wrapper.callOf( Long.class, "seek" ) );
+        assertEquals( 's', (int) wrapper.callOf( Integer.class, "read" ) );
+    }
+
+    private static ObjectWrapper fromString( String contents )
+    {
+        return new ObjectWrapper( new BinaryReadableHandle( new ArrayByteChannel( contents.getBytes( StandardCharsets.UTF_8 ) ) ) );
+    }
+
     private static ObjectWrapper fromLength( int length )
     {
         byte[] input = new byte[length];
@@ -0,0 +1,166 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http.request;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.api.lua.ILuaObject;
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.core.apis.AddressPredicate;
+import dan200.computercraft.core.tracking.TrackingField;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.*;
+import org.apache.logging.log4j.LogManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HttpCompressionTest
+{
+    private static final int RANDOM_SIZE = 256 * 1024;
+
+    private static final String TEXT;
+    private static final byte[] RANDOM = new byte[RANDOM_SIZE];
+
+    static
+    {
+        StringBuilder text = new StringBuilder();
+        for( int i = 0; i < 10000; i++ ) text.append( "Line " ).append( i ).append( ": hello world\n" );
+        TEXT = text.toString();
+
+        new Random( 0 ).nextBytes( RANDOM );
+    }
+
+    private EventLoopGroup serverGroup;
+    private HttpTestEnvironment environment;
+    private String address;
+    private volatile String acceptEncoding;
+
+    /**
+     * Start a local server which compresses its responses when the client asks it to.
+     */
+    @Before
+    public void setup() throws Exception
+    {
+        ComputerCraft.log = LogManager.getLogger();
+        ComputerCraft.http_whitelist = new AddressPredicate( "*" );
+        ComputerCraft.http_blacklist = new AddressPredicate();
+        ComputerCraft.httpTimeout = 5000;
+        ComputerCraft.httpKeepAlive = 30000;
+        ComputerCraft.httpMaxHostConnections = 4;
+        ComputerCraft.httpMaxDownload = 0;
+
+        serverGroup = new NioEventLoopGroup( 1 );
+        Channel server = new ServerBootstrap()
+            .group( serverGroup )
+            .channel( NioServerSocketChannel.class )
+            .childHandler( new ChannelInitializer<SocketChannel>()
+            {
+                @Override
+                protected void initChannel( SocketChannel ch )
+                {
+                    ch.pipeline().addLast( new HttpServerCodec(), new HttpContentCompressor(), new HttpObjectAggregator( 8192 ), new SimpleChannelInboundHandler<FullHttpRequest>()
+                    {
+                        @Override
+                        protected void channelRead0( ChannelHandlerContext ctx, FullHttpRequest request )
+                        {
+                            acceptEncoding = request.headers().get( HttpHeaderNames.ACCEPT_ENCODING );
+
+                            byte[] body = request.uri().equals( "/random" ) ? RANDOM : TEXT.getBytes( StandardCharsets.UTF_8 );
+                            FullHttpResponse response = new DefaultFullHttpResponse( HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.wrappedBuffer( body ) );
+                            HttpUtil.setContentLength( response, body.length );
+                            ctx.writeAndFlush( response );
+                        }
+                    } );
+                }
+            } )
+            .bind( "127.0.0.1", 0 ).sync().channel();
+
+        address = "http://127.0.0.1:" + ((InetSocketAddress) server.localAddress()).getPort();
+        environment = new HttpTestEnvironment();
+    }
+
+    @After
+    public void tearDown()
+    {
+        environment.close();
+        serverGroup.shutdownGracefully( 0, 1, TimeUnit.SECONDS ).syncUninterruptibly();
+    }
+
+    @Test
+    public void testUncompressed() throws Exception
+    {
+        for( boolean stream : new boolean[] { false, true } )
+        {
+            assertArrayEquals( TEXT.getBytes( StandardCharsets.UTF_8 ), (byte[]) read( "/text", stream, false ) );
+            assertNull( "Should not request compression", acceptEncoding );
+        }
+
+        assertEquals( 0, environment.getTracking( TrackingField.HTTP_DOWNLOAD_COMPRESSED ) );
+    }
+
+    @Test
+    public void testCompressed() throws Exception
+    {
+        for( boolean stream : new boolean[] { false, true } )
+        {
+            assertArrayEquals( TEXT.getBytes( StandardCharsets.UTF_8 ), (byte[]) read( "/text", stream, true ) );
+            assertNotNull( "Should request compression", acceptEncoding );
+            assertTrue( acceptEncoding, acceptEncoding.contains( "gzip" ) );
+        }
+
+        long compressed = environment.getTracking( TrackingField.HTTP_DOWNLOAD_COMPRESSED );
+        assertTrue( "Compressed size was " + compressed, compressed > 0 && compressed < TEXT.length() );
+    }
+
+    /**
+     * Random data does not compress, so the compressed body is slightly larger than the decoded one. Setting the limit
+     * to the decoded size means only the compressed limit is exceeded.
+     */
+    @Test
+    public void testCompressedLimit() throws Exception
+    {
+        ComputerCraft.httpMaxDownload = RANDOM_SIZE;
+        assertArrayEquals( "Uncompressed body should be within the limit", RANDOM, (byte[]) read( "/random", false, false ) );
+
+        // Buffered responses fail before the response is returned.
+        Object[] event = environment.request( URI.create( address + "/random" ), true, false, true );
+        assertEquals( "http_failure", event[0] );
+        assertEquals( "Response is too large", event[2] );
+
+        // Streamed responses fail when read.
+        try
+        {
+            read( "/random", true, true );
+            fail( "Expected an error" );
+        }
+        catch( LuaException e )
+        {
+            assertEquals( "Response is too large", e.getMessage() );
+        }
+    }
+
+    private Object read( String path, boolean stream, boolean compress ) throws LuaException, InterruptedException
+    {
+        acceptEncoding = null;
+        Object[] event = environment.request( URI.create( address + path ), true, stream, compress );
+        assertEquals( "http_success", event[0] );
+        return environment.call( (ILuaObject) event[2], "readAll" )[0];
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http.request;
+
+import dan200.computercraft.ComputerCraft;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.*;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HttpConnectionPoolTest
+{
+    private final AtomicInteger connections = new AtomicInteger();
+    private EventLoopGroup serverGroup;
+    private InetSocketAddress address;
+
+    /**
+     * Start a local server which echoes the requested path back, keeping the connection alive.
+     */
+    @Before
+    public void setup() throws Exception
+    {
+        ComputerCraft.httpTimeout = 5000;
+        ComputerCraft.httpKeepAlive = 30000;
+        ComputerCraft.httpMaxHostConnections = 2;
+
+        serverGroup = new NioEventLoopGroup( 1 );
+        Channel server = new ServerBootstrap()
+            .group( serverGroup )
+            .channel( NioServerSocketChannel.class )
+            .childHandler( new ChannelInitializer<SocketChannel>()
+            {
+                @Override
+                protected void initChannel( SocketChannel ch )
+                {
+                    connections.incrementAndGet();
+                    ch.pipeline().addLast( new HttpServerCodec(), new HttpObjectAggregator( 1024 ), new SimpleChannelInboundHandler<FullHttpRequest>()
+                    {
+                        @Override
+                        protected void channelRead0( ChannelHandlerContext ctx, FullHttpRequest request )
+                        {
+                            FullHttpResponse response = new DefaultFullHttpResponse( HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                                Unpooled.copiedBuffer( request.uri(), StandardCharsets.UTF_8 ) );
+                            HttpUtil.setContentLength( response, response.content().readableBytes() );
+                            ctx.writeAndFlush( response );
+                        }
+                    } );
+                }
+            } )
+            .bind( "127.0.0.1", 0 ).sync().channel();
+
+        address = (InetSocketAddress) server.localAddress();
+    }
+
+    @After
+    public void tearDown()
+    {
+        serverGroup.shutdownGracefully( 0, 1, TimeUnit.SECONDS ).syncUninterruptibly();
+    }
+
+    @Test
+    public void testReusesConnections() throws Exception
+    {
+        Channel first = acquire();
+        assertFalse( HttpConnectionPool.isReused( first ) );
+        assertEquals( "/first", get( first, "/first" ) );
+        release( first, true );
+
+        Channel second = acquire();
+        assertSame( first, second );
+        assertTrue( HttpConnectionPool.isReused( second ) );
+        assertEquals( "/second", get( second, "/second" ) );
+        release( second, true );
+
+        assertEquals( 1, connections.get() );
+    }
+
+    @Test
+    public void testNotReusedIfRequested() throws Exception
+    {
+        Channel first = acquire();
+        get( first, "/" );
+        release( first, false );
+
+        Channel second = acquire();
+        assertNotSame( first, second );
+        assertFalse( first.isOpen() );
+        get( second, "/" );
+        release( second, true );
+
+        assertEquals( 2, connections.get() );
+    }
+
+    @Test
+    public void testConnectionLimit() throws Exception
+    {
+        Channel first = acquire();
+        Channel second = acquire();
+
+        Future<Channel> third = HttpConnectionPool.acquire( address, null, "localhost" );
+        assertFalse( "Should wait for a free connection", third.await( 200, TimeUnit.MILLISECONDS ) );
+
+        get( first, "/" );
+        release( first, true );
+        assertSame( first, third.get( 5, TimeUnit.SECONDS ) );
+
+        get( second, "/" );
+        release( second, true );
+        release( first, true );
+        assertEquals( 2, connections.get() );
+    }
+
+    @Test
+    public void testIdleConnectionsClosed() throws Exception
+    {
+        ComputerCraft.httpKeepAlive = 100;
+
+        Channel first = acquire();
+        get( first, "/" );
+        release( first, true );
+
+        assertTrue( "Idle connection should be closed", first.closeFuture().await( 5, TimeUnit.SECONDS ) );
+
+        Channel second = acquire();
+        assertNotSame( first, second );
+        assertEquals( "/again", get( second, "/again" ) );
+        release( second, true );
+    }
+
+    @Test
+    public void testIdlePoolsClosed() throws Exception
+    {
+        ComputerCraft.httpKeepAlive = 100;
+
+        Channel channel = acquire();
+        assertTrue( HttpConnectionPool.hasPool( address, null, "localhost" ) );
+        get( channel, "/" );
+        release( channel, true );
+        assertTrue( "Pool should be kept while the connection is open", HttpConnectionPool.hasPool( address, null, "localhost" ) );
+
+        assertTrue( "Idle connection should be closed", channel.closeFuture().await( 5, TimeUnit.SECONDS ) );
+        long deadline = System.currentTimeMillis() + 5000;
+        while( HttpConnectionPool.hasPool( address, null, "localhost" ) && System.currentTimeMillis() < deadline )
+        {
+            Thread.sleep( 10 );
+        }
+        assertFalse( "Pool should be closed once empty", HttpConnectionPool.hasPool( address, null, "localhost" ) );
+
+        // We should pick up the new config when creating a new pool.
+        ComputerCraft.httpMaxHostConnections = 1;
+        Channel first = acquire();
+        Future<Channel> second = HttpConnectionPool.acquire( address, null, "localhost" );
+        assertFalse( "Should wait for a free connection", second.await( 200, TimeUnit.MILLISECONDS ) );
+
+        get( first, "/" );
+        release( first, true );
+        assertSame( first, second.get( 5, TimeUnit.SECONDS ) );
+        release( first, true );
+    }
+
+    private static void release( Channel channel, boolean reuse ) throws Exception
+    {
+        HttpConnectionPool.release( channel, reuse ).get( 5, TimeUnit.SECONDS );
+    }
+
+    private Channel acquire() throws Exception
+    {
+        return HttpConnectionPool.acquire( address, null, "localhost" ).get( 5, TimeUnit.SECONDS );
+    }
+
+    /**
+     * Make a request on a connection, in the same way {@link HttpRequest} does.
+     */
+    private static String get( Channel channel, String path ) throws Exception
+    {
+        CompletableFuture<String> body = new CompletableFuture<>();
+        channel.pipeline().addLast( HttpConnectionPool.REQUEST_HANDLER, new SimpleChannelInboundHandler<HttpObject>()
+        {
+            private final StringBuilder contents = new StringBuilder();
+
+            @Override
+            protected void channelRead0( ChannelHandlerContext ctx, HttpObject message )
+            {
+                if( message instanceof HttpContent )
+                {
+                    contents.append( ((HttpContent) message).content().toString( StandardCharsets.UTF_8 ) );
+                }
+                if( message instanceof LastHttpContent ) body.complete( contents.toString() );
+            }
+        } );
+
+        FullHttpRequest request = new DefaultFullHttpRequest( HttpVersion.HTTP_1_1, HttpMethod.GET, path );
+        request.headers().set( HttpHeaderNames.HOST, "localhost" );
+        channel.writeAndFlush( request );
+
+        return body.get( 5, TimeUnit.SECONDS );
+    }
+}
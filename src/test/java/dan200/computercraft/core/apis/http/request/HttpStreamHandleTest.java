@@ -0,0 +1,197 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http.request;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.api.lua.ILuaObject;
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.core.apis.AddressPredicate;
+import dan200.computercraft.core.tracking.TrackingField;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.*;
+import org.apache.logging.log4j.LogManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class HttpStreamHandleTest
+{
+    private static final int LARGE_SIZE = 8 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 8192;
+
+    private EventLoopGroup serverGroup;
+    private HttpTestEnvironment environment;
+    private String address;
+
+    /**
+     * Start a local server which sends a line split over two chunks, with a delay in between.
+     */
+    @Before
+    public void setup() throws Exception
+    {
+        ComputerCraft.log = LogManager.getLogger();
+        ComputerCraft.http_whitelist = new AddressPredicate( "*" );
+        ComputerCraft.http_blacklist = new AddressPredicate();
+        ComputerCraft.httpTimeout = 5000;
+        ComputerCraft.httpKeepAlive = 30000;
+        ComputerCraft.httpMaxHostConnections = 4;
+        ComputerCraft.httpMaxDownload = 0;
+
+        serverGroup = new NioEventLoopGroup( 1 );
+        Channel server = new ServerBootstrap()
+            .group( serverGroup )
+            .channel( NioServerSocketChannel.class )
+            .childHandler( new ChannelInitializer<SocketChannel>()
+            {
+                @Override
+                protected void initChannel( SocketChannel ch )
+                {
+                    ch.pipeline().addLast( new HttpServerCodec(), new SimpleChannelInboundHandler<io.netty.handler.codec.http.HttpRequest>()
+                    {
+                        @Override
+                        protected void channelRead0( ChannelHandlerContext ctx, io.netty.handler.codec.http.HttpRequest request )
+                        {
+                            HttpResponse response = new DefaultHttpResponse( HttpVersion.HTTP_1_1, HttpResponseStatus.OK );
+                            HttpUtil.setTransferEncodingChunked( response, true );
+                            ctx.writeAndFlush( response );
+
+                            if( request.uri().equals( "/large" ) )
+                            {
+                                sendLarge( ctx, LARGE_SIZE );
+                            }
+                            else
+                            {
+                                send( ctx, "hello " );
+                                ctx.executor().schedule( () -> {
+                                    send( ctx, "world\r\nsecond" );
+                                    ctx.writeAndFlush( LastHttpContent.EMPTY_LAST_CONTENT );
+                                }, 200, TimeUnit.MILLISECONDS );
+                            }
+                        }
+                    } );
+                }
+            } )
+            .bind( "127.0.0.1", 0 ).sync().channel();
+
+        address = "http://127.0.0.1:" + ((InetSocketAddress) server.localAddress()).getPort();
+        environment = new HttpTestEnvironment();
+    }
+
+    @After
+    public void tearDown()
+    {
+        environment.close();
+        serverGroup.shutdownGracefully( 0, 1, TimeUnit.SECONDS ).syncUninterruptibly();
+    }
+
+    @Test
+    public void testReadLineWaitsForWholeLine() throws Exception
+    {
+        ILuaObject handle = open( "/split", false );
+        assertEquals( "hello world", environment.call( handle, "readLine" )[0] );
+        assertTrue( "Should have yielded while waiting", environment.getYields() > 0 );
+
+        assertEquals( "second", environment.call( handle, "readLine" )[0] );
+        assertNull( environment.call( handle, "readLine" ) );
+    }
+
+    @Test
+    public void testBinaryReadLineWaitsForWholeLine() throws Exception
+    {
+        ILuaObject handle = open( "/split", true );
+        assertArrayEquals( "hello world\r".getBytes( StandardCharsets.UTF_8 ), (byte[]) environment.call( handle, "readLine" )[0] );
+        assertArrayEquals( "second".getBytes( StandardCharsets.UTF_8 ), (byte[]) environment.call( handle, "readLine" )[0] );
+        assertNull( environment.call( handle, "readLine" ) );
+    }
+
+    @Test
+    public void testReadWaitsForCount() throws Exception
+    {
+        ILuaObject handle = open( "/split", false );
+        assertEquals( "hello wo", environment.call( handle, "read", 8 )[0] );
+        assertEquals( "rld\r\nsecond", environment.call( handle, "read", 100 )[0] );
+        assertNull( environment.call( handle, "read", 1 ) );
+
+        handle = open( "/split", true );
+        assertArrayEquals( "hello wo".getBytes( StandardCharsets.UTF_8 ), (byte[]) environment.call( handle, "read", 8 )[0] );
+        assertEquals( (int) 'r', environment.call( handle, "read" )[0] );
+    }
+
+    @Test
+    public void testBackpressure() throws Exception
+    {
+        ILuaObject handle = open( "/large", true );
+
+        // Give the server a chance to send everything: we should stop reading long before it does.
+        Thread.sleep( 500 );
+        long downloaded = environment.getTracking( TrackingField.HTTP_DOWNLOAD );
+        assertTrue( "Downloaded " + downloaded + " bytes without reading", downloaded < LARGE_SIZE / 4 );
+
+        long total = 0;
+        Object[] result;
+        while( (result = environment.call( handle, "read", 65536 )) != null ) total += ((byte[]) result[0]).length;
+        assertEquals( LARGE_SIZE, total );
+    }
+
+    @Test
+    public void testDownloadLimit() throws Exception
+    {
+        ComputerCraft.httpMaxDownload = 1024 * 1024;
+
+        ILuaObject handle = open( "/large", true );
+        try
+        {
+            environment.call( handle, "readAll" );
+            fail( "Expected an error" );
+        }
+        catch( LuaException e )
+        {
+            assertEquals( "Response is too large", e.getMessage() );
+        }
+    }
+
+    private ILuaObject open( String path, boolean binary ) throws InterruptedException
+    {
+        Object[] event = environment.request( URI.create( address + path ), binary, true, false );
+        assertEquals( "http_success", event[0] );
+        return (ILuaObject) event[2];
+    }
+
+    private static void send( ChannelHandlerContext ctx, String contents )
+    {
+        ctx.writeAndFlush( new DefaultHttpContent( Unpooled.copiedBuffer( contents, StandardCharsets.UTF_8 ) ) );
+    }
+
+    /**
+     * Send a large body, only writing the next chunk once the last one has been written to the socket.
+     */
+    private static void sendLarge( ChannelHandlerContext ctx, int remaining )
+    {
+        if( remaining <= 0 )
+        {
+            ctx.writeAndFlush( LastHttpContent.EMPTY_LAST_CONTENT );
+            return;
+        }
+
+        int size = Math.min( CHUNK_SIZE, remaining );
+        ctx.writeAndFlush( new DefaultHttpContent( Unpooled.wrappedBuffer( new byte[size] ) ) ).addListener( f -> {
+            if( f.isSuccess() ) sendLarge( ctx, remaining - size );
+        } );
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http.request;
+
+import dan200.computercraft.api.lua.ILuaContext;
+import dan200.computercraft.api.lua.ILuaObject;
+import dan200.computercraft.api.lua.ILuaTask;
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.peripheral.IPeripheral;
+import dan200.computercraft.core.apis.IAPIEnvironment;
+import dan200.computercraft.core.apis.http.ResourceGroup;
+import dan200.computercraft.core.computer.Computer;
+import dan200.computercraft.core.computer.IComputerEnvironment;
+import dan200.computercraft.core.filesystem.FileSystem;
+import dan200.computercraft.core.terminal.Terminal;
+import dan200.computercraft.core.tracking.TrackingField;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An environment for making HTTP requests outside of a computer. Events are queued up until they are pulled by a
+ * handle, which uses this as its {@link ILuaContext}.
+ */
+class HttpTestEnvironment implements IAPIEnvironment, ILuaContext
+{
+    private static final long TIMEOUT = TimeUnit.SECONDS.toNanos( 5 );
+
+    private final List<Object[]> events = new ArrayList<>();
+    private final Map<TrackingField, AtomicLong> tracking = new ConcurrentHashMap<>();
+    private final ResourceGroup<HttpRequest> requests = new ResourceGroup<>();
+    private int yields;
+
+    HttpTestEnvironment()
+    {
+        requests.startup();
+    }
+
+    /**
+     * Close any requests which are still open.
+     */
+    void close()
+    {
+        requests.shutdown();
+    }
+
+    /**
+     * Make a request, waiting for the response.
+     *
+     * @param uri      The URI to request.
+     * @param headers  Additional headers to send.
+     * @param binary   Whether to open the response in binary mode.
+     * @param stream   Whether to stream the response.
+     * @param compress Whether to request a compressed response.
+     * @return The {@code http_success} or {@code http_failure} event.
+     * @throws InterruptedException If interrupted while waiting for the response.
+     */
+    Object[] request( URI uri, HttpHeaders headers, boolean binary, boolean stream, boolean compress ) throws InterruptedException
+    {
+        HttpRequest request = new HttpRequest( requests, this, uri.toString(), null, headers, binary, false, stream, compress );
+        if( !request.queue( r -> r.request( uri, HttpMethod.GET ) ) ) throw new IllegalStateException( "Too many requests" );
+
+        return pullEvent( e -> e.equals( "http_success" ) || e.equals( "http_failure" ) );
+    }
+
+    Object[] request( URI uri, boolean binary, boolean stream, boolean compress ) throws InterruptedException
+    {
+        return request( uri, new DefaultHttpHeaders(), binary, stream, compress );
+    }
+
+    /**
+     * Call a method on an object, using this environment to wait for events.
+     *
+     * @param object The object to call.
+     * @param name   The method's name.
+     * @param args   The arguments to pass.
+     * @return The method's result.
+     * @throws LuaException         If the method threw an error.
+     * @throws InterruptedException If interrupted while waiting for an event.
+     */
+    Object[] call( ILuaObject object, String name, Object... args ) throws LuaException, InterruptedException
+    {
+        String[] methods = object.getMethodNames();
+        for( int i = 0; i < methods.length; i++ )
+        {
+            if( methods[i].equals( name ) ) return object.callMethod( this, i, args );
+        }
+
+        throw new IllegalStateException( "No such method '" + name + "'" );
+    }
+
+    /**
+     * The number of times a method has waited for an event.
+     *
+     * @return The number of yields so far.
+     */
+    synchronized int getYields()
+    {
+        return yields;
+    }
+
+    long getTracking( TrackingField field )
+    {
+        AtomicLong value = tracking.get( field );
+        return value == null ? 0 : value.get();
+    }
+
+    private synchronized Object[] pullEvent( EventFilter filter ) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TIMEOUT;
+        while( true )
+        {
+            for( int i = 0; i < events.size(); i++ )
+            {
+                Object[] event = events.get( i );
+                if( filter.matches( (String) event[0] ) ) return events.remove( i );
+            }
+
+            long remaining = deadline - System.nanoTime();
+            if( remaining <= 0 ) throw new IllegalStateException( "Timed out waiting for an event" );
+            TimeUnit.NANOSECONDS.timedWait( this, remaining );
+        }
+    }
+
+    @Override
+    public synchronized void queueEvent( String event, Object[] args )
+    {
+        Object[] contents = new Object[args == null ? 1 : args.length + 1];
+        contents[0] = event;
+        if( args != null ) System.arraycopy( args, 0, contents, 1, args.length );
+
+        events.add( contents );
+        notifyAll();
+    }
+
+    @Override
+    public void addTrackingChange( TrackingField field, long change )
+    {
+        tracking.computeIfAbsent( field, x -> new AtomicLong() ).addAndGet( change );
+    }
+
+    @Nonnull
+    @Override
+    public Object[] pullEvent( @Nullable String filter ) throws InterruptedException
+    {
+        return pullEventRaw( filter );
+    }
+
+    @Nonnull
+    @Override
+    public Object[] pullEventRaw( @Nullable String filter ) throws InterruptedException
+    {
+        synchronized( this )
+        {
+            yields++;
+        }
+        return pullEvent( e -> filter == null || filter.equals( e ) );
+    }
+
+    @Nonnull
+    @Override
+    public Object[] yield( @Nullable Object[] arguments ) throws InterruptedException
+    {
+        return pullEventRaw( null );
+    }
+
+    @Nullable
+    @Override
+    public Object[] executeMainThreadTask( @Nonnull ILuaTask task )
+    {
+        throw new IllegalStateException( "Method should never use the main thread" );
+    }
+
+    @Override
+    public long issueMainThreadTask( @Nonnull ILuaTask task )
+    {
+        throw new IllegalStateException( "Method should never use the main thread" );
+    }
+
+    @Override
+    public Computer getComputer()
+    {
+        return null;
+    }
+
+    @Override
+    public int getComputerID()
+    {
+        return 0;
+    }
+
+    @Override
+    public IComputerEnvironment getComputerEnvironment()
+    {
+        return null;
+    }
+
+    @Override
+    public Terminal getTerminal()
+    {
+        return null;
+    }
+
+    @Override
+    public FileSystem getFileSystem()
+    {
+        return null;
+    }
+
+    @Override
+    public void shutdown()
+    {
+    }
+
+    @Override
+    public void reboot()
+    {
+    }
+
+    @Override
+    public void setOutput( int side, int output )
+    {
+    }
+
+    @Override
+    public int getOutput( int side )
+    {
+        return 0;
+    }
+
+    @Override
+    public int getInput( int side )
+    {
+        return 0;
+    }
+
+    @Override
+    public void setBundledOutput( int side, int output )
+    {
+    }
+
+    @Override
+    public int getBundledOutput( int side )
+    {
+        return 0;
+    }
+
+    @Override
+    public int getBundledInput( int side )
+    {
+        return 0;
+    }
+
+    @Override
+    public void setPeripheralChangeListener( IPeripheralChangeListener listener )
+    {
+    }
+
+    @Override
+    public IPeripheral getPeripheral( int side )
+    {
+        return null;
+    }
+
+    @Override
+    public String getLabel()
+    {
+        return null;
+    }
+
+    @Override
+    public void setLabel( String label )
+    {
+    }
+
+    private interface EventFilter
+    {
+        boolean matches( String event );
+    }
+}
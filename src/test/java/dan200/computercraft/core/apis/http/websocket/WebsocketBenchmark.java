@@ -0,0 +1,264 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.apis.http.websocket;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.api.peripheral.IPeripheral;
+import dan200.computercraft.core.apis.AddressPredicate;
+import dan200.computercraft.core.apis.IAPIEnvironment;
+import dan200.computercraft.core.apis.ObjectWrapper;
+import dan200.computercraft.core.apis.http.ResourceGroup;
+import dan200.computercraft.core.computer.Computer;
+import dan200.computercraft.core.computer.IComputerEnvironment;
+import dan200.computercraft.core.filesystem.FileSystem;
+import dan200.computercraft.core.terminal.Terminal;
+import dan200.computercraft.core.tracking.TrackingField;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import org.apache.logging.log4j.LogManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many messages a computer can send and receive over a websocket, by sending them through
+ * {@link WebsocketHandle} to a local echo server and waiting for {@link WebsocketHandler} to receive each one.
+ *
+ * Run with {@code ./gradlew jmh -PjmhArgs=WebsocketBenchmark}.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class WebsocketBenchmark
+{
+    private static final int MESSAGES = 1000;
+
+    @Param( { "16", "1024" } )
+    public int size;
+
+    @Param( { "false", "true" } )
+    public boolean binary;
+
+    private final Semaphore received = new Semaphore( 0 );
+    private EventLoopGroup serverGroup;
+    private Websocket websocket;
+    private ObjectWrapper handle;
+    private String message;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        ComputerCraft.log = LogManager.getLogger();
+        ComputerCraft.http_blacklist = new AddressPredicate();
+
+        serverGroup = new NioEventLoopGroup( 1 );
+        Channel server = new ServerBootstrap()
+            .group( serverGroup )
+            .channel( NioServerSocketChannel.class )
+            .childHandler( new ChannelInitializer<SocketChannel>()
+            {
+                @Override
+                protected void initChannel( SocketChannel ch )
+                {
+                    ch.pipeline().addLast(
+                        new HttpServerCodec(),
+                        new HttpObjectAggregator( 8192 ),
+                        new WebSocketServerProtocolHandler( "/", null, true, Websocket.MAX_MESSAGE_SIZE ),
+                        new SimpleChannelInboundHandler<WebSocketFrame>()
+                        {
+                            @Override
+                            protected void channelRead0( ChannelHandlerContext ctx, WebSocketFrame frame )
+                            {
+                                ctx.write( frame.retain() );
+                            }
+
+                            @Override
+                            public void channelReadComplete( ChannelHandlerContext ctx )
+                            {
+                                ctx.flush();
+                            }
+                        }
+                    );
+                }
+            } )
+            .bind( "127.0.0.1", 0 ).sync().channel();
+
+        URI uri = new URI( "ws://127.0.0.1:" + ((InetSocketAddress) server.localAddress()).getPort() + "/" );
+        CompletableFuture<WebsocketHandle> connected = new CompletableFuture<>();
+        websocket = new Websocket( new ResourceGroup<>(), new Environment( connected ), uri, uri.toString(), new DefaultHttpHeaders() );
+        websocket.connect();
+        handle = new ObjectWrapper( connected.get( 5, TimeUnit.SECONDS ) );
+
+        char[] contents = new char[size];
+        for( int i = 0; i < size; i++ ) contents[i] = (char) ('a' + i % 26);
+        message = new String( contents );
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        websocket.close();
+        serverGroup.shutdownGracefully( 0, 1, TimeUnit.SECONDS ).syncUninterruptibly();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( MESSAGES )
+    public void echo() throws Exception
+    {
+        for( int i = 0; i < MESSAGES; i++ ) handle.call( "send", message, binary );
+        if( !received.tryAcquire( MESSAGES, 10, TimeUnit.SECONDS ) )
+        {
+            throw new IllegalStateException( "Timed out waiting for messages" );
+        }
+    }
+
+    /**
+     * Just enough of an environment to receive websocket events.
+     */
+    private final class Environment implements IAPIEnvironment
+    {
+        private final CompletableFuture<WebsocketHandle> connected;
+
+        Environment( CompletableFuture<WebsocketHandle> connected )
+        {
+            this.connected = connected;
+        }
+
+        @Override
+        public void queueEvent( String event, Object[] args )
+        {
+            switch( event )
+            {
+                case Websocket.SUCCESS_EVENT:
+                    connected.complete( (WebsocketHandle) args[1] );
+                    break;
+                case Websocket.FAILURE_EVENT:
+                    connected.completeExceptionally( new IllegalStateException( (String) args[1] ) );
+                    break;
+                case Websocket.MESSAGE_EVENT:
+                    received.release();
+                    break;
+            }
+        }
+
+        @Override
+        public void addTrackingChange( TrackingField field, long change )
+        {
+        }
+
+        @Override
+        public Computer getComputer()
+        {
+            return null;
+        }
+
+        @Override
+        public int getComputerID()
+        {
+            return 0;
+        }
+
+        @Override
+        public IComputerEnvironment getComputerEnvironment()
+        {
+            return null;
+        }
+
+        @Override
+        public Terminal getTerminal()
+        {
+            return null;
+        }
+
+        @Override
+        public FileSystem getFileSystem()
+        {
+            return null;
+        }
+
+        @Override
+        public void shutdown()
+        {
+        }
+
+        @Override
+        public void reboot()
+        {
+        }
+
+        @Override
+        public void setOutput( int side, int output )
+        {
+        }
+
+        @Override
+        public int getOutput( int side )
+        {
+            return 0;
+        }
+
+        @Override
+        public int getInput( int side )
+        {
+            return 0;
+        }
+
+        @Override
+        public void setBundledOutput( int side, int output )
+        {
+        }
+
+        @Override
+        public int getBundledOutput( int side )
+        {
+            return 0;
+        }
+
+        @Override
+        public int getBundledInput( int side )
+        {
+            return 0;
+        }
+
+        @Override
+        public void setPeripheralChangeListener( IPeripheralChangeListener listener )
+        {
+        }
+
+        @Override
+        public IPeripheral getPeripheral( int side )
+        {
+            return null;
+        }
+
+        @Override
+        public String getLabel()
+        {
+            return null;
+        }
+
+        @Override
+        public void setLabel( String label )
+        {
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.computer;
+
+import dan200.computercraft.api.filesystem.IMount;
+import dan200.computercraft.api.filesystem.IWritableMount;
+import dan200.computercraft.core.filesystem.FileMount;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A very basic environment for computers, which reads resources straight from the source tree and writes computer
+ * files to {@code test-files/computer}.
+ */
+public class BasicEnvironment implements IComputerEnvironment
+{
+    private static final File RESOURCES = new File( "src/main/resources/assets" );
+    private static final File ROOT = new File( "test-files/computer" );
+
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    @Override
+    public int getDay()
+    {
+        return 0;
+    }
+
+    @Override
+    public double getTimeOfDay()
+    {
+        return 0;
+    }
+
+    @Override
+    public boolean isColour()
+    {
+        return true;
+    }
+
+    @Override
+    public long getComputerSpaceLimit()
+    {
+        return 1000 * 1000;
+    }
+
+    @Override
+    public String getHostString()
+    {
+        return "ComputerCraft (Test environment)";
+    }
+
+    @Override
+    public int assignNewID()
+    {
+        return nextId.getAndIncrement();
+    }
+
+    @Override
+    public IWritableMount createSaveDirMount( String subPath, long capacity )
+    {
+        return new FileMount( new File( ROOT, subPath ), capacity );
+    }
+
+    @Override
+    public IMount createResourceMount( String domain, String subPath )
+    {
+        return new FileMount( new File( new File( RESOURCES, domain ), subPath ), 0 );
+    }
+
+    @Override
+    public InputStream createResourceFile( String domain, String subPath )
+    {
+        try
+        {
+            return new FileInputStream( new File( new File( RESOURCES, domain ), subPath ) );
+        }
+        catch( FileNotFoundException e )
+        {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.computer;
+
+import dan200.computercraft.core.terminal.Terminal;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how quickly events can be submitted to {@link ComputerThread#queueTask(ITask, Computer)} from several
+ * producer threads at once, such as modems, timers and HTTP responses.
+ *
+ * Run with {@code ./gradlew jmh -PjmhArgs=ComputerThreadBenchmark}.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class ComputerThreadBenchmark
+{
+    private static final int COMPUTERS = 64;
+
+    @State( Scope.Benchmark )
+    public static class Computers
+    {
+        Computer[] computers;
+
+        @Setup
+        public void setup()
+        {
+            BasicEnvironment environment = new BasicEnvironment();
+            computers = new Computer[COMPUTERS];
+            for( int i = 0; i < COMPUTERS; i++ )
+            {
+                computers[i] = new Computer( environment, new Terminal( 51, 19 ), i );
+            }
+        }
+
+        @TearDown
+        public void tearDown()
+        {
+            ComputerThread.stop();
+        }
+    }
+
+    @State( Scope.Thread )
+    public static class Producer
+    {
+        int next;
+
+        @Setup
+        public void setup( ThreadParams params )
+        {
+            next = params.getThreadIndex();
+        }
+
+        Computer next( Computers computers )
+        {
+            return computers.computers[next++ & (COMPUTERS - 1)];
+        }
+    }
+
+    @Benchmark
+    @Threads( 1 )
+    public void enqueue1( Computers computers, Producer producer )
+    {
+        enqueue( producer.next( computers ) );
+    }
+
+    @Benchmark
+    @Threads( 4 )
+    public void enqueue4( Computers computers, Producer producer )
+    {
+        enqueue( producer.next( computers ) );
+    }
+
+    @Benchmark
+    @Threads( 16 )
+    public void enqueue16( Computers computers, Producer producer )
+    {
+        enqueue( producer.next( computers ) );
+    }
+
+    private static void enqueue( Computer computer )
+    {
+        ComputerThread.queueTask( new EmptyTask( computer ), computer );
+    }
+
+    private static final class EmptyTask implements ITask
+    {
+        private final Computer computer;
+
+        EmptyTask( Computer computer )
+        {
+            this.computer = computer;
+        }
+
+        @Override
+        public Computer getOwner()
+        {
+            return computer;
+        }
+
+        @Override
+        public void execute()
+        {
+        }
+    }
+}
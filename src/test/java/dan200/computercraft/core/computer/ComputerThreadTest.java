@@ -0,0 +1,257 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.computer;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.core.terminal.Terminal;
+import org.apache.logging.log4j.LogManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ComputerThreadTest
+{
+    private static final int COMPUTERS = 6;
+    private static final int RUNNER_LIMIT = 3;
+
+    private int threads, timeslice, runnerLimit;
+
+    @Before
+    public void setup()
+    {
+        ComputerCraft.log = LogManager.getLogger();
+        threads = ComputerCraft.computer_threads;
+        timeslice = ComputerCraft.computer_timeslice;
+        runnerLimit = ComputerCraft.computer_runner_limit;
+
+        ComputerCraft.computer_threads = 1;
+        ComputerCraft.computer_timeslice = 5;
+        ComputerCraft.computer_runner_limit = RUNNER_LIMIT;
+    }
+
+    @After
+    public void tearDown()
+    {
+        ComputerThread.stop();
+        ComputerCraft.computer_threads = threads;
+        ComputerCraft.computer_timeslice = timeslice;
+        ComputerCraft.computer_runner_limit = runnerLimit;
+    }
+
+    /**
+     * Run more busy computers than there are threads, so that each one is preempted, and check that the paused
+     * computers never hold on to more runners than the limit.
+     */
+    @Test( timeout = 20000 )
+    public void testRunnersLimited() throws InterruptedException
+    {
+        BasicEnvironment environment = new BasicEnvironment();
+        CountDownLatch finished = new CountDownLatch( COMPUTERS );
+        for( int i = 0; i < COMPUTERS; i++ )
+        {
+            Computer computer = new Computer( environment, new Terminal( 51, 19 ), i );
+            ComputerThread.queueTask( new BusyTask( computer, BusyTask.RUNTIME, finished ), computer );
+        }
+
+        int maxRunners = 0;
+        while( !finished.await( 5, TimeUnit.MILLISECONDS ) )
+        {
+            maxRunners = Math.max( maxRunners, ComputerThread.getRunners() );
+            assertTrue( "Too many runner threads: " + countRunnerThreads(), countRunnerThreads() <= RUNNER_LIMIT );
+        }
+
+        assertTrue( "Expected computers to be preempted", maxRunners > ComputerCraft.computer_threads );
+        assertTrue( "Too many runners: " + maxRunners, maxRunners <= RUNNER_LIMIT );
+    }
+
+    /**
+     * Run two busy computers on a single thread. Both should be preempted, taking turns rather than one running to
+     * completion before the other starts.
+     */
+    @Test( timeout = 20000 )
+    public void testFairScheduling() throws InterruptedException
+    {
+        long runtime = TimeUnit.MILLISECONDS.toNanos( 300 );
+        BasicEnvironment environment = new BasicEnvironment();
+        CountDownLatch firstFinished = new CountDownLatch( 1 );
+        BusyTask[] tasks = new BusyTask[2];
+        for( int i = 0; i < tasks.length; i++ )
+        {
+            Computer computer = new Computer( environment, new Terminal( 51, 19 ), i );
+            tasks[i] = new BusyTask( computer, runtime, firstFinished );
+            ComputerThread.queueTask( tasks[i], computer );
+        }
+
+        // Watch for each computer being parked, as the scheduler sees it.
+        boolean[] seenPaused = new boolean[tasks.length];
+        while( !firstFinished.await( 1, TimeUnit.MILLISECONDS ) )
+        {
+            for( int i = 0; i < tasks.length; i++ )
+            {
+                if( tasks[i].computer.getTimeslice().isPaused() ) seenPaused[i] = true;
+            }
+        }
+
+        // Each computer should have been paused many times, and the other should be nearly done by the time the first
+        // finishes. Without preemption, one would run for its whole 300ms before the other got any time at all.
+        for( int i = 0; i < tasks.length; i++ )
+        {
+            BusyTask task = tasks[i];
+            assertTrue( "Computer " + i + " was never paused", seenPaused[i] );
+            assertTrue( "Expected computer to be preempted, only paused " + task.pauses + " times", task.pauses >= 5 );
+            assertTrue( "Computer fell behind, only ran for " + task.elapsed / 1000000 + "ms", task.elapsed >= runtime / 2 );
+        }
+    }
+
+    /**
+     * A degraded computer's normal tasks are discarded, but it should still be able to shut down.
+     */
+    @Test( timeout = 20000 )
+    public void testDegradedRunsEssentialTasks() throws InterruptedException
+    {
+        int leakedLimit = ComputerCraft.computer_leaked_runner_limit;
+        Computer computer = new Computer( new BasicEnvironment(), new Terminal( 51, 19 ), 0 );
+        try
+        {
+            ComputerCraft.computer_leaked_runner_limit = 1;
+            computer.getTaskQueue().leakedRunners = 1;
+            assertTrue( computer.getTaskQueue().isDegraded() );
+
+            boolean[] ran = new boolean[1];
+            CountDownLatch shutdown = new CountDownLatch( 1 );
+            ComputerThread.queueTask( new SimpleTask( computer, false, () -> ran[0] = true ), computer );
+            ComputerThread.queueTask( new SimpleTask( computer, true, shutdown::countDown ), computer );
+
+            assertTrue( "Essential task was not run", shutdown.await( 5, TimeUnit.SECONDS ) );
+            assertFalse( "Normal task should have been discarded", ran[0] );
+        }
+        finally
+        {
+            computer.getTaskQueue().leakedRunners = 0;
+            ComputerCraft.computer_leaked_runner_limit = leakedLimit;
+        }
+    }
+
+    private static int countRunnerThreads()
+    {
+        int count = 0;
+        for( Thread thread : Thread.getAllStackTraces().keySet() )
+        {
+            if( thread.isAlive() && thread.getName().startsWith( "ComputerCraft-Computer-Runner" ) ) count++;
+        }
+        return count;
+    }
+
+    private static final class SimpleTask implements ITask
+    {
+        private final Computer computer;
+        private final boolean essential;
+        private final Runnable action;
+
+        SimpleTask( Computer computer, boolean essential, Runnable action )
+        {
+            this.computer = computer;
+            this.essential = essential;
+            this.action = action;
+        }
+
+        @Override
+        public Computer getOwner()
+        {
+            return computer;
+        }
+
+        @Override
+        public void execute()
+        {
+            action.run();
+        }
+
+        @Override
+        public boolean isEssential()
+        {
+            return essential;
+        }
+    }
+
+    /**
+     * Spin for a fixed amount of time, checking for pauses as a Lua machine would.
+     *
+     * Like Cobalt's coroutines, the spinning happens on a separate thread, with the runner waiting for it to finish.
+     * Only that thread reaches the safe points, so it must be the one which is paused and resumed.
+     */
+    private static final class BusyTask implements ITask
+    {
+        static final long RUNTIME = TimeUnit.MILLISECONDS.toNanos( 100 );
+        private static final long PAUSE = TimeUnit.MILLISECONDS.toNanos( 2 );
+
+        final Computer computer;
+        private final long runtime;
+        private final CountDownLatch finished;
+
+        volatile long elapsed;
+        volatile int pauses;
+
+        BusyTask( Computer computer, long runtime, CountDownLatch finished )
+        {
+            this.computer = computer;
+            this.runtime = runtime;
+            this.finished = finished;
+        }
+
+        @Override
+        public Computer getOwner()
+        {
+            return computer;
+        }
+
+        @Override
+        public void execute()
+        {
+            Thread worker = new Thread( computer.getTimeslice().bind( this::spin ) );
+            worker.start();
+            try
+            {
+                worker.join();
+            }
+            catch( InterruptedException e )
+            {
+                worker.interrupt();
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            finished.countDown();
+        }
+
+        private void spin()
+        {
+            long last = System.nanoTime();
+            while( elapsed < runtime )
+            {
+                computer.getTimeslice().pauseIfRequested();
+
+                // Don't count any time spent paused.
+                long now = System.nanoTime();
+                if( now - last < PAUSE )
+                {
+                    elapsed += now - last;
+                }
+                else
+                {
+                    pauses++;
+                }
+                last = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.computer;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ComputerTimesliceTest
+{
+    @Test( timeout = 5000 )
+    public void testOtherThreadsNotPaused() throws InterruptedException
+    {
+        ComputerTimeslice timeslice = new ComputerTimeslice();
+        ComputerTimeslice other = new ComputerTimeslice();
+        timeslice.requestPause( () -> fail( "Should not pause" ) );
+
+        // Would block forever if this thread were paused, either as an unrelated thread or while running another
+        // computer's code.
+        timeslice.pauseIfRequested();
+        other.bind( timeslice::pauseIfRequested ).run();
+        assertFalse( timeslice.isPaused() );
+    }
+
+    @Test( timeout = 5000 )
+    public void testOwnerPaused() throws InterruptedException
+    {
+        ComputerTimeslice timeslice = new ComputerTimeslice();
+        CountDownLatch paused = new CountDownLatch( 1 );
+        CountDownLatch resumed = new CountDownLatch( 1 );
+
+        // Run on a separate thread, as a Lua coroutine would be.
+        Thread owner = new Thread( timeslice.bind( () -> {
+            timeslice.pauseIfRequested();
+            resumed.countDown();
+        } ) );
+        timeslice.requestPause( paused::countDown );
+        owner.start();
+
+        assertTrue( paused.await( 1, TimeUnit.SECONDS ) );
+        assertTrue( timeslice.isPaused() );
+        assertFalse( resumed.await( 100, TimeUnit.MILLISECONDS ) );
+
+        timeslice.resume();
+        assertTrue( resumed.await( 1, TimeUnit.SECONDS ) );
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.computer;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.core.terminal.Terminal;
+import org.apache.logging.log4j.LogManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.*;
+
+public class MainThreadTest
+{
+    private static final long TASK_TIME = TimeUnit.MILLISECONDS.toNanos( 2 );
+
+    private long maxMainGlobalTime;
+    private final List<Computer> executed = new ArrayList<>();
+
+    @Before
+    public void setup()
+    {
+        ComputerCraft.log = LogManager.getLogger();
+        maxMainGlobalTime = ComputerCraft.maxMainGlobalTime;
+        ComputerCraft.maxMainGlobalTime = TimeUnit.MILLISECONDS.toNanos( 10 );
+    }
+
+    @After
+    public void tearDown()
+    {
+        // Flush anything left over, so it doesn't leak into other tests.
+        ComputerCraft.maxMainGlobalTime = TimeUnit.SECONDS.toNanos( 10 );
+        MainThread.executePendingTasks();
+
+        ComputerCraft.maxMainGlobalTime = maxMainGlobalTime;
+        ComputerThread.stop();
+    }
+
+    /**
+     * Queue far more work for one computer than fits in a tick, and then a little for another. The second computer
+     * should still have all its tasks run within the first couple of ticks, rather than waiting for the first to finish.
+     */
+    @Test
+    public void testRoundRobin()
+    {
+        BasicEnvironment environment = new BasicEnvironment();
+        Computer busy = new Computer( environment, new Terminal( 51, 19 ), 0 );
+        Computer quiet = new Computer( environment, new Terminal( 51, 19 ), 1 );
+
+        for( int i = 0; i < 100; i++ ) assertTrue( MainThread.queueTask( new SlowTask( busy ) ) );
+        for( int i = 0; i < 3; i++ ) assertTrue( MainThread.queueTask( new SlowTask( quiet ) ) );
+
+        MainThread.executePendingTasks();
+        int firstTick = executed.size();
+        assertTrue( "Ran " + firstTick + " tasks, which exceeds the tick's budget", firstTick < 20 );
+        assertTrue( "Quiet computer did not run in the first tick", count( quiet ) >= 1 );
+
+        // Tasks alternate between the computers, so neither runs twice in a row while the other is waiting.
+        for( int i = 1; i < Math.min( executed.size(), 6 ); i++ )
+        {
+            assertNotSame( "Computer ran twice in a row", executed.get( i - 1 ), executed.get( i ) );
+        }
+
+        MainThread.executePendingTasks();
+        assertEquals( "Quiet computer should have finished", 3, count( quiet ) );
+        assertTrue( "Busy computer should still have work", count( busy ) < 100 );
+    }
+
+    private int count( Computer computer )
+    {
+        int count = 0;
+        for( Computer other : executed ) if( other == computer ) count++;
+        return count;
+    }
+
+    /**
+     * Record when we run, and then spin for a couple of milliseconds, as a slow peripheral call might.
+     */
+    private final class SlowTask implements ITask
+    {
+        private final Computer computer;
+
+        SlowTask( Computer computer )
+        {
+            this.computer = computer;
+        }
+
+        @Override
+        public Computer getOwner()
+        {
+            return computer;
+        }
+
+        @Override
+        public void execute()
+        {
+            executed.add( computer );
+
+            long end = System.nanoTime() + TASK_TIME;
+            while( System.nanoTime() < end ) LockSupport.parkNanos( TASK_TIME / 10 );
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.filesystem;
+
+import dan200.computercraft.ComputerCraft;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FileMountTest
+{
+    private static final File ROOT = new File( "test-files/file-mount" );
+    private static final File SIZE = new File( ROOT, FileMount.METADATA_DIRECTORY + "/" + FileMount.SIZE_FILE );
+    private static final long CAPACITY = 1000000;
+
+    @Before
+    public void setup()
+    {
+        deleteRecursively( ROOT );
+    }
+
+    /**
+     * Ensures the used space is persisted between mounts, and is measured again if the size file goes missing.
+     */
+    @Test
+    public void testUsedSpacePersisted() throws IOException
+    {
+        FileMount mount = new FileMount( ROOT, CAPACITY );
+        mount.makeDirectory( "a/b" );
+        write( mount, "a/b/file.txt", 2000 );
+        write( mount, "small.txt", 10 );
+        mount.delete( "small.txt" );
+        long remaining = mount.getRemainingSpace();
+
+        mount.saveUsedSpace();
+        assertTrue( "Size file exists", SIZE.isFile() );
+        assertEquals( remaining, new FileMount( ROOT, CAPACITY ).getRemainingSpace() );
+
+        assertTrue( SIZE.delete() );
+        assertEquals( remaining, new FileMount( ROOT, CAPACITY ).getRemainingSpace() );
+        assertTrue( "Size file recreated", SIZE.isFile() );
+    }
+
+    /**
+     * Ensures the size file is removed once the mount is modified, so a crash leaves it missing, and is only saved
+     * once nothing is being written.
+     */
+    @Test
+    public void testSizeRemovedWhileModified() throws IOException
+    {
+        FileMount mount = new FileMount( ROOT, CAPACITY );
+        write( mount, "file.txt", 10 );
+        mount.saveUsedSpace();
+        assertTrue( SIZE.isFile() );
+
+        WritableByteChannel channel = mount.openChannelForWrite( "file.txt" );
+        assertFalse( SIZE.isFile() );
+
+        mount.saveUsedSpace();
+        assertFalse( "Not saved while writing", SIZE.isFile() );
+
+        channel.close();
+        mount.saveUsedSpace();
+        assertTrue( SIZE.isFile() );
+    }
+
+    /**
+     * Ensures files changed outside of the mount are noticed, rather than trusting the size file.
+     */
+    @Test
+    public void testExternalChangesDetected() throws IOException
+    {
+        FileMount mount = new FileMount( ROOT, CAPACITY );
+        write( mount, "file.txt", 1000 );
+        mount.saveUsedSpace();
+        long remaining = mount.getRemainingSpace();
+
+        try( FileOutputStream stream = new FileOutputStream( new File( ROOT, "file.txt" ), true ) )
+        {
+            stream.write( new byte[1000] );
+        }
+
+        assertEquals( remaining - 1000, new FileMount( ROOT, CAPACITY ).getRemainingSpace() );
+    }
+
+    /**
+     * Ensures the metadata directory cannot be seen or changed by computers.
+     */
+    @Test
+    public void testMetadataHidden() throws IOException
+    {
+        FileMount mount = new FileMount( ROOT, CAPACITY );
+        write( mount, "file.txt", 10 );
+        write( mount, FileMount.METADATA_DIRECTORY + "2", 10 );
+        mount.saveUsedSpace();
+        assertTrue( SIZE.isFile() );
+
+        List<String> files = new ArrayList<>();
+        mount.list( "", files );
+        Collections.sort( files );
+        assertEquals( Arrays.asList( FileMount.METADATA_DIRECTORY + "2", "file.txt" ), files );
+
+        assertFalse( mount.exists( FileMount.METADATA_DIRECTORY ) );
+        assertFalse( mount.exists( FileMount.METADATA_DIRECTORY + "/" + FileMount.SIZE_FILE ) );
+
+        try
+        {
+            mount.openChannelForWrite( FileMount.METADATA_DIRECTORY + "/" + FileMount.SIZE_FILE ).close();
+            fail( "Expected an error" );
+        }
+        catch( IOException e )
+        {
+            assertTrue( SIZE.isFile() );
+        }
+    }
+
+    /**
+     * Ensures small writes are batched together, but still count towards the used space immediately.
+     */
+    @Test
+    public void testBufferedWrites() throws IOException
+    {
+        ComputerCraft.file_write_buffer = 8192;
+
+        FileMount mount = new FileMount( ROOT, CAPACITY );
+        long remaining = mount.getRemainingSpace();
+
+        long[] writes = new long[2];
+        WritableByteChannel channel = mount.openChannelForWrite( "log.txt" );
+        ((FileMount.WritableCountingChannel) channel).setWriteListener( bytes -> {
+            writes[0]++;
+            writes[1] += bytes;
+        } );
+
+        for( int i = 0; i < 200; i++ ) channel.write( ByteBuffer.wrap( "line\n".getBytes( StandardCharsets.UTF_8 ) ) );
+        assertEquals( remaining - 1000, mount.getRemainingSpace() );
+
+        channel.close();
+
+        // The background flusher may have written part of the buffer out, but most writes should have been merged.
+        assertTrue( "Made " + writes[0] + " writes", writes[0] < 200 );
+        assertEquals( 1000, writes[1] );
+        assertEquals( 1000, new File( ROOT, "log.txt" ).length() );
+    }
+
+    @Test
+    public void testBufferedWritesVisibleToReaders() throws IOException
+    {
+        ComputerCraft.file_write_buffer = 8192;
+
+        FileMount mount = new FileMount( ROOT, CAPACITY );
+        try( WritableByteChannel channel = mount.openChannelForWrite( "visible.txt" ) )
+        {
+            channel.write( ByteBuffer.wrap( "hello".getBytes( StandardCharsets.UTF_8 ) ) );
+            assertEquals( 5, mount.getSize( "visible.txt" ) );
+
+            ByteBuffer contents = ByteBuffer.allocate( 16 );
+            try( ReadableByteChannel reader = mount.openChannelForRead( "visible.txt" ) )
+            {
+                reader.read( contents );
+            }
+            assertEquals( "hello", new String( contents.array(), 0, contents.position(), StandardCharsets.UTF_8 ) );
+        }
+    }
+
+    private static void write( FileMount mount, String path, int length ) throws IOException
+    {
+        try( WritableByteChannel channel = mount.openChannelForWrite( path ) )
+        {
+            channel.write( ByteBuffer.allocate( length ) );
+        }
+    }
+
+    private static void deleteRecursively( File file )
+    {
+        File[] children = file.listFiles();
+        if( children != null )
+        {
+            for( File child : children ) deleteRecursively( child );
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.filesystem;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how path resolution in {@link FileSystem} scales with the number of mounts, such as a computer with many
+ * disk drives or wired peripherals attached.
+ *
+ * Run with {@code ./gradlew jmh -PjmhArgs=FileSystemBenchmark}.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class FileSystemBenchmark
+{
+    @Param( { "1", "16", "64" } )
+    public int mounts;
+
+    private FileSystem fs;
+
+    @Setup
+    public void setup() throws FileSystemException
+    {
+        fs = new FileSystem( "hdd", new EmptyMount() );
+        fs.mount( "rom", "rom", new EmptyMount() );
+        for( int i = 1; i < mounts; i++ ) fs.mount( "disk" + i, "disk" + i, new EmptyMount() );
+    }
+
+    @Benchmark
+    public boolean existsRoot() throws FileSystemException
+    {
+        return fs.exists( "startup/programs/foo.lua" );
+    }
+
+    @Benchmark
+    public boolean existsMount() throws FileSystemException
+    {
+        return fs.exists( "rom/programs/foo.lua" );
+    }
+
+    @Benchmark
+    public String[] listRoot() throws FileSystemException
+    {
+        return fs.list( "" );
+    }
+}
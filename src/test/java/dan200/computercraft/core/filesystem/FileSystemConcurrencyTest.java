@@ -0,0 +1,218 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.filesystem;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.core.apis.handles.ArrayByteChannel;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class FileSystemConcurrencyTest
+{
+    private static final File ROOT = new File( "test-files/filesystem-concurrency" );
+
+    @Before
+    public void setup()
+    {
+        deleteRecursively( ROOT );
+    }
+
+    /**
+     * Hammers one file system from several threads at once, writing, copying, moving and deleting files while
+     * mounting and unmounting disks, and checks nothing fails and the free space is consistent afterwards.
+     */
+    @Test
+    public void testStress() throws Exception
+    {
+        ComputerCraft.file_write_buffer = 8192;
+        FileMount hdd = new FileMount( new File( ROOT, "hdd" ), 10000000 );
+        FileMount disk = new FileMount( new File( ROOT, "disk" ), 10000000 );
+        FileSystem fs = new FileSystem( "hdd", hdd );
+        fs.mountWritable( "disk", "disk", disk );
+
+        int threads = 6;
+        int iterations = 200;
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        CyclicBarrier start = new CyclicBarrier( threads );
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Future<?>> futures = new ArrayList<>();
+        try
+        {
+            for( int t = 0; t < threads; t++ )
+            {
+                int thread = t;
+                futures.add( executor.submit( () -> {
+                    try
+                    {
+                        start.await();
+                        for( int i = 0; i < iterations; i++ ) step( fs, thread, i );
+                    }
+                    catch( Throwable e )
+                    {
+                        failure.compareAndSet( null, e );
+                    }
+                    return null;
+                } ) );
+            }
+
+            for( Future<?> future : futures ) future.get( 1, TimeUnit.MINUTES );
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        if( failure.get() != null ) throw new AssertionError( failure.get() );
+
+        // Each writer leaves exactly one file behind on each drive.
+        assertEquals( threads / 3, fs.list( "disk" ).length );
+        assertEquals( threads / 3, fs.find( "out*" ).length );
+        assertTrue( fs.getFreeSpace( "" ) < 10000000 );
+        fs.unload();
+    }
+
+    private static void step( FileSystem fs, int thread, int iteration ) throws Exception
+    {
+        switch( thread % 3 )
+        {
+            case 0:
+            {
+                // Write a file, copy it to the other disk, then move it back over the original.
+                String name = "out" + thread;
+                write( fs, name, iteration );
+                if( fs.exists( "disk/" + name ) ) fs.delete( "disk/" + name );
+                fs.copy( name, "disk/" + name );
+                fs.delete( name );
+                fs.move( "disk/" + name, name );
+                fs.copy( name, "disk/" + name );
+                assertEquals( 1024, fs.getSize( name ) );
+                break;
+            }
+            case 1:
+                // Read-only operations, which should never fail however the tree changes.
+                fs.list( "" );
+                fs.list( "disk" );
+                fs.exists( "disk/out0" );
+                fs.isDir( "disk" );
+                fs.find( "*/out*" );
+                fs.getFreeSpace( "disk" );
+                break;
+            case 2:
+            {
+                // Repeatedly attach and detach a mount, as happens when a peripheral is attached and removed.
+                String location = "extra" + thread;
+                fs.mount( location, location, new EmptyMount() );
+                fs.list( location );
+                fs.unmount( location );
+                break;
+            }
+        }
+    }
+
+    private static void write( FileSystem fs, String path, int seed ) throws Exception
+    {
+        try( FileSystemWrapper<WritableByteChannel> handle = fs.openForWrite( path, false, Function.identity() ) )
+        {
+            byte[] contents = new byte[1024];
+            for( int i = 0; i < contents.length; i++ ) contents[i] = (byte) (seed + i);
+            handle.get().write( ByteBuffer.wrap( contents ) );
+        }
+    }
+
+    /**
+     * Ensures a slow copy off one mount does not block reading from another.
+     */
+    @Test
+    public void testCopyDoesNotBlockOtherMounts() throws Exception
+    {
+        CountDownLatch reading = new CountDownLatch( 1 );
+        CountDownLatch release = new CountDownLatch( 1 );
+
+        FileSystem fs = new FileSystem( "hdd", new FileMount( new File( ROOT, "hdd" ), 1000000 ) );
+        fs.mount( "slow", "slow", new EmptyMount()
+        {
+            @Override
+            public boolean exists( @Nonnull String path )
+            {
+                return path.isEmpty() || path.equals( "file" );
+            }
+
+            @Override
+            public boolean isDirectory( @Nonnull String path )
+            {
+                return path.isEmpty();
+            }
+
+            @Nonnull
+            @Override
+            @SuppressWarnings( "deprecation" )
+            public ReadableByteChannel openChannelForRead( @Nonnull String path ) throws IOException
+            {
+                reading.countDown();
+                try
+                {
+                    release.await();
+                }
+                catch( InterruptedException e )
+                {
+                    throw new IOException( e );
+                }
+                return new ArrayByteChannel( new byte[16] );
+            }
+        } );
+        fs.mount( "rom", "rom", new EmptyMount() );
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            Future<?> copy = executor.submit( () -> {
+                fs.copy( "slow/file", "file" );
+                return null;
+            } );
+
+            assertTrue( "Copy should have started", reading.await( 10, TimeUnit.SECONDS ) );
+
+            // These would previously wait for the copy to finish.
+            assertTrue( fs.exists( "rom" ) );
+            assertArrayEquals( new String[0], fs.list( "rom" ) );
+            assertFalse( fs.exists( "file" ) );
+
+            release.countDown();
+            copy.get( 10, TimeUnit.SECONDS );
+            assertEquals( 16, fs.getSize( "file" ) );
+        }
+        finally
+        {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static void deleteRecursively( File file )
+    {
+        File[] children = file.listFiles();
+        if( children != null )
+        {
+            for( File child : children ) deleteRecursively( child );
+        }
+        file.delete();
+    }
+}
@@ -7,6 +7,7 @@
 package dan200.computercraft.core.filesystem;
 
 import com.google.common.io.Files;
+import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.filesystem.IWritableMount;
 import dan200.computercraft.api.lua.LuaException;
 import dan200.computercraft.core.apis.ObjectWrapper;
@@ -16,9 +17,12 @@ import org.junit.Test;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class FileSystemTest
 {
@@ -51,4 +55,202 @@ public class FileSystemTest
 
         assertEquals( "Tiny line", Files.toString( new File( ROOT, "out.txt" ), StandardCharsets.UTF_8 ) );
     }
+
+    /**
+     * Ensures paths resolve to the deepest mount containing them, and that mounts are listed in their parent.
+     */
+    @Test
+    public void testNestedMounts() throws FileSystemException
+    {
+        FileSystem fs = new FileSystem( "hdd", new EmptyMount() );
+        fs.mount( "a", "a", new EmptyMount() );
+        fs.mount( "c", "a/c", new EmptyMount() );
+        fs.mount( "d", "a/b/d", new EmptyMount() );
+        fs.mount( "ab", "ab", new EmptyMount() );
+
+        assertEquals( "hdd", fs.getMountLabel( "" ) );
+        assertEquals( "hdd", fs.getMountLabel( "x/y" ) );
+        assertEquals( "a", fs.getMountLabel( "a" ) );
+        assertEquals( "a", fs.getMountLabel( "a/b" ) );
+        assertEquals( "c", fs.getMountLabel( "a/c" ) );
+        assertEquals( "d", fs.getMountLabel( "a/b/d/e" ) );
+        assertEquals( "ab", fs.getMountLabel( "ab/c" ) );
+
+        assertArrayEquals( new String[] { "a", "ab" }, fs.list( "" ) );
+        assertArrayEquals( new String[] { "c" }, fs.list( "a" ) );
+
+        fs.unmount( "a/c" );
+        assertEquals( "a", fs.getMountLabel( "a/c" ) );
+        assertArrayEquals( new String[0], fs.list( "a" ) );
+    }
+
+    /**
+     * Ensures fs.find only matches paths with the same depth as the pattern, and handles literal segments.
+     */
+    @Test
+    public void testFind() throws FileSystemException, IOException
+    {
+        File root = new File( ROOT, "find" );
+        for( String path : new String[] { "startup", "a/startup", "a/b/c.lua", "b/startup/x", "ab/startup" } )
+        {
+            File file = new File( root, path );
+            file.getParentFile().mkdirs();
+            file.createNewFile();
+        }
+
+        FileSystem fs = new FileSystem( "hdd", new FileMount( root, 1000000 ) );
+
+        assertArrayEquals( new String[] { "a", "ab", "b", "startup" }, fs.find( "*" ) );
+        assertArrayEquals( new String[] { "a/startup", "ab/startup", "b/startup" }, fs.find( "*/startup" ) );
+        assertArrayEquals( new String[] { "a/b/c.lua" }, fs.find( "a/*/c*" ) );
+        assertArrayEquals( new String[] { "a/b" }, fs.find( "a*/b" ) );
+        assertArrayEquals( new String[] { "b/startup/x" }, fs.find( "*/startup/*" ) );
+        assertArrayEquals( new String[] { "startup" }, fs.find( "startup" ) );
+        assertArrayEquals( new String[0], fs.find( "x/*" ) );
+        assertArrayEquals( new String[0], fs.find( "startup/*" ) );
+    }
+
+    /**
+     * Ensures fs.find gives the computer a chance to pause after listing each directory.
+     */
+    @Test
+    public void testFindPauses() throws FileSystemException, IOException
+    {
+        File root = new File( ROOT, "find-pause" );
+        for( String path : new String[] { "a/x", "b/x", "c/y" } )
+        {
+            File file = new File( root, path );
+            file.getParentFile().mkdirs();
+            file.createNewFile();
+        }
+
+        FileSystem fs = new FileSystem( "hdd", new FileMount( root, 1000000 ) );
+        int[] pauses = new int[1];
+        fs.setPauseHandler( () -> pauses[0]++ );
+
+        assertArrayEquals( new String[] { "a/x", "b/x" }, fs.find( "*/x" ) );
+        assertEquals( 1, pauses[0] );
+
+        assertArrayEquals( new String[] { "a/x", "b/x", "c/y" }, fs.find( "*/*" ) );
+        assertEquals( 5, pauses[0] );
+    }
+
+    /**
+     * Ensures copying and moving between two disk mounts keeps the contents, and updates both mounts' free space.
+     */
+    @Test
+    public void testCopyAndMoveBetweenMounts() throws FileSystemException, IOException
+    {
+        File root = new File( ROOT, "copy" );
+        deleteRecursively( root );
+        File hddRoot = new File( root, "hdd" );
+        File diskRoot = new File( root, "disk" );
+        byte[] contents = new byte[100000];
+        for( int i = 0; i < contents.length; i++ ) contents[i] = (byte) i;
+        new File( hddRoot, "dir/sub" ).mkdirs();
+        Files.write( contents, new File( hddRoot, "dir/sub/file.bin" ) );
+
+        FileMount hdd = new FileMount( hddRoot, 1000000 );
+        FileMount disk = new FileMount( diskRoot, 1000000 );
+        FileSystem fs = new FileSystem( "hdd", hdd );
+        fs.mountWritable( "disk", "disk", disk );
+        long hddFree = hdd.getRemainingSpace();
+        long diskFree = disk.getRemainingSpace();
+
+        fs.copy( "dir", "disk/dir" );
+        assertArrayEquals( contents, Files.toByteArray( new File( diskRoot, "dir/sub/file.bin" ) ) );
+        assertEquals( hddFree, hdd.getRemainingSpace() );
+        assertEquals( diskFree - 101000, disk.getRemainingSpace() );
+
+        // Moving within a mount is a rename, and so doesn't change its size.
+        fs.move( "disk/dir", "disk/moved" );
+        assertArrayEquals( contents, Files.toByteArray( new File( diskRoot, "moved/sub/file.bin" ) ) );
+        assertEquals( diskFree - 101000, disk.getRemainingSpace() );
+
+        // Moving between mounts transfers the space from one to the other.
+        fs.delete( "disk/moved" );
+        fs.move( "dir", "disk/dir" );
+        assertFalse( fs.exists( "dir" ) );
+        assertArrayEquals( contents, Files.toByteArray( new File( diskRoot, "dir/sub/file.bin" ) ) );
+        assertEquals( hddFree + 101000, hdd.getRemainingSpace() );
+        assertEquals( diskFree - 101000, disk.getRemainingSpace() );
+    }
+
+    @Test
+    public void testMoveFailsWhenUnmounted() throws FileSystemException, IOException
+    {
+        File root = new File( ROOT, "unmount" );
+        deleteRecursively( root );
+        File hddRoot = new File( root, "hdd" );
+        new File( hddRoot, "dir/sub" ).mkdirs();
+        Files.write( new byte[] { 1, 2, 3 }, new File( hddRoot, "dir/sub/file.bin" ) );
+
+        FileSystem fs = new FileSystem( "hdd", new FileMount( hddRoot, 1000000 ) );
+        fs.mountWritable( "disk", "disk", new FileMount( new File( root, "disk" ), 1000000 ) );
+
+        // The disk's directory doesn't exist yet, so the move can't be done as a rename. Remove the disk part way through
+        // copying, and mount something else in its place.
+        fs.setPauseHandler( () -> {
+            try
+            {
+                fs.unmount( "disk" );
+                fs.mountWritable( "other", "disk", new FileMount( new File( root, "other" ), 1000000 ) );
+            }
+            catch( FileSystemException e )
+            {
+                throw new IllegalStateException( e );
+            }
+        } );
+
+        try
+        {
+            fs.move( "dir", "disk/dir" );
+            fail( "Expected an error" );
+        }
+        catch( FileSystemException e )
+        {
+            assertEquals( "/disk: Mount was removed", e.getMessage() );
+        }
+
+        fs.setPauseHandler( null );
+        assertTrue( "Source should not have been deleted", fs.exists( "dir/sub/file.bin" ) );
+        assertFalse( "Nothing should be written to the new mount", fs.exists( "disk/dir" ) );
+    }
+
+    /**
+     * Ensures moving a file which is still open for writing keeps the data written so far, rather than leaving it
+     * buffered under the old name.
+     */
+    @Test
+    public void testMoveOpenFile() throws FileSystemException, IOException
+    {
+        ComputerCraft.file_write_buffer = 8192;
+
+        File root = new File( ROOT, "move-open" );
+        deleteRecursively( root );
+        FileSystem fs = new FileSystem( "hdd", new FileMount( root, 1000000 ) );
+
+        try( FileSystemWrapper<WritableByteChannel> writer = fs.openForWrite( "out.txt", false, x -> x ) )
+        {
+            writer.get().write( ByteBuffer.wrap( "Some text".getBytes( StandardCharsets.UTF_8 ) ) );
+
+            fs.move( "out.txt", "moved.txt" );
+            try( FileSystemWrapper<ReadableByteChannel> reader = fs.openForRead( "moved.txt", x -> x ) )
+            {
+                ByteBuffer buffer = ByteBuffer.allocate( 64 );
+                while( reader.get().read( buffer ) > 0 ) ;
+                assertEquals( "Some text", new String( buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8 ) );
+            }
+        }
+    }
+
+    private static void deleteRecursively( File file )
+    {
+        File[] children = file.listFiles();
+        if( children != null )
+        {
+            for( File child : children ) deleteRecursively( child );
+        }
+        file.delete();
+    }
 }
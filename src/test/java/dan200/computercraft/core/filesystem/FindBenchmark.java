@@ -0,0 +1,123 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.filesystem;
+
+import dan200.computercraft.api.filesystem.IMount;
+import org.openjdk.jmh.annotations.*;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link FileSystem#find(String)} over a synthetic tree of 100,000 files.
+ *
+ * Run with {@code ./gradlew jmh -PjmhArgs=FindBenchmark}.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class FindBenchmark
+{
+    private FileSystem fs;
+
+    @Setup
+    public void setup() throws FileSystemException
+    {
+        fs = new FileSystem( "hdd", new SyntheticMount() );
+    }
+
+    @Benchmark
+    public String[] topLevelStartup() throws FileSystemException
+    {
+        return fs.find( "*/startup" );
+    }
+
+    @Benchmark
+    public String[] nestedStartup() throws FileSystemException
+    {
+        return fs.find( "*/*/startup" );
+    }
+
+    @Benchmark
+    public String[] literalPrefix() throws FileSystemException
+    {
+        return fs.find( "dir1/*/file1*" );
+    }
+
+    /**
+     * A read-only mount with 10 directories, each containing 100 directories of 100 files (and a startup file).
+     */
+    private static final class SyntheticMount implements IMount
+    {
+        private static final int DIRECTORIES = 10;
+        private static final int SUBDIRECTORIES = 100;
+        private static final int FILES = 100;
+
+        private static int depth( String path )
+        {
+            if( path.isEmpty() ) return 0;
+
+            int depth = 1;
+            for( int i = 0; i < path.length(); i++ )
+            {
+                if( path.charAt( i ) == '/' ) depth++;
+            }
+            return depth;
+        }
+
+        @Override
+        public boolean exists( @Nonnull String path )
+        {
+            return depth( path ) <= 3;
+        }
+
+        @Override
+        public boolean isDirectory( @Nonnull String path )
+        {
+            return depth( path ) <= 2 && !path.endsWith( "startup" );
+        }
+
+        @Override
+        public void list( @Nonnull String path, @Nonnull List<String> contents )
+        {
+            switch( depth( path ) )
+            {
+                case 0:
+                    for( int i = 0; i < DIRECTORIES; i++ ) contents.add( "dir" + i );
+                    break;
+                case 1:
+                    for( int i = 0; i < SUBDIRECTORIES; i++ ) contents.add( "sub" + i );
+                    contents.add( "startup" );
+                    break;
+                case 2:
+                    for( int i = 0; i < FILES; i++ ) contents.add( "file" + i + ".lua" );
+                    contents.add( "startup" );
+                    break;
+            }
+        }
+
+        @Override
+        public long getSize( @Nonnull String path )
+        {
+            return 0;
+        }
+
+        @Nonnull
+        @Override
+        @Deprecated
+        public InputStream openForRead( @Nonnull String path ) throws IOException
+        {
+            throw new IOException( "/" + path + ": No such file" );
+        }
+    }
+}
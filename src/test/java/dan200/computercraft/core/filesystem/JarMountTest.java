@@ -6,6 +6,7 @@
 
 package dan200.computercraft.core.filesystem;
 
+import com.google.common.io.ByteStreams;
 import dan200.computercraft.api.filesystem.IMount;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -13,10 +14,12 @@ import org.junit.Test;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -57,4 +60,20 @@ public class JarMountTest
         assertTrue( "Root should exist", mount.exists( "" ) );
         assertFalse( "Root should be a file", mount.isDirectory( "" ) );
     }
+
+    @Test
+    public void readsCachedContents() throws IOException
+    {
+        IMount mount = new JarMount( ZIP_FILE, "dir" );
+        for( int i = 0; i < 2; i++ )
+        {
+            try( InputStream stream = mount.openForRead( "file.lua" ) )
+            {
+                assertEquals( "print('testing')", new String( ByteStreams.toByteArray( stream ), StandardCharsets.UTF_8 ) );
+            }
+        }
+
+        assertTrue( "File should be cached", ResourceCache.getResidentBytes() > 0 );
+        assertTrue( "Second read should be cached", ResourceCache.getHitRate() > 0 );
+    }
 }
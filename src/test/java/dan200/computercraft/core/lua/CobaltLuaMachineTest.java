@@ -0,0 +1,169 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.lua;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.api.lua.ILuaAPI;
+import dan200.computercraft.api.lua.ILuaContext;
+import dan200.computercraft.core.computer.BasicEnvironment;
+import dan200.computercraft.core.computer.Computer;
+import dan200.computercraft.core.terminal.Terminal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CobaltLuaMachineTest
+{
+    private int coroutineLimit;
+    private int computerCoroutineLimit;
+
+    private final List<CobaltLuaMachine> machines = new ArrayList<>();
+    private final List<Object[]> reports = new ArrayList<>();
+
+    @Before
+    public void setup()
+    {
+        coroutineLimit = ComputerCraft.coroutine_limit;
+        computerCoroutineLimit = ComputerCraft.computer_coroutine_limit;
+    }
+
+    @After
+    public void tearDown()
+    {
+        for( CobaltLuaMachine machine : machines ) machine.unload();
+        ComputerCraft.coroutine_limit = coroutineLimit;
+        ComputerCraft.computer_coroutine_limit = computerCoroutineLimit;
+    }
+
+    /**
+     * Starting a coroutine beyond the limit should be a normal Lua error, rather than killing the computer.
+     */
+    @Test
+    public void testCoroutineLimitIsCatchable()
+    {
+        // The main routine and two coroutines.
+        ComputerCraft.computer_coroutine_limit = 3;
+
+        CobaltLuaMachine machine = createMachine();
+        run( machine,
+            "local function wait() coroutine.yield() end\n" +
+            "local a, b = coroutine.create(wait), coroutine.create(wait)\n" +
+            "coroutine.resume(a) coroutine.resume(b)\n" +
+            "test.report(pcall(coroutine.resume, coroutine.create(function() end)))\n" +
+            "coroutine.yield()\n" +
+            "test.report(\"resumed\")\n" +
+            "coroutine.yield()\n"
+        );
+
+        assertEquals( 1, reports.size() );
+        assertEquals( false, reports.get( 0 )[0] );
+        assertTrue( "Unexpected error " + reports.get( 0 )[1], String.valueOf( reports.get( 0 )[1] ).contains( "Too many coroutines" ) );
+        assertFalse( "Computer should still be running", machine.isFinished() );
+
+        machine.handleEvent( "test", null );
+        assertEquals( 2, reports.size() );
+        assertEquals( "resumed", reports.get( 1 )[0] );
+        assertFalse( "Computer should still be running", machine.isFinished() );
+    }
+
+    /**
+     * A computer reserves its first few coroutines when created, and only then shares the rest of the server's limit.
+     */
+    @Test
+    public void testReservedCoroutines()
+    {
+        ComputerCraft.coroutine_limit = CobaltLuaMachine.RESERVED_COROUTINES + 1;
+
+        CobaltLuaMachine machine = createMachine();
+        run( machine,
+            "local function wait() coroutine.yield() end\n" +
+            "local ok = true\n" +
+            "for i = 1, " + (CobaltLuaMachine.RESERVED_COROUTINES - 1) + " do\n" +
+            "  ok = ok and coroutine.resume(coroutine.create(wait))\n" +
+            "end\n" +
+            "test.report(ok)\n" +
+            "test.report(coroutine.resume(coroutine.create(wait)))\n" +
+            "test.report(pcall(coroutine.resume, coroutine.create(wait)))\n" +
+            "coroutine.yield()\n"
+        );
+
+        assertEquals( 3, reports.size() );
+        assertEquals( "Reserved coroutines should start", true, reports.get( 0 )[0] );
+        assertEquals( "Shared coroutine should start", true, reports.get( 1 )[0] );
+        assertEquals( "Server limit should apply", false, reports.get( 2 )[0] );
+        assertFalse( "Computer should still be running", machine.isFinished() );
+    }
+
+    /**
+     * Reserved coroutines come out of the server's limit, so a computer created when the server is nearly full only
+     * gets what is left.
+     */
+    @Test
+    public void testReservationWithinLimit()
+    {
+        ComputerCraft.coroutine_limit = CobaltLuaMachine.RESERVED_COROUTINES + 2;
+
+        createMachine();
+        CobaltLuaMachine machine = createMachine();
+        run( machine,
+            "local function wait() coroutine.yield() end\n" +
+            "test.report(coroutine.resume(coroutine.create(wait)))\n" +
+            "test.report(pcall(coroutine.resume, coroutine.create(wait)))\n" +
+            "coroutine.yield()\n"
+        );
+
+        assertEquals( 2, reports.size() );
+        assertEquals( "Reserved coroutine should start", true, reports.get( 0 )[0] );
+        assertEquals( "Server limit should apply", false, reports.get( 1 )[0] );
+        assertFalse( "Computer should still be running", machine.isFinished() );
+    }
+
+    private CobaltLuaMachine createMachine()
+    {
+        CobaltLuaMachine machine = new CobaltLuaMachine( new Computer( new BasicEnvironment(), new Terminal( 51, 19 ), machines.size() ) );
+        machine.addAPI( new ReportAPI() );
+        machines.add( machine );
+        return machine;
+    }
+
+    private static void run( CobaltLuaMachine machine, String program )
+    {
+        machine.loadBios( new ByteArrayInputStream( program.getBytes( StandardCharsets.UTF_8 ) ) );
+        machine.handleEvent( null, null );
+    }
+
+    private class ReportAPI implements ILuaAPI
+    {
+        @Override
+        public String[] getNames()
+        {
+            return new String[] { "test" };
+        }
+
+        @Nonnull
+        @Override
+        public String[] getMethodNames()
+        {
+            return new String[] { "report" };
+        }
+
+        @Override
+        public Object[] callMethod( @Nonnull ILuaContext context, int method, @Nonnull Object[] arguments )
+        {
+            reports.add( arguments );
+            return null;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.lua;
+
+import dan200.computercraft.core.computer.BasicEnvironment;
+import dan200.computercraft.core.computer.Computer;
+import dan200.computercraft.core.terminal.Terminal;
+import org.openjdk.jmh.annotations.*;
+import org.squiddev.cobalt.LuaValue;
+import org.squiddev.cobalt.Varargs;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of converting values between Java and Lua, as done for every peripheral call.
+ *
+ * Run with {@code ./gradlew jmh -PjmhArgs="MarshallingBenchmark -prof gc"} to see allocation rates.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class MarshallingBenchmark
+{
+    private CobaltLuaMachine machine;
+
+    private Object[] scalars;
+    private Map<Object, Object> flat;
+    private Map<Object, Object> nested;
+
+    private Varargs luaScalars;
+    private LuaValue luaFlat;
+    private LuaValue luaNested;
+
+    @Setup
+    public void setup()
+    {
+        Computer computer = new Computer( new BasicEnvironment(), new Terminal( 51, 19 ), 0 );
+        machine = new CobaltLuaMachine( computer );
+
+        scalars = new Object[] { "left", 1.0, 16.0, true };
+
+        // A list of names, such as the result of peripheral.getNames()
+        flat = new HashMap<>();
+        for( int i = 1; i <= 64; i++ ) flat.put( (double) i, "chest_" + i );
+
+        // Something like an inventory scan: a list of slots, each with item details and some nested metadata.
+        nested = new HashMap<>();
+        for( int slot = 1; slot <= 54; slot++ )
+        {
+            Map<Object, Object> enchantment = new HashMap<>();
+            enchantment.put( "name", "minecraft:unbreaking" );
+            enchantment.put( "level", 3.0 );
+
+            Map<Object, Object> enchantments = new HashMap<>();
+            enchantments.put( 1.0, enchantment );
+
+            Map<Object, Object> item = new HashMap<>();
+            item.put( "name", "minecraft:diamond_pickaxe" );
+            item.put( "count", 1.0 );
+            item.put( "damage", (double) slot );
+            item.put( "enchantments", enchantments );
+            nested.put( (double) slot, item );
+        }
+
+        luaScalars = machine.toValues( scalars );
+        luaFlat = machine.toValue( flat, null );
+        luaNested = machine.toValue( nested, null );
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        machine.unload();
+    }
+
+    @Benchmark
+    public Varargs scalarsToLua()
+    {
+        return machine.toValues( scalars );
+    }
+
+    @Benchmark
+    public Object[] scalarsToJava()
+    {
+        return machine.toObjects( luaScalars, 1 );
+    }
+
+    @Benchmark
+    public LuaValue flatTableToLua()
+    {
+        return machine.toValue( flat, null );
+    }
+
+    @Benchmark
+    public Object flatTableToJava()
+    {
+        return machine.toObject( luaFlat, null );
+    }
+
+    @Benchmark
+    public LuaValue nestedTableToLua()
+    {
+        return machine.toValue( nested, null );
+    }
+
+    @Benchmark
+    public Object nestedTableToJava()
+    {
+        return machine.toObject( luaNested, null );
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.lua;
+
+import dan200.computercraft.api.lua.ILuaAPI;
+import dan200.computercraft.api.lua.ILuaContext;
+import dan200.computercraft.core.apis.handles.EncodedReadableHandle;
+import dan200.computercraft.core.computer.BasicEnvironment;
+import dan200.computercraft.core.computer.Computer;
+import dan200.computercraft.core.terminal.Terminal;
+import org.openjdk.jmh.annotations.*;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of passing {@link dan200.computercraft.api.lua.ILuaObject}s into Lua, by opening and closing
+ * file handles in a loop.
+ *
+ * Run with {@code ./gradlew jmh -PjmhArgs="ObjectWrappingBenchmark -prof gc"} to see allocation rates.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class ObjectWrappingBenchmark
+{
+    private static final int HANDLES = 1000;
+
+    private static final String PROGRAM =
+        "while true do\n" +
+        "  local _, n = coroutine.yield()\n" +
+        "  for i = 1, n do\n" +
+        "    local handle = handles.open()\n" +
+        "    handle.close()\n" +
+        "  end\n" +
+        "end\n";
+
+    private CobaltLuaMachine machine;
+
+    @Setup
+    public void setup()
+    {
+        Computer computer = new Computer( new BasicEnvironment(), new Terminal( 51, 19 ), 0 );
+        machine = new CobaltLuaMachine( computer );
+        machine.addAPI( new HandleAPI() );
+        machine.loadBios( new ByteArrayInputStream( PROGRAM.getBytes( StandardCharsets.UTF_8 ) ) );
+
+        // Run up to the first yield
+        machine.handleEvent( null, null );
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        machine.unload();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( HANDLES )
+    public void openAndClose()
+    {
+        machine.handleEvent( "bench", new Object[] { HANDLES } );
+        if( machine.isFinished() ) throw new IllegalStateException( "Benchmark program has stopped" );
+    }
+
+    private static final class HandleAPI implements ILuaAPI
+    {
+        @Override
+        public String[] getNames()
+        {
+            return new String[] { "handles" };
+        }
+
+        @Nonnull
+        @Override
+        public String[] getMethodNames()
+        {
+            return new String[] { "open" };
+        }
+
+        @Override
+        public Object[] callMethod( @Nonnull ILuaContext context, int method, @Nonnull Object[] arguments )
+        {
+            return new Object[] { new EncodedReadableHandle( new BufferedReader( new StringReader( "" ) ) ) };
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.lua;
+
+import org.junit.Test;
+import org.squiddev.cobalt.*;
+import org.squiddev.cobalt.function.LuaFunction;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+import static org.squiddev.cobalt.ValueFactory.valueOf;
+
+public class PrototypeCacheTest
+{
+    /**
+     * Loading the same chunk twice should only compile it once, but each function should still use the environment
+     * it was loaded with.
+     */
+    @Test
+    public void testSharedPrototypeHasOwnEnvironment() throws Exception
+    {
+        // Make the chunk unique, so other tests can't have cached it already.
+        String source = "-- " + System.nanoTime() + "\ncounter = (counter or 0) + 1\nreturn name";
+        LuaString name = valueOf( "=test" );
+        LuaTable envA = environment( "a" );
+        LuaTable envB = environment( "b" );
+
+        long hits = PrototypeCache.getHits();
+        long misses = PrototypeCache.getMisses();
+
+        LuaFunction a = PrototypeCache.load( valueOf( source ), name, envA );
+        assertEquals( "First load should compile", misses + 1, PrototypeCache.getMisses() );
+
+        LuaFunction b = PrototypeCache.load( valueOf( source ), name, envB );
+        assertEquals( "Second load should be cached", hits + 1, PrototypeCache.getHits() );
+        assertEquals( misses + 1, PrototypeCache.getMisses() );
+        assertNotSame( a, b );
+
+        LuaState state = LuaState.builder().build();
+        assertEquals( "a", OperationHelper.call( state, a ).toString() );
+        assertEquals( "a", OperationHelper.call( state, a ).toString() );
+        assertEquals( "b", OperationHelper.call( state, b ).toString() );
+
+        assertEquals( 2, envA.rawget( "counter" ).toInteger() );
+        assertEquals( 1, envB.rawget( "counter" ).toInteger() );
+    }
+
+    /**
+     * Chunks with the same code but different names have different debug information, and so must not be shared.
+     */
+    @Test
+    public void testNameIsPartOfKey() throws Exception
+    {
+        String source = "-- " + System.nanoTime() + "\nreturn 1";
+        long misses = PrototypeCache.getMisses();
+
+        PrototypeCache.load( valueOf( source ), valueOf( "=first" ), new LuaTable() );
+        PrototypeCache.load( valueOf( source ), valueOf( "=second" ), new LuaTable() );
+        assertEquals( misses + 2, PrototypeCache.getMisses() );
+    }
+
+    /**
+     * Chunks are often substrings of a larger buffer. These are copied when cached, but should still match the same
+     * code loaded from elsewhere.
+     */
+    @Test
+    public void testSubstringSource() throws Exception
+    {
+        String source = "-- " + System.nanoTime() + "\nreturn 1";
+        byte[] buffer = ("padding" + source + "padding").getBytes( StandardCharsets.UTF_8 );
+        LuaString view = LuaString.valueOf( buffer, "padding".length(), source.length() );
+        LuaString name = valueOf( "=test" );
+
+        long hits = PrototypeCache.getHits();
+        long misses = PrototypeCache.getMisses();
+
+        PrototypeCache.load( view, name, new LuaTable() );
+        PrototypeCache.load( valueOf( source ), name, new LuaTable() );
+        assertEquals( misses + 1, PrototypeCache.getMisses() );
+        assertEquals( hits + 1, PrototypeCache.getHits() );
+    }
+
+    private static LuaTable environment( String name )
+    {
+        LuaTable env = new LuaTable();
+        env.rawset( "name", valueOf( name ) );
+        return env;
+    }
+}
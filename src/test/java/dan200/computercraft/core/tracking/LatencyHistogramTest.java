@@ -0,0 +1,81 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.tracking;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest
+{
+    /**
+     * Ensures every value falls within its bucket, and buckets are ordered and within 12.5% of their values.
+     */
+    @Test
+    public void testBuckets()
+    {
+        int lastBucket = 0;
+        for( long value = 0; value < TimeUnit.MINUTES.toNanos( 60 ); value = value * 9 / 8 + 1 )
+        {
+            int bucket = LatencyHistogram.bucket( value );
+            long highest = LatencyHistogram.highestValue( bucket );
+
+            assertTrue( "Buckets should be ordered", bucket >= lastBucket );
+            assertTrue( "Value " + value + " should be below " + highest, value <= highest );
+            if( bucket > 0 ) assertTrue( "Value " + value + " should be above the previous bucket", value > LatencyHistogram.highestValue( bucket - 1 ) );
+            if( value > 16 * 1024 ) assertTrue( "Bucket for " + value + " is too wide", highest - value <= value / 8 );
+
+            lastBucket = bucket;
+        }
+
+        assertEquals( LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket( Long.MAX_VALUE ) );
+        assertEquals( 0, LatencyHistogram.bucket( -1 ) );
+    }
+
+    @Test
+    public void testPercentiles()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for( int i = 1; i <= 1000; i++ ) histogram.record( TimeUnit.MICROSECONDS.toNanos( i * 10 ) );
+
+        assertEquals( 1000, histogram.getCount() );
+        assertWithin( TimeUnit.MILLISECONDS.toNanos( 5 ), histogram.getValueAtPercentile( 50 ) );
+        assertWithin( TimeUnit.MILLISECONDS.toNanos( 9 ), histogram.getValueAtPercentile( 90 ) );
+        assertWithin( TimeUnit.MILLISECONDS.toNanos( 10 ), histogram.getValueAtPercentile( 100 ) );
+        assertEquals( 0, new LatencyHistogram().getValueAtPercentile( 50 ) );
+    }
+
+    /**
+     * Ensures histograms recorded by separate threads are merged correctly.
+     */
+    @Test
+    public void testMerge()
+    {
+        AtomicLongArray fast = new AtomicLongArray( LatencyHistogram.BUCKETS );
+        AtomicLongArray slow = new AtomicLongArray( LatencyHistogram.BUCKETS );
+        for( int i = 0; i < 98; i++ ) LatencyHistogram.record( fast, TimeUnit.MICROSECONDS.toNanos( 100 ) );
+        for( int i = 0; i < 2; i++ ) LatencyHistogram.record( slow, TimeUnit.MILLISECONDS.toNanos( 50 ) );
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.add( fast );
+        histogram.add( slow );
+
+        assertEquals( 100, histogram.getCount() );
+        assertWithin( TimeUnit.MICROSECONDS.toNanos( 100 ), histogram.getValueAtPercentile( 98 ) );
+        assertWithin( TimeUnit.MILLISECONDS.toNanos( 50 ), histogram.getValueAtPercentile( 99 ) );
+    }
+
+    private static void assertWithin( long expected, long actual )
+    {
+        assertTrue( "Expected " + actual + " to be within 12.5% of " + expected,
+            actual >= expected && actual <= expected + expected / 8 );
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.tracking;
+
+import dan200.computercraft.core.computer.BasicEnvironment;
+import dan200.computercraft.core.computer.Computer;
+import dan200.computercraft.core.computer.ComputerThread;
+import dan200.computercraft.core.terminal.Terminal;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of recording values with {@link Tracking}, both when nobody is tracking and when
+ * {@code /computercraft track start} is running. Values are recorded from several threads at once, either all for the
+ * same computer or each for their own.
+ *
+ * Run with {@code ./gradlew jmh -PjmhArgs=TrackingBenchmark}.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@Threads( 4 )
+public class TrackingBenchmark
+{
+    private static final int COMPUTERS = 16;
+
+    @State( Scope.Benchmark )
+    public static class Computers
+    {
+        @Param( { "false", "true" } )
+        public boolean tracking;
+
+        Computer[] computers;
+
+        @Setup
+        public void setup()
+        {
+            BasicEnvironment environment = new BasicEnvironment();
+            computers = new Computer[COMPUTERS];
+            for( int i = 0; i < COMPUTERS; i++ ) computers[i] = new Computer( environment, new Terminal( 51, 19 ), i );
+
+            Tracking.reset();
+            if( tracking ) Tracking.getContext( UUID.randomUUID() ).start();
+        }
+
+        @TearDown
+        public void tearDown()
+        {
+            Tracking.reset();
+            ComputerThread.stop();
+        }
+    }
+
+    @State( Scope.Thread )
+    public static class Recorder
+    {
+        Computer own;
+
+        @Setup
+        public void setup( Computers computers, ThreadParams params )
+        {
+            own = computers.computers[params.getThreadIndex() % COMPUTERS];
+        }
+    }
+
+    @Benchmark
+    public void valueSharedComputer( Computers computers )
+    {
+        Tracking.addValue( computers.computers[0], TrackingField.FS_OPS, 1 );
+    }
+
+    @Benchmark
+    public void valueOwnComputer( Recorder recorder )
+    {
+        Tracking.addValue( recorder.own, TrackingField.FS_OPS, 1 );
+    }
+
+    @Benchmark
+    public void taskTiming( Recorder recorder )
+    {
+        Tracking.addTaskTiming( recorder.own, 1000 );
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.tracking;
+
+import dan200.computercraft.core.computer.BasicEnvironment;
+import dan200.computercraft.core.computer.Computer;
+import dan200.computercraft.core.computer.ComputerThread;
+import dan200.computercraft.core.terminal.Terminal;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TrackingContextTest
+{
+    private static final int THREADS = 50;
+
+    @After
+    public void tearDown()
+    {
+        ComputerThread.stop();
+    }
+
+    /**
+     * Record from many short-lived threads, as Lua coroutines do. Once those threads have died their values should
+     * still be reported, both when they are first merged and on every later dump.
+     */
+    @Test
+    public void testDeadThreadsRetained() throws InterruptedException
+    {
+        Computer computer = new Computer( new BasicEnvironment(), new Terminal( 51, 19 ), 0 );
+        TrackingContext context = new TrackingContext();
+        context.start();
+        try
+        {
+            for( int i = 0; i < THREADS; i++ )
+            {
+                Thread thread = new Thread( () -> {
+                    context.addTaskTiming( computer, 1000 );
+                    context.addValue( computer, TrackingField.FS_OPS, 2 );
+                } );
+                thread.start();
+                thread.join();
+            }
+
+            for( int i = 0; i < 2; i++ )
+            {
+                List<ComputerTracker> timings = context.getImmutableTimings();
+                assertEquals( 1, timings.size() );
+                assertEquals( THREADS, timings.get( 0 ).getTasks() );
+                assertEquals( THREADS * 1000, timings.get( 0 ).getTotalTime() );
+                assertEquals( THREADS * 2, timings.get( 0 ).get( TrackingField.FS_OPS ) );
+            }
+
+            // Values recorded later by a live thread are added on top of the retired ones.
+            context.addTaskTiming( computer, 1000 );
+            assertEquals( THREADS + 1, context.getImmutableTimings().get( 0 ).getTasks() );
+        }
+        finally
+        {
+            context.stop();
+        }
+    }
+}
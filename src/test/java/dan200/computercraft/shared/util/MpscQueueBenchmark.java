@@ -0,0 +1,84 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.shared.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link MpscQueue} against the synchronised {@link ArrayDeque} which {@code MainThread} used previously.
+ * Several producer threads submit tasks, while a single consumer drains them, much like computer threads submitting
+ * work to the server thread.
+ *
+ * Run with {@code ./gradlew jmh -PjmhArgs=MpscQueueBenchmark}.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+@State( Scope.Group )
+public class MpscQueueBenchmark
+{
+    private static final Object TASK = new Object();
+
+    private final Object lock = new Object();
+    private final Queue<Object> locked = new ArrayDeque<>();
+
+    private final MpscQueue<Object> lockFree = new MpscQueue<>();
+
+    private long drained;
+
+    @Benchmark
+    @Group( "locked" )
+    @GroupThreads( 8 )
+    public void lockedOffer()
+    {
+        synchronized( lock )
+        {
+            locked.offer( TASK );
+        }
+    }
+
+    @Benchmark
+    @Group( "locked" )
+    @GroupThreads( 1 )
+    public long lockedDrain()
+    {
+        // Mirror the old MainThread, which took the lock once per task.
+        while( true )
+        {
+            Object task;
+            synchronized( lock )
+            {
+                task = locked.poll();
+            }
+            if( task == null ) return drained;
+            drained++;
+        }
+    }
+
+    @Benchmark
+    @Group( "lockFree" )
+    @GroupThreads( 8 )
+    public void lockFreeOffer()
+    {
+        lockFree.offer( TASK );
+    }
+
+    @Benchmark
+    @Group( "lockFree" )
+    @GroupThreads( 1 )
+    public long lockFreeDrain()
+    {
+        drained += lockFree.drain( x -> { } );
+        return drained;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2019. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.shared.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MpscQueueTest
+{
+    @Test
+    public void testOrdering()
+    {
+        MpscQueue<Integer> queue = new MpscQueue<>();
+        assertTrue( queue.isEmpty() );
+
+        for( int i = 0; i < 5; i++ ) queue.offer( i );
+        assertFalse( queue.isEmpty() );
+        assertEquals( Integer.valueOf( 0 ), queue.poll() );
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals( 4, queue.drain( drained::add ) );
+        assertEquals( Arrays.asList( 1, 2, 3, 4 ), drained );
+
+        assertTrue( queue.isEmpty() );
+        assertNull( queue.poll() );
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException
+    {
+        final int producers = 4;
+        final int perProducer = 100000;
+
+        MpscQueue<long[]> queue = new MpscQueue<>();
+        Thread[] threads = new Thread[producers];
+        for( int i = 0; i < producers; i++ )
+        {
+            final int producer = i;
+            threads[i] = new Thread( () -> {
+                for( int j = 0; j < perProducer; j++ ) queue.offer( new long[] { producer, j } );
+            } );
+            threads[i].start();
+        }
+
+        // Every element should be seen exactly once, and in the order each producer submitted them.
+        long[] next = new long[producers];
+        int seen = 0;
+        while( seen < producers * perProducer )
+        {
+            seen += queue.drain( x -> {
+                assertEquals( next[(int) x[0]], x[1] );
+                next[(int) x[0]]++;
+            } );
+        }
+
+        for( Thread thread : threads ) thread.join();
+        assertTrue( queue.isEmpty() );
+    }
+}